@@ -0,0 +1,98 @@
+package net.irisshaders.iris.test.pipeline;
+
+import net.irisshaders.iris.pipeline.DynamicResolutionController;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class DynamicResolutionControllerTest {
+	private static final float TARGET_MS = 10.0f;
+	private static final float DELTA = 1.0e-6f;
+
+	private static int countChanges(DynamicResolutionController controller, float frameTimeMs, int frames) {
+		int changes = 0;
+
+		for (int i = 0; i < frames; i++) {
+			if (controller.onFrame(frameTimeMs)) {
+				changes++;
+			}
+		}
+
+		return changes;
+	}
+
+	@Test
+	void testFrameTimesInsideBandKeepScale() {
+		DynamicResolutionController controller = new DynamicResolutionController(TARGET_MS);
+
+		// Between 0.8x and 1.1x of the target neither direction is counted
+		Assertions.assertEquals(0, countChanges(controller, 10.9f, 1000));
+		Assertions.assertEquals(0, countChanges(controller, 8.1f, 1000));
+		Assertions.assertEquals(1.0f, controller.getScale(), DELTA);
+	}
+
+	@Test
+	void testSingleSpikeIsSmoothedOut() {
+		DynamicResolutionController controller = new DynamicResolutionController(TARGET_MS);
+
+		countChanges(controller, TARGET_MS, 100);
+		// The smoothed frame time stays over budget for about 20 frames, less than the 30 needed to downscale
+		Assertions.assertFalse(controller.onFrame(100.0f));
+		Assertions.assertEquals(0, countChanges(controller, TARGET_MS, 200));
+		Assertions.assertEquals(1.0f, controller.getScale(), DELTA);
+	}
+
+	@Test
+	void testDownscaleAfterSustainedOverBudget() {
+		DynamicResolutionController controller = new DynamicResolutionController(TARGET_MS);
+
+		Assertions.assertEquals(0, countChanges(controller, 20.0f, 29));
+		Assertions.assertTrue(controller.onFrame(20.0f));
+		Assertions.assertEquals(0.9f, controller.getScale(), DELTA);
+	}
+
+	@Test
+	void testCooldownAfterChange() {
+		DynamicResolutionController controller = new DynamicResolutionController(TARGET_MS);
+		countChanges(controller, 20.0f, 30);
+
+		// 60 frames of cooldown, then another 30 over budget frames are needed
+		Assertions.assertEquals(0, countChanges(controller, 20.0f, 89));
+		Assertions.assertTrue(controller.onFrame(20.0f));
+		Assertions.assertEquals(0.8f, controller.getScale(), DELTA);
+	}
+
+	@Test
+	void testScaleClampedToMinimum() {
+		DynamicResolutionController controller = new DynamicResolutionController(TARGET_MS);
+
+		// 1.0 -> 0.5 in steps of 0.1, and nothing after that
+		Assertions.assertEquals(5, countChanges(controller, 100.0f, 10000));
+		Assertions.assertEquals(0.5f, controller.getScale(), DELTA);
+	}
+
+	@Test
+	void testUpscaleIsSlowerAndClampedToMaximum() {
+		DynamicResolutionController controller = new DynamicResolutionController(TARGET_MS);
+		countChanges(controller, 20.0f, 30);
+		Assertions.assertEquals(0.9f, controller.getScale(), DELTA);
+
+		// The smoothed frame time drops below 0.8x of the target during the cooldown, then 120 frames are needed
+		Assertions.assertEquals(0, countChanges(controller, 4.0f, 60 + 119));
+		Assertions.assertTrue(controller.onFrame(4.0f));
+		Assertions.assertEquals(1.0f, controller.getScale(), DELTA);
+
+		Assertions.assertEquals(0, countChanges(controller, 4.0f, 10000));
+		Assertions.assertEquals(1.0f, controller.getScale(), DELTA);
+	}
+
+	@Test
+	void testMissingFrameTimesAreIgnored() {
+		DynamicResolutionController controller = new DynamicResolutionController(TARGET_MS);
+
+		Assertions.assertEquals(0, countChanges(controller, 0.0f, 100));
+		Assertions.assertEquals(0.0f, controller.getAverageFrameTimeMs(), DELTA);
+
+		controller.onFrame(12.0f);
+		Assertions.assertEquals(12.0f, controller.getAverageFrameTimeMs(), DELTA);
+	}
+}
@@ -0,0 +1,95 @@
+package net.irisshaders.iris.test.pipeline;
+
+import com.google.common.collect.ImmutableSet;
+import net.irisshaders.iris.pipeline.graph.PassPlan;
+import net.irisshaders.iris.pipeline.graph.RenderGraph;
+import net.irisshaders.iris.pipeline.graph.RenderGraphCompiler;
+import net.irisshaders.iris.pipeline.graph.RenderGraphPass;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class RenderGraphCompilerTest {
+	private static RenderGraphPass pass(int[] drawBuffers, ImmutableSet<Integer> readsFromAlt) {
+		return new RenderGraphPass(drawBuffers, readsFromAlt, ImmutableSet.of(), false, false);
+	}
+
+	@Test
+	void testFlippingChain() {
+		// composite writes colortex0 (main -> alt), composite1 then reads the alt side and writes colortex1
+		RenderGraph graph = RenderGraphCompiler.compile(List.of(
+			pass(new int[]{0}, ImmutableSet.of()),
+			pass(new int[]{1}, ImmutableSet.of(0))
+		));
+
+		Assertions.assertFalse(graph.getPass(0).mergeWithPrevious());
+		Assertions.assertFalse(graph.getPass(1).mergeWithPrevious());
+		Assertions.assertEquals(2, graph.getRenderPassCount());
+	}
+
+	@Test
+	void testUnflippedPassesShareRenderPass() {
+		// flip.composite.colortex3=false and flip.composite1.colortex3=false: both passes draw into the same image
+		RenderGraph graph = RenderGraphCompiler.compile(List.of(
+			pass(new int[]{3}, ImmutableSet.of()),
+			pass(new int[]{3}, ImmutableSet.of()),
+			pass(new int[]{3}, ImmutableSet.of())
+		));
+
+		Assertions.assertTrue(graph.getPass(1).mergeWithPrevious());
+		Assertions.assertTrue(graph.getPass(2).mergeWithPrevious());
+		Assertions.assertEquals(1, graph.getRenderPassCount());
+	}
+
+	@Test
+	void testAttachmentOrderPreventsMerge() {
+		RenderGraph graph = RenderGraphCompiler.compile(List.of(
+			pass(new int[]{1, 2}, ImmutableSet.of()),
+			pass(new int[]{2, 1}, ImmutableSet.of())
+		));
+
+		Assertions.assertFalse(graph.getPass(1).mergeWithPrevious());
+		Assertions.assertEquals(2, graph.getRenderPassCount());
+	}
+
+	@Test
+	void testComputesEndRenderPass() {
+		RenderGraph graph = RenderGraphCompiler.compile(List.of(
+			pass(new int[]{0}, ImmutableSet.of()),
+			RenderGraphPass.compute(ImmutableSet.of(0)),
+			RenderGraphPass.compute(ImmutableSet.of(0)),
+			pass(new int[]{0}, ImmutableSet.of())
+		));
+
+		for (int i = 1; i < 3; i++) {
+			Assertions.assertFalse(graph.getPass(i).mergeWithPrevious());
+		}
+
+		PassPlan last = graph.getPass(3);
+		Assertions.assertFalse(last.mergeWithPrevious());
+		Assertions.assertEquals(2, graph.getRenderPassCount());
+	}
+
+	@Test
+	void testTrailingComputeAddsNoRenderPass() {
+		RenderGraph graph = RenderGraphCompiler.compile(List.of(
+			pass(new int[]{0}, ImmutableSet.of()),
+			RenderGraphPass.compute(ImmutableSet.of(0))
+		));
+
+		Assertions.assertFalse(graph.getPass(1).mergeWithPrevious());
+		Assertions.assertEquals(1, graph.getRenderPassCount());
+	}
+
+	@Test
+	void testMipmapsEndRenderPass() {
+		RenderGraph graph = RenderGraphCompiler.compile(List.of(
+			pass(new int[]{3}, ImmutableSet.of()),
+			new RenderGraphPass(new int[]{3}, ImmutableSet.of(), ImmutableSet.of(0), false, false)
+		));
+
+		Assertions.assertFalse(graph.getPass(1).mergeWithPrevious());
+		Assertions.assertEquals(2, graph.getRenderPassCount());
+	}
+}
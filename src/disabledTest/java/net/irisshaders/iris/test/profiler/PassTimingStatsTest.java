@@ -0,0 +1,119 @@
+package net.irisshaders.iris.test.profiler;
+
+import net.irisshaders.iris.vulkan.profiler.PassTimingStats;
+import net.irisshaders.iris.vulkan.profiler.RollingWindow;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+public class PassTimingStatsTest {
+	@Test
+	void testPercentiles() {
+		RollingWindow window = new RollingWindow(100);
+
+		// Added out of order, percentiles must not depend on insertion order
+		for (int i = 100; i >= 1; i--) {
+			window.add(i);
+		}
+
+		float[] percentiles = window.getPercentiles(0, 50, 95, 99, 100);
+		Assertions.assertArrayEquals(new float[]{1, 50, 95, 99, 100}, percentiles);
+		Assertions.assertEquals(50.5f, window.getMean(), 1e-4f);
+		Assertions.assertEquals(100.0f, window.getMax());
+	}
+
+	@Test
+	void testWindowEvictsOldestSamples() {
+		RollingWindow window = new RollingWindow(4);
+
+		for (int i = 1; i <= 6; i++) {
+			window.add(i);
+		}
+
+		// Only 3, 4, 5 and 6 are left
+		Assertions.assertEquals(4, window.getCount());
+		Assertions.assertEquals(4.5f, window.getMean(), 1e-4f);
+		Assertions.assertArrayEquals(new float[]{3, 6}, window.getPercentiles(0, 100));
+	}
+
+	@Test
+	void testEmptyWindow() {
+		RollingWindow window = new RollingWindow(4);
+
+		Assertions.assertEquals(0, window.getCount());
+		Assertions.assertEquals(0.0f, window.getMean());
+		Assertions.assertArrayEquals(new float[]{0, 0}, window.getPercentiles(50, 95));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> window.getPercentiles(101));
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new RollingWindow(0));
+	}
+
+	@Test
+	void testPassesAreSummedPerFrame() {
+		PassTimingStats stats = new PassTimingStats(16);
+
+		// A gbuffer phase entered twice, with the shadow pass nested in a longer composite pass
+		stats.record("gbuffers_terrain", 1.0f, 2.0f);
+		stats.record("composite", 2.0f, 6.0f);
+		stats.record("shadow", 3.0f, 4.5f);
+		stats.record("gbuffers_terrain", 6.0f, 7.5f);
+		stats.endFrame();
+
+		List<PassTimingStats.Summary> summaries = stats.getSummaries();
+		Assertions.assertEquals(List.of("gbuffers_terrain", "composite", "shadow", PassTimingStats.FRAME_TOTAL),
+			summaries.stream().map(PassTimingStats.Summary::pass).toList());
+
+		Assertions.assertEquals(1, summaries.get(0).samples());
+		Assertions.assertEquals(2.5f, summaries.get(0).mean(), 1e-4f);
+		Assertions.assertEquals(6.5f, stats.getFrameTotal().p50(), 1e-4f);
+		Assertions.assertEquals(1, stats.getFrameCount());
+	}
+
+	@Test
+	void testSlowestPasses() {
+		PassTimingStats stats = new PassTimingStats(16);
+
+		for (int frame = 0; frame < 10; frame++) {
+			stats.record("composite", 0.0f, 1.0f);
+			// Usually cheap, but occasionally very expensive: should rank by its 95th percentile
+			stats.record("deferred", 1.0f, frame == 9 ? 11.0f : 1.5f);
+			stats.record("final", 11.0f, 13.0f);
+			stats.endFrame();
+		}
+
+		List<PassTimingStats.Summary> slowest = stats.getSlowest(2);
+		Assertions.assertEquals(List.of("deferred", "final"), slowest.stream().map(PassTimingStats.Summary::pass).toList());
+		Assertions.assertEquals(10.0f, slowest.get(0).max(), 1e-4f);
+	}
+
+	@Test
+	void testEmptyFramesAreIgnored() {
+		PassTimingStats stats = new PassTimingStats(16);
+
+		stats.endFrame();
+
+		Assertions.assertEquals(0, stats.getFrameCount());
+		Assertions.assertNull(stats.getFrameTotal());
+		Assertions.assertTrue(stats.getSummaries().isEmpty());
+	}
+
+	@Test
+	void testCsv() throws IOException {
+		PassTimingStats stats = new PassTimingStats(16);
+
+		stats.record("composite1", 0.0f, 0.25f);
+		stats.endFrame();
+
+		StringBuilder csv = new StringBuilder();
+		stats.writeCsv(csv);
+
+		Assertions.assertEquals("pass,samples,mean_ms,p50_ms,p95_ms,p99_ms,max_ms\n"
+			+ "composite1,1,0.2500,0.2500,0.2500,0.2500,0.2500\n"
+			+ "total,1,0.2500,0.2500,0.2500,0.2500,0.2500\n", csv.toString());
+
+		stats.clear();
+		Assertions.assertEquals(0, stats.getFrameCount());
+		Assertions.assertTrue(stats.getSummaries().isEmpty());
+	}
+}
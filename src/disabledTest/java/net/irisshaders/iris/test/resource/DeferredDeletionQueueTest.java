@@ -0,0 +1,84 @@
+package net.irisshaders.iris.test.resource;
+
+import net.irisshaders.iris.vulkan.resource.DeferredDeletionQueue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DeferredDeletionQueueTest {
+	@Test
+	void testRetiresAfterFramesInFlight() {
+		DeferredDeletionQueue queue = new DeferredDeletionQueue();
+		List<String> deleted = new ArrayList<>();
+
+		queue.defer(() -> deleted.add("framebuffer"));
+
+		// With two frames in flight, the frame that released it may still run during the next frame
+		queue.beginFrame(2);
+		Assertions.assertEquals(List.of(), deleted);
+		Assertions.assertEquals(1, queue.getPendingCount());
+
+		queue.beginFrame(2);
+		Assertions.assertEquals(List.of("framebuffer"), deleted);
+		Assertions.assertEquals(0, queue.getPendingCount());
+		Assertions.assertEquals(1, queue.getLastFrameRetired());
+	}
+
+	@Test
+	void testRetiresInOrderPerFrame() {
+		DeferredDeletionQueue queue = new DeferredDeletionQueue();
+		List<String> deleted = new ArrayList<>();
+
+		queue.defer(() -> deleted.add("colortex0"));
+		queue.defer(() -> deleted.add("colortex1"));
+		queue.beginFrame(3);
+		queue.defer(() -> deleted.add("pipeline"));
+
+		queue.beginFrame(3);
+		Assertions.assertEquals(List.of(), deleted);
+
+		queue.beginFrame(3);
+		Assertions.assertEquals(List.of("colortex0", "colortex1"), deleted);
+		Assertions.assertEquals(2, queue.getLastFrameRetired());
+
+		queue.beginFrame(3);
+		Assertions.assertEquals(List.of("colortex0", "colortex1", "pipeline"), deleted);
+		Assertions.assertEquals(1, queue.getLastFrameRetired());
+
+		queue.beginFrame(3);
+		Assertions.assertEquals(0, queue.getLastFrameRetired());
+	}
+
+	@Test
+	void testDeletionsQueuedWhileRetiringWait() {
+		DeferredDeletionQueue queue = new DeferredDeletionQueue();
+		List<String> deleted = new ArrayList<>();
+
+		// Destroying a framebuffer can release the textures it was the last user of
+		queue.defer(() -> {
+			deleted.add("framebuffer");
+			queue.defer(() -> deleted.add("texture"));
+		});
+
+		queue.beginFrame(1);
+		Assertions.assertEquals(List.of("framebuffer"), deleted);
+
+		queue.beginFrame(1);
+		Assertions.assertEquals(List.of("framebuffer", "texture"), deleted);
+	}
+
+	@Test
+	void testFailedDeletionIsNotRetried() {
+		DeferredDeletionQueue queue = new DeferredDeletionQueue();
+
+		queue.defer(() -> {
+			throw new IllegalStateException("already destroyed");
+		});
+
+		Assertions.assertThrows(IllegalStateException.class, () -> queue.beginFrame(1));
+		Assertions.assertEquals(0, queue.getPendingCount());
+		Assertions.assertThrows(IllegalArgumentException.class, () -> queue.beginFrame(0));
+	}
+}
@@ -0,0 +1,123 @@
+package net.irisshaders.iris.test.shadows;
+
+import net.irisshaders.iris.shadows.frustum.AabbBatch;
+import net.irisshaders.iris.shadows.frustum.BoxCuller;
+import net.irisshaders.iris.shadows.frustum.advanced.AdvancedShadowCullingFrustum;
+import net.irisshaders.iris.shadows.frustum.advanced.ReversedAdvancedShadowCullingFrustum;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class AdvancedShadowCullingFrustumBatchTest {
+	private static final double CAMERA_X = 1234.5;
+	private static final double CAMERA_Y = 70.25;
+	private static final double CAMERA_Z = -987.75;
+
+	private static Matrix4f view() {
+		return new Matrix4f().rotateY(0.6f);
+	}
+
+	private static Matrix4f projection() {
+		return new Matrix4f().perspective((float) Math.toRadians(70.0), 16.0f / 9.0f, 0.05f, 256.0f);
+	}
+
+	private static Vector3f lightDirection() {
+		return new Vector3f(0.3f, 0.8f, -0.5f).normalize();
+	}
+
+	/**
+	 * Fills the batch with random boxes around the camera, from single blocks up to whole sections.
+	 */
+	private static void fill(AabbBatch batch, float[][] boxes, long seed) {
+		Random random = new Random(seed);
+		batch.clear();
+
+		for (int i = 0; i < boxes.length; i++) {
+			float x = (float) (CAMERA_X + random.nextInt(512) - 256);
+			float y = (float) (CAMERA_Y + random.nextInt(256) - 128);
+			float z = (float) (CAMERA_Z + random.nextInt(512) - 256);
+			float size = random.nextBoolean() ? 16.0f : 1 + random.nextInt(3);
+
+			boxes[i] = new float[]{x, y, z, x + size, y + size, z + size};
+			batch.add(x, y, z, x + size, y + size, z + size);
+		}
+	}
+
+	private static void assertMatchesPerBox(AdvancedShadowCullingFrustum frustum, int count) {
+		frustum.prepare(CAMERA_X, CAMERA_Y, CAMERA_Z);
+
+		AabbBatch batch = new AabbBatch();
+		float[][] boxes = new float[count][];
+		fill(batch, boxes, count);
+		batch.test(frustum);
+
+		int visible = 0;
+
+		for (int i = 0; i < count; i++) {
+			float[] box = boxes[i];
+			boolean expected = frustum.fastAabbTest(box[0], box[1], box[2], box[3], box[4], box[5]) != 0;
+
+			if (expected != batch.isVisible(i)) {
+				Assertions.fail("Box " + i + " should be " + (expected ? "visible" : "culled"));
+			}
+
+			if (expected) {
+				visible++;
+			}
+		}
+
+		// Both outcomes have to show up, otherwise the comparison says nothing
+		if (count > 100) {
+			Assertions.assertTrue(visible > 0);
+			Assertions.assertTrue(visible < count);
+		}
+	}
+
+	@Test
+	void testMatchesPerBoxTest() {
+		AdvancedShadowCullingFrustum frustum = new AdvancedShadowCullingFrustum(view(), projection(), lightDirection(), null);
+
+		// Partial last words, exactly one word, and more boxes than the batch starts out with
+		for (int count : new int[]{0, 1, 63, 64, 65, 130, 1000}) {
+			assertMatchesPerBox(frustum, count);
+		}
+	}
+
+	@Test
+	void testMatchesPerBoxTestWithBoxCuller() {
+		AdvancedShadowCullingFrustum frustum = new AdvancedShadowCullingFrustum(view(), projection(), lightDirection(), new BoxCuller(96.0));
+
+		assertMatchesPerBox(frustum, 1000);
+	}
+
+	@Test
+	void testReversedMatchesPerBoxTest() {
+		AdvancedShadowCullingFrustum frustum = new ReversedAdvancedShadowCullingFrustum(view(), projection(), lightDirection(),
+			new BoxCuller(32.0), new BoxCuller(192.0));
+
+		assertMatchesPerBox(frustum, 1000);
+	}
+
+	@Test
+	void testRefillingClearsOldResults() {
+		AdvancedShadowCullingFrustum frustum = new AdvancedShadowCullingFrustum(view(), projection(), lightDirection(), null);
+		frustum.prepare(CAMERA_X, CAMERA_Y, CAMERA_Z);
+		AabbBatch batch = new AabbBatch();
+
+		fill(batch, new float[1000][], 1);
+		batch.test(frustum);
+		assertMatchesPerBox(frustum, 70);
+
+		// A box far behind the shadow frustum's reach stays culled after reusing the same batch
+		batch.clear();
+		batch.add(1.0e6f, 1.0e6f, 1.0e6f, 1.0e6f + 1, 1.0e6f + 1, 1.0e6f + 1);
+		batch.add((float) CAMERA_X, (float) CAMERA_Y, (float) CAMERA_Z, (float) CAMERA_X + 1, (float) CAMERA_Y + 1, (float) CAMERA_Z + 1);
+		batch.test(frustum);
+
+		Assertions.assertEquals(2, batch.size());
+		Assertions.assertTrue(batch.isVisible(1));
+	}
+}
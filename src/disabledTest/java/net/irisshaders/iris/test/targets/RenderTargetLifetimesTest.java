@@ -0,0 +1,143 @@
+package net.irisshaders.iris.test.targets;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
+import net.irisshaders.iris.targets.RenderTargetLifetimes;
+import net.irisshaders.iris.targets.RenderTargetLifetimes.Stage;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class RenderTargetLifetimesTest {
+	private static IntSet targets(int... targets) {
+		return new IntOpenHashSet(targets);
+	}
+
+	private static Stage stage(String name, IntSet reads, IntSet writes) {
+		return new Stage(name, reads, writes, true);
+	}
+
+	@Test
+	void testDisjointRangesShareTextures() {
+		// composite writes colortex1, composite1 reads it into colortex2, composite2 reads that into colortex3
+		RenderTargetLifetimes lifetimes = RenderTargetLifetimes.analyze(List.of(
+			stage("composite", targets(), targets(1)),
+			stage("composite1", targets(1), targets(2)),
+			stage("composite2", targets(2), targets(3))
+		), 4, IntSets.EMPTY_SET);
+
+		Assertions.assertFalse(lifetimes.isUsed(0));
+		Assertions.assertEquals(0, lifetimes.getStart(1));
+		Assertions.assertEquals(1, lifetimes.getEnd(1));
+		Assertions.assertEquals(2, lifetimes.getStart(3));
+
+		Assertions.assertTrue(lifetimes.overlaps(1, 2));
+		Assertions.assertFalse(lifetimes.overlaps(1, 3));
+
+		Int2IntMap aliases = lifetimes.findAliases(target -> "rgba8");
+		Assertions.assertEquals(1, aliases.size());
+		Assertions.assertEquals(1, aliases.get(3));
+	}
+
+	@Test
+	void testOverlappingRangesAreNotShared() {
+		RenderTargetLifetimes lifetimes = RenderTargetLifetimes.analyze(List.of(
+			stage("composite", targets(), targets(0)),
+			stage("composite1", targets(), targets(1)),
+			stage("composite2", targets(0, 1), targets(2))
+		), 3, IntSets.EMPTY_SET);
+
+		Assertions.assertTrue(lifetimes.overlaps(0, 1));
+		Assertions.assertTrue(lifetimes.overlaps(1, 0));
+		Assertions.assertTrue(lifetimes.overlaps(1, 2));
+
+		// colortex2 only starts once both others are dead, but both are live until the stage that starts it
+		Assertions.assertEquals(0, lifetimes.findAliases(target -> "rgba8").size());
+	}
+
+	@Test
+	void testReadBeforeFirstWriteIsLiveAllFrame() {
+		// colortex4 is read before anything writes it this frame, so it carries last frame's contents
+		RenderTargetLifetimes lifetimes = RenderTargetLifetimes.analyze(List.of(
+			stage("composite", targets(4), targets(1)),
+			stage("composite1", targets(1), targets(4)),
+			stage("composite2", targets(), targets(2)),
+			stage("final", targets(2), targets())
+		), 5, IntSets.EMPTY_SET);
+
+		Assertions.assertEquals(0, lifetimes.getStart(4));
+		Assertions.assertEquals(3, lifetimes.getEnd(4));
+		Assertions.assertFalse(lifetimes.findAliases(target -> "rgba8").containsKey(4));
+		Assertions.assertFalse(lifetimes.findAliases(target -> "rgba8").containsValue(4));
+	}
+
+	@Test
+	void testPersistentTargetIsLiveAllFrame() {
+		// colortex3 isn't cleared every frame, so even a target written only at the end can't share its textures
+		RenderTargetLifetimes lifetimes = RenderTargetLifetimes.analyze(List.of(
+			stage("composite", targets(), targets(1)),
+			stage("composite1", targets(1), targets()),
+			stage("composite2", targets(), targets(3)),
+			stage("final", targets(3), targets())
+		), 4, targets(3));
+
+		Assertions.assertEquals(0, lifetimes.getStart(3));
+		Assertions.assertEquals(3, lifetimes.getEnd(3));
+		Assertions.assertTrue(lifetimes.overlaps(1, 3));
+		Assertions.assertEquals(0, lifetimes.findAliases(target -> "rgba8").size());
+	}
+
+	@Test
+	void testPartialFirstWriteStartsAtFrameStart() {
+		// A blended first write keeps the pixels it doesn't cover from the clear at the start of the frame
+		RenderTargetLifetimes lifetimes = RenderTargetLifetimes.analyze(List.of(
+			stage("composite", targets(), targets(1)),
+			stage("composite1", targets(1), targets()),
+			new Stage("composite2", targets(), targets(2), false),
+			stage("final", targets(2), targets())
+		), 3, IntSets.EMPTY_SET);
+
+		Assertions.assertEquals(0, lifetimes.getStart(2));
+		Assertions.assertEquals(3, lifetimes.getEnd(2));
+		Assertions.assertTrue(lifetimes.overlaps(1, 2));
+		Assertions.assertEquals(0, lifetimes.findAliases(target -> "rgba8").size());
+	}
+
+	@Test
+	void testOnlyCompatibleTargetsAreGrouped() {
+		// Four disjoint ranges: colortex0 and colortex2 are RGBA16F, colortex1 and colortex3 are RGBA8
+		RenderTargetLifetimes lifetimes = RenderTargetLifetimes.analyze(List.of(
+			stage("composite", targets(), targets(0)),
+			stage("composite1", targets(0), targets(1)),
+			stage("composite2", targets(1), targets(2)),
+			stage("composite3", targets(2), targets(3)),
+			stage("final", targets(3), targets())
+		), 4, IntSets.EMPTY_SET);
+
+		Int2IntMap aliases = lifetimes.findAliases(target -> target % 2 == 0 ? "rgba16f" : "rgba8");
+
+		Assertions.assertEquals(2, aliases.size());
+		Assertions.assertEquals(0, aliases.get(2));
+		Assertions.assertEquals(1, aliases.get(3));
+	}
+
+	@Test
+	void testGroupReusesFreedSlot() {
+		// colortex0 dies after composite1, so colortex2 takes its textures; colortex1 is still live at that point
+		RenderTargetLifetimes lifetimes = RenderTargetLifetimes.analyze(List.of(
+			stage("composite", targets(), targets(0)),
+			stage("composite1", targets(0), targets(1)),
+			stage("composite2", targets(1), targets(2)),
+			stage("final", targets(1, 2), targets())
+		), 3, IntSets.EMPTY_SET);
+
+		Int2IntMap aliases = lifetimes.findAliases(target -> "rgba8");
+
+		Assertions.assertEquals(1, aliases.size());
+		Assertions.assertEquals(0, aliases.get(2));
+		Assertions.assertFalse(aliases.containsKey(1));
+	}
+}
@@ -0,0 +1,99 @@
+package net.irisshaders.iris.test.texture;
+
+import net.irisshaders.iris.texture.pbr.HolderEvictionOrder;
+import net.irisshaders.iris.vulkan.resource.DeferredDeletionQueue;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class HolderEvictionOrderTest {
+	// The limit PBRTextureManager uses for non-atlas holders
+	private static final int MAX_HOLDERS = 256;
+
+	@Test
+	void testEvictsLeastRecentlyAddedAtLimit() {
+		HolderEvictionOrder order = new HolderEvictionOrder(MAX_HOLDERS);
+
+		for (int id = 1; id <= MAX_HOLDERS; id++) {
+			Assertions.assertEquals(HolderEvictionOrder.NONE, order.add(id));
+		}
+		Assertions.assertEquals(MAX_HOLDERS, order.size());
+
+		Assertions.assertEquals(1, order.add(MAX_HOLDERS + 1));
+		Assertions.assertEquals(2, order.add(MAX_HOLDERS + 2));
+		Assertions.assertEquals(MAX_HOLDERS, order.size());
+	}
+
+	@Test
+	void testTouchedHoldersAreEvictedLast() {
+		HolderEvictionOrder order = new HolderEvictionOrder(MAX_HOLDERS);
+
+		for (int id = 1; id <= MAX_HOLDERS; id++) {
+			order.add(id);
+		}
+
+		order.touch(1);
+		// Ids that aren't tracked, such as atlases, are ignored
+		order.touch(MAX_HOLDERS + 100);
+
+		Assertions.assertEquals(2, order.add(MAX_HOLDERS + 1));
+		Assertions.assertEquals(3, order.add(MAX_HOLDERS + 2));
+		Assertions.assertEquals(MAX_HOLDERS, order.size());
+	}
+
+	@Test
+	void testReaddingDoesNotEvict() {
+		HolderEvictionOrder order = new HolderEvictionOrder(MAX_HOLDERS);
+
+		for (int id = 1; id <= MAX_HOLDERS; id++) {
+			order.add(id);
+		}
+
+		Assertions.assertEquals(HolderEvictionOrder.NONE, order.add(1));
+		Assertions.assertEquals(2, order.add(MAX_HOLDERS + 1));
+	}
+
+	@Test
+	void testRemovedHoldersMakeRoom() {
+		HolderEvictionOrder order = new HolderEvictionOrder(MAX_HOLDERS);
+
+		for (int id = 1; id <= MAX_HOLDERS; id++) {
+			order.add(id);
+		}
+
+		order.remove(10);
+		Assertions.assertEquals(HolderEvictionOrder.NONE, order.add(MAX_HOLDERS + 1));
+		Assertions.assertEquals(1, order.add(MAX_HOLDERS + 2));
+	}
+
+	@Test
+	void testEvictedHoldersCloseAfterFramesRetire() {
+		HolderEvictionOrder order = new HolderEvictionOrder(MAX_HOLDERS);
+		DeferredDeletionQueue queue = new DeferredDeletionQueue();
+		List<Integer> closed = new ArrayList<>();
+
+		// Same flow as PBRTextureManager.putHolder
+		for (int id = 1; id <= MAX_HOLDERS + 3; id++) {
+			int evicted = order.add(id);
+			if (evicted != HolderEvictionOrder.NONE) {
+				queue.defer(() -> closed.add(evicted));
+			}
+		}
+
+		Assertions.assertEquals(List.of(), closed);
+		Assertions.assertEquals(3, queue.getPendingCount());
+
+		queue.beginFrame(2);
+		Assertions.assertEquals(List.of(), closed);
+
+		queue.beginFrame(2);
+		Assertions.assertEquals(List.of(1, 2, 3), closed);
+	}
+
+	@Test
+	void testRejectsEmptyCapacity() {
+		Assertions.assertThrows(IllegalArgumentException.class, () -> new HolderEvictionOrder(0));
+	}
+}
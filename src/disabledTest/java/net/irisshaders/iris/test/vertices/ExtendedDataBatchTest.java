@@ -0,0 +1,147 @@
+package net.irisshaders.iris.test.vertices;
+
+import net.irisshaders.iris.vertices.BufferBuilderPolygonView;
+import net.irisshaders.iris.vertices.ExtendedDataBatch;
+import net.irisshaders.iris.vertices.ExtendedDataHelper;
+import net.irisshaders.iris.vertices.NormI8;
+import net.irisshaders.iris.vertices.NormalHelper;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.Random;
+
+public class ExtendedDataBatchTest {
+	// Position, color, texture, light and overlay, followed by the extended elements. The polygon view expects the
+	// texture coordinate at offset 16.
+	private static final int STRIDE = 48;
+	private static final int UV_OFFSET = 16;
+	private static final int NORMAL_OFFSET = 32;
+	private static final int MID_TEX_OFFSET = 36;
+	private static final int TANGENT_OFFSET = 44;
+
+	// More than one block of polygons, and not a multiple of the block size
+	private static final int POLYGONS = 150;
+
+	@Test
+	void testQuadsMatchPerPolygonPath() {
+		compare(4, false);
+	}
+
+	@Test
+	void testTrianglesMatchPerPolygonPath() {
+		compare(3, false);
+	}
+
+	@Test
+	void testPackedMidTexMatchesPerPolygonPath() {
+		compare(4, true);
+		compare(3, true);
+	}
+
+	private static void compare(int verticesPerPolygon, boolean packedMidTex) {
+		int vertexCount = POLYGONS * verticesPerPolygon;
+		long size = (long) vertexCount * STRIDE;
+		long batched = MemoryUtil.nmemCalloc(1, size);
+		long reference = MemoryUtil.nmemCalloc(1, size);
+
+		try {
+			fillRandom(batched, vertexCount, new Random(1234));
+			fillRandom(reference, vertexCount, new Random(1234));
+
+			ExtendedDataBatch.forCurrentThread().fill(batched, vertexCount, STRIDE, verticesPerPolygon,
+				UV_OFFSET, NORMAL_OFFSET, MID_TEX_OFFSET, packedMidTex, TANGENT_OFFSET);
+
+			long[] vertexPointers = new long[verticesPerPolygon];
+			for (int polygon = 0; polygon < POLYGONS; polygon++) {
+				for (int vertex = 0; vertex < verticesPerPolygon; vertex++) {
+					vertexPointers[vertex] = reference + (long) (polygon * verticesPerPolygon + vertex) * STRIDE;
+				}
+
+				fillPolygon(vertexPointers, verticesPerPolygon, packedMidTex);
+			}
+
+			for (long offset = 0; offset < size; offset++) {
+				if (MemoryUtil.memGetByte(batched + offset) != MemoryUtil.memGetByte(reference + offset)) {
+					Assertions.fail("Byte " + (offset % STRIDE) + " of vertex " + (offset / STRIDE) + " differs ("
+						+ verticesPerPolygon + " vertices per polygon, packed: " + packedMidTex + ")");
+				}
+			}
+		} finally {
+			MemoryUtil.nmemFree(batched);
+			MemoryUtil.nmemFree(reference);
+		}
+	}
+
+	private static void fillRandom(long pointer, int vertexCount, Random random) {
+		for (int i = 0; i < vertexCount; i++) {
+			long vertex = pointer + (long) i * STRIDE;
+
+			MemoryUtil.memPutFloat(vertex, random.nextFloat() * 16.0f - 8.0f);
+			MemoryUtil.memPutFloat(vertex + 4, random.nextFloat() * 16.0f - 8.0f);
+			MemoryUtil.memPutFloat(vertex + 8, random.nextFloat() * 16.0f - 8.0f);
+			MemoryUtil.memPutInt(vertex + 12, random.nextInt());
+			MemoryUtil.memPutFloat(vertex + UV_OFFSET, random.nextFloat());
+			MemoryUtil.memPutFloat(vertex + UV_OFFSET + 4, random.nextFloat());
+			MemoryUtil.memPutInt(vertex + 24, random.nextInt());
+			MemoryUtil.memPutInt(vertex + 28, random.nextInt());
+
+			Vector3f normal = new Vector3f().set(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, random.nextFloat() - 0.5f);
+			float length = (float) Math.sqrt(normal.x * normal.x + normal.y * normal.y + normal.z * normal.z);
+			MemoryUtil.memPutInt(vertex + NORMAL_OFFSET, NormI8.pack(normal.x / length, normal.y / length, normal.z / length, 0.0f));
+		}
+	}
+
+	/**
+	 * The per-polygon path of MixinBufferBuilder, which runs through the polygon view as each polygon is completed.
+	 */
+	private static void fillPolygon(long[] vertexPointers, int vertexAmount, boolean packedMidTex) {
+		BufferBuilderPolygonView polygon = new BufferBuilderPolygonView();
+		polygon.setup(vertexPointers, STRIDE, vertexAmount);
+
+		float midU = 0;
+		float midV = 0;
+
+		for (int vertex = 0; vertex < vertexAmount; vertex++) {
+			midU += polygon.u(vertex);
+			midV += polygon.v(vertex);
+		}
+
+		midU /= vertexAmount;
+		midV /= vertexAmount;
+
+		int packedMidTexCoord = ExtendedDataHelper.packMidTexCoord(midU, midV);
+
+		if (vertexAmount == 3) {
+			for (int vertex = 0; vertex < vertexAmount; vertex++) {
+				int vertexNormal = MemoryUtil.memGetInt(vertexPointers[vertex] + NORMAL_OFFSET);
+
+				int tangent = NormalHelper.computeTangentSmooth(NormI8.unpackX(vertexNormal), NormI8.unpackY(vertexNormal), NormI8.unpackZ(vertexNormal), polygon);
+
+				putMidTexCoord(vertexPointers[vertex] + MID_TEX_OFFSET, packedMidTex, midU, midV, packedMidTexCoord);
+				MemoryUtil.memPutInt(vertexPointers[vertex] + TANGENT_OFFSET, tangent);
+			}
+		} else {
+			Vector3f normal = new Vector3f();
+			NormalHelper.computeFaceNormal(normal, polygon);
+			int packedNormal = NormI8.pack(normal.x, normal.y, normal.z, 0.0f);
+			int tangent = NormalHelper.computeTangent(normal.x, normal.y, normal.z, polygon);
+
+			for (int vertex = 0; vertex < vertexAmount; vertex++) {
+				putMidTexCoord(vertexPointers[vertex] + MID_TEX_OFFSET, packedMidTex, midU, midV, packedMidTexCoord);
+				MemoryUtil.memPutInt(vertexPointers[vertex] + NORMAL_OFFSET, packedNormal);
+				MemoryUtil.memPutInt(vertexPointers[vertex] + TANGENT_OFFSET, tangent);
+			}
+		}
+	}
+
+	private static void putMidTexCoord(long pointer, boolean packed, float midU, float midV, int packedMidTexCoord) {
+		if (packed) {
+			MemoryUtil.memPutInt(pointer, packedMidTexCoord);
+		} else {
+			MemoryUtil.memPutFloat(pointer, midU);
+			MemoryUtil.memPutFloat(pointer + 4, midV);
+		}
+	}
+}
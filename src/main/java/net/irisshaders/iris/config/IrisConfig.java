@@ -35,12 +35,67 @@ public class IrisConfig {
 	 * If the update notification should be disabled or not.
 	 */
 	private boolean disableUpdateMessage;
+	/**
+	 * If static shadow terrain should be cached between frames instead of being re-rendered every frame.
+	 */
+	private boolean cacheShadowTerrain;
+	/**
+	 * If generated PBR atlases should be stored on disk and reused across resource reloads.
+	 */
+	private boolean cachePBRAtlases;
+	/**
+	 * If PBR textures of non-atlas textures should be decoded in the background instead of when they're first used.
+	 */
+	private boolean loadPBRTexturesAsync;
+	/**
+	 * If the extended vertex data of terrain and entities should be computed for a whole buffer when it's built instead
+	 * of once per polygon.
+	 */
+	private boolean batchExtendedVertexData;
+	/**
+	 * If entities should use a smaller extended vertex format with packed mid texture coordinates.
+	 */
+	private boolean compactEntityVertexFormat;
+	/**
+	 * If render targets that are never needed at the same time during a frame should share their textures.
+	 */
+	private boolean aliasRenderTargets;
+	/**
+	 * The frame rate that dynamic resolution scaling tries to hold, by rendering the render targets of composite passes
+	 * at a lower resolution. 0 to disable dynamic resolution scaling.
+	 */
+	private int dynamicResolutionTargetFps;
+	/**
+	 * If render targets rendered at a lower resolution should be upscaled with nearest filtering instead of linear
+	 * filtering.
+	 */
+	private boolean dynamicResolutionNearestUpscale;
+	/**
+	 * If the GPU time of each shader pack pass should be measured, shown in the debug screen and written to a file when
+	 * the shader pack is unloaded.
+	 */
+	private boolean profileGpu;
+	/**
+	 * If the color space conversion should be done while copying colortex0 to the screen, for shader packs without a
+	 * final program. Anything drawn to the screen after the final pass, such as by other mods, isn't converted then.
+	 */
+	private boolean fuseColorSpaceConversion;
 
 	public IrisConfig(Path propertiesPath) {
 		shaderPackName = null;
 		enableShaders = true;
 		enableDebugOptions = false;
 		disableUpdateMessage = false;
+		cacheShadowTerrain = false;
+		cachePBRAtlases = false;
+		loadPBRTexturesAsync = false;
+		batchExtendedVertexData = false;
+		compactEntityVertexFormat = false;
+		aliasRenderTargets = false;
+		dynamicResolutionTargetFps = 0;
+		dynamicResolutionNearestUpscale = false;
+		profileGpu = false;
+		fuseColorSpaceConversion = false;
 		this.propertiesPath = propertiesPath;
 	}
 
@@ -102,6 +157,46 @@ public class IrisConfig {
 		return disableUpdateMessage;
 	}
 
+	public boolean shouldCacheShadowTerrain() {
+		return cacheShadowTerrain;
+	}
+
+	public boolean shouldCachePBRAtlases() {
+		return cachePBRAtlases;
+	}
+
+	public boolean shouldLoadPBRTexturesAsync() {
+		return loadPBRTexturesAsync;
+	}
+
+	public boolean shouldBatchExtendedVertexData() {
+		return batchExtendedVertexData;
+	}
+
+	public boolean shouldUseCompactEntityVertexFormat() {
+		return compactEntityVertexFormat;
+	}
+
+	public boolean shouldAliasRenderTargets() {
+		return aliasRenderTargets;
+	}
+
+	public int getDynamicResolutionTargetFps() {
+		return dynamicResolutionTargetFps;
+	}
+
+	public boolean shouldUseNearestDynamicResolutionUpscale() {
+		return dynamicResolutionNearestUpscale;
+	}
+
+	public boolean shouldProfileGpu() {
+		return profileGpu;
+	}
+
+	public boolean shouldFuseColorSpaceConversion() {
+		return fuseColorSpaceConversion;
+	}
+
 	public void setDebugEnabled(boolean enabled) {
 		enableDebugOptions = enabled;
 	}
@@ -133,6 +228,21 @@ public class IrisConfig {
 		enableShaders = !"false".equals(properties.getProperty("enableShaders"));
 		enableDebugOptions = "true".equals(properties.getProperty("enableDebugOptions"));
 		disableUpdateMessage = "true".equals(properties.getProperty("disableUpdateMessage"));
+		cacheShadowTerrain = "true".equals(properties.getProperty("cacheShadowTerrain"));
+		cachePBRAtlases = "true".equals(properties.getProperty("cachePBRAtlases"));
+		loadPBRTexturesAsync = "true".equals(properties.getProperty("loadPBRTexturesAsync"));
+		batchExtendedVertexData = "true".equals(properties.getProperty("batchExtendedVertexData"));
+		compactEntityVertexFormat = "true".equals(properties.getProperty("compactEntityVertexFormat"));
+		aliasRenderTargets = "true".equals(properties.getProperty("aliasRenderTargets"));
+		dynamicResolutionNearestUpscale = "true".equals(properties.getProperty("dynamicResolutionNearestUpscale"));
+		profileGpu = "true".equals(properties.getProperty("profileGpu"));
+		fuseColorSpaceConversion = "true".equals(properties.getProperty("fuseColorSpaceConversion"));
+		try {
+			dynamicResolutionTargetFps = Math.max(0, Integer.parseInt(properties.getProperty("dynamicResolutionTargetFps", "0")));
+		} catch (NumberFormatException e) {
+			Iris.logger.error("Dynamic resolution target FPS setting reset; value is invalid.");
+			dynamicResolutionTargetFps = 0;
+		}
 		try {
 			IrisVideoSettings.shadowDistance = Integer.parseInt(properties.getProperty("maxShadowRenderDistance", "32"));
 			IrisVideoSettings.colorSpace = ColorSpace.valueOf(properties.getProperty("colorSpace", "SRGB"));
@@ -161,6 +271,16 @@ public class IrisConfig {
 		properties.setProperty("enableShaders", enableShaders ? "true" : "false");
 		properties.setProperty("enableDebugOptions", enableDebugOptions ? "true" : "false");
 		properties.setProperty("disableUpdateMessage", disableUpdateMessage ? "true" : "false");
+		properties.setProperty("cacheShadowTerrain", cacheShadowTerrain ? "true" : "false");
+		properties.setProperty("cachePBRAtlases", cachePBRAtlases ? "true" : "false");
+		properties.setProperty("loadPBRTexturesAsync", loadPBRTexturesAsync ? "true" : "false");
+		properties.setProperty("batchExtendedVertexData", batchExtendedVertexData ? "true" : "false");
+		properties.setProperty("compactEntityVertexFormat", compactEntityVertexFormat ? "true" : "false");
+		properties.setProperty("aliasRenderTargets", aliasRenderTargets ? "true" : "false");
+		properties.setProperty("dynamicResolutionTargetFps", String.valueOf(dynamicResolutionTargetFps));
+		properties.setProperty("dynamicResolutionNearestUpscale", dynamicResolutionNearestUpscale ? "true" : "false");
+		properties.setProperty("profileGpu", profileGpu ? "true" : "false");
+		properties.setProperty("fuseColorSpaceConversion", fuseColorSpaceConversion ? "true" : "false");
 		properties.setProperty("maxShadowRenderDistance", String.valueOf(IrisVideoSettings.shadowDistance));
 		properties.setProperty("colorSpace", IrisVideoSettings.colorSpace.name());
 		// NB: This uses ISO-8859-1 with unicode escapes as the encoding
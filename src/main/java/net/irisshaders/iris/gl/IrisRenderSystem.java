@@ -3,6 +3,10 @@ package net.irisshaders.iris.gl;
 import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.VertexSorting;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
 import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.gl.sampler.SamplerLimits;
 import org.jetbrains.annotations.Nullable;
@@ -16,6 +20,7 @@ import net.vulkanmod.vulkan.VRenderSystem;
 import net.vulkanmod.vulkan.Vulkan;
 import net.vulkanmod.vulkan.device.DeviceManager;
 import net.vulkanmod.vulkan.queue.CommandPool;
+import net.vulkanmod.vulkan.texture.VTextureSelector;
 import net.vulkanmod.vulkan.texture.VulkanImage;
 import net.vulkanmod.gl.GlTexture;
 import org.lwjgl.system.MemoryStack;
@@ -76,6 +81,29 @@ public class IrisRenderSystem {
 	// Must be >= 32 to cover all sampler units including shadowcolor0/1 at units 16-17
 	private static final int[] boundTextures = new int[32];
 
+	// Redundant bind statistics, reset every frame by resetTextureBindingCounters()
+	private static int textureBinds = 0;
+	private static int textureBindsSkipped = 0;
+	private static int lastFrameTextureBinds = 0;
+	private static int lastFrameTextureBindsSkipped = 0;
+
+	// Write tracking for mipmap generation: every write to a texture gets a new generation, and the mipmaps of a
+	// texture are only regenerated if its generation has changed since they were last generated.
+	private static final Int2IntMap textureWriteGenerations = new Int2IntOpenHashMap();
+	private static final Int2IntMap mipmapGenerations = new Int2IntOpenHashMap();
+	private static final Int2LongMap mipmappedImages = new Int2LongOpenHashMap();
+	private static int nextWriteGeneration = 1;
+
+	// Images bound for writing by compute programs, see bindImageTexture()
+	private static final int GL_READ_ONLY = 0x88B8;
+	private static final int[] boundWritableImages = new int[16];
+
+	// Mipmap generation statistics, reset every frame by resetMipmapCounters()
+	private static int mipmapsGenerated = 0;
+	private static int mipmapsSkipped = 0;
+	private static int lastFrameMipmapsGenerated = 0;
+	private static int lastFrameMipmapsSkipped = 0;
+
 	public static void initRenderer() {
 		Iris.logger.info("Iris Vulkan Render System initialized");
 		Iris.logger.info("Vulkan backend: compute={}, tessellation={}", supportsCompute, supportsTesselation);
@@ -97,6 +125,16 @@ public class IrisRenderSystem {
 	}
 
 	public static void bindTextureToUnit(int target, int unit, int texture) {
+		// Skip the bind if the unit already holds this texture. VulkanMod's own code (and vanilla shaders) can
+		// rebind units behind our back, so the image actually held by the texture selector is checked as well;
+		// leaving the selector untouched also means the descriptor set isn't rewritten for the next draw.
+		if (isTextureBound(unit, texture)) {
+			textureBindsSkipped++;
+			return;
+		}
+
+		textureBinds++;
+
 		// Bind texture to a specific unit via VulkanMod's texture selector
 		int prevUnit = activeTextureUnit;
 		GlStateManager._activeTexture(org.lwjgl.opengl.GL13.GL_TEXTURE0 + unit);
@@ -109,6 +147,34 @@ public class IrisRenderSystem {
 		textureBindings.put(unit, (long) texture);
 	}
 
+	private static boolean isTextureBound(int unit, int texture) {
+		if (texture <= 0 || unit < 0 || unit >= boundTextures.length || boundTextures[unit] != texture) {
+			return false;
+		}
+
+		GlTexture glTex = GlTexture.getTexture(texture);
+		return glTex != null && glTex.getVulkanImage() != null && VTextureSelector.getBoundTexture(unit) == glTex.getVulkanImage();
+	}
+
+	/**
+	 * Stores the bind counters of the frame that just finished and starts counting again.
+	 * Called once per frame at the start of level rendering.
+	 */
+	public static void resetTextureBindingCounters() {
+		lastFrameTextureBinds = textureBinds;
+		lastFrameTextureBindsSkipped = textureBindsSkipped;
+		textureBinds = 0;
+		textureBindsSkipped = 0;
+	}
+
+	public static int getLastFrameTextureBinds() {
+		return lastFrameTextureBinds;
+	}
+
+	public static int getLastFrameTextureBindsSkipped() {
+		return lastFrameTextureBindsSkipped;
+	}
+
 	public static void texParameteri(int texture, int target, int pname, int param) {
 		// Bind the texture, set the parameter via GlStateManager, then restore
 		GlStateManager._bindTexture(texture);
@@ -146,6 +212,7 @@ public class IrisRenderSystem {
 		// then call through to create the actual VulkanImage
 		GlStateManager._bindTexture(texture);
 		net.vulkanmod.gl.GlTexture.texImage2D(target, level, internalformat, width, height, border, format, type, pixels);
+		markTextureWritten(texture);
 	}
 
 	public static void texImage3D(int texture, int target, int level, int internalformat, int width, int height, int depth, int border, int format, int type, @Nullable ByteBuffer pixels) {
@@ -160,6 +227,62 @@ public class IrisRenderSystem {
 		net.vulkanmod.vulkan.texture.ImageUtil.generateMipmaps(glTex.getVulkanImage());
 	}
 
+	/**
+	 * Generates the mipmaps of a texture, unless they were already generated after the last write to it.
+	 *
+	 * @return whether the mipmaps were generated
+	 */
+	public static boolean generateMipmapsIfStale(int texture, int mipmapTarget) {
+		GlTexture glTex = GlTexture.getTexture(texture);
+		if (glTex == null || glTex.getVulkanImage() == null) return false;
+
+		int generation = textureWriteGenerations.get(texture);
+		long image = glTex.getVulkanImage().getId();
+
+		// The image is compared as well, since VulkanMod replaces it when the texture is reallocated
+		if (mipmapGenerations.containsKey(texture) && mipmapGenerations.get(texture) == generation
+			&& mipmappedImages.get(texture) == image) {
+			mipmapsSkipped++;
+			return false;
+		}
+
+		generateMipmaps(texture, mipmapTarget);
+		mipmapGenerations.put(texture, generation);
+		mipmappedImages.put(texture, image);
+		mipmapsGenerated++;
+		return true;
+	}
+
+	/**
+	 * Records that the contents of a texture have changed, which makes its mipmaps stale. Called when a framebuffer
+	 * that draws to the texture is bound or cleared, when a compute program that can write to it is dispatched, and
+	 * when it is (re)allocated or copied to.
+	 */
+	public static void markTextureWritten(int texture) {
+		if (texture <= 0) return;
+
+		textureWriteGenerations.put(texture, nextWriteGeneration++);
+	}
+
+	/**
+	 * Stores the mipmap counters of the frame that just finished and starts counting again.
+	 * Called once per frame at the start of level rendering.
+	 */
+	public static void resetMipmapCounters() {
+		lastFrameMipmapsGenerated = mipmapsGenerated;
+		lastFrameMipmapsSkipped = mipmapsSkipped;
+		mipmapsGenerated = 0;
+		mipmapsSkipped = 0;
+	}
+
+	public static int getLastFrameMipmapsGenerated() {
+		return lastFrameMipmapsGenerated;
+	}
+
+	public static int getLastFrameMipmapsSkipped() {
+		return lastFrameMipmapsSkipped;
+	}
+
 	public static void copyTexImage2D(int target, int level, int internalFormat, int x, int y, int width, int height, int border) {
 		// Legacy GL call — use copyDepthImage() for explicit Vulkan depth copies
 	}
@@ -167,6 +290,7 @@ public class IrisRenderSystem {
 	/**
 	 * Copies depth data from one texture to another using vkCmdCopyImage.
 	 * Used for depthtex1/depthtex2 creation (pre-translucent/pre-hand depth snapshots).
+	 * Color images with matching formats can be copied too, since each image's own aspect mask is used.
 	 */
 	private static int depthCopyLogCount = 0;
 	public static void copyDepthImage(int srcDepthTexId, int dstDepthTexId, int width, int height) {
@@ -181,6 +305,8 @@ public class IrisRenderSystem {
 			return;
 		}
 
+		markTextureWritten(dstDepthTexId);
+
 		VulkanImage srcImage = srcGlTex.getVulkanImage();
 		VulkanImage dstImage = dstGlTex.getVulkanImage();
 
@@ -277,6 +403,8 @@ public class IrisRenderSystem {
 			return;
 		}
 
+		markTextureWritten(destTexture);
+
 		// End current render pass — vkCmdCopyImage cannot be called inside a render pass
 		renderer.endRenderPass();
 
@@ -308,6 +436,11 @@ public class IrisRenderSystem {
 
 	public static void bindImageTexture(int unit, int texture, int level, boolean layered, int layer, int access, int format) {
 		// Storage image binding via descriptor sets - implemented in Phase 8
+
+		// Remember which images compute dispatches may write to, so that their mipmaps can be marked as stale
+		if (unit >= 0 && unit < boundWritableImages.length) {
+			boundWritableImages[unit] = access == GL_READ_ONLY ? 0 : texture;
+		}
 	}
 
 	public static int getMaxImageUnits() {
@@ -695,6 +828,7 @@ public class IrisRenderSystem {
 
 	public static void dispatchCompute(int workX, int workY, int workZ) {
 		// vkCmdDispatch - implemented in Phase 18
+		markBoundImagesWritten();
 	}
 
 	public static void dispatchCompute(Vector3i workGroups) {
@@ -703,6 +837,13 @@ public class IrisRenderSystem {
 
 	public static void dispatchComputeIndirect(long offset) {
 		// vkCmdDispatchIndirect - implemented in Phase 18
+		markBoundImagesWritten();
+	}
+
+	private static void markBoundImagesWritten() {
+		for (int texture : boundWritableImages) {
+			markTextureWritten(texture);
+		}
 	}
 
 	public static void memoryBarrier(int barriers) {
@@ -822,6 +963,11 @@ public class IrisRenderSystem {
 
 	public static void deleteTexture(int id) {
 		GlStateManager._deleteTexture(id);
+
+		// Texture ids get reused, so a new texture must not inherit the mipmap state of a deleted one
+		textureWriteGenerations.remove(id);
+		mipmapGenerations.remove(id);
+		mipmappedImages.remove(id);
 	}
 
 	public static void useProgram(int program) {
@@ -2,9 +2,12 @@ package net.irisshaders.iris.gl.framebuffer;
 
 import it.unimi.dsi.fastutil.ints.Int2IntArrayMap;
 import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.gl.GlResource;
 import net.irisshaders.iris.gl.IrisRenderSystem;
+import net.irisshaders.iris.uniforms.SystemTimeUniforms;
+import net.irisshaders.iris.vulkan.resource.DeferredDeletionQueue;
 import net.vulkanmod.gl.GlTexture;
 import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.framebuffer.Framebuffer;
@@ -17,6 +20,8 @@ import org.lwjgl.vulkan.VkCommandBuffer;
 import org.lwjgl.vulkan.VkImageSubresourceRange;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -56,34 +61,77 @@ public class GlFramebuffer extends GlResource {
 	// clear wipes existing depth data (terrain depth wiped by entity clear → entity triangles
 	// overwrite terrain everywhere in the gbuffer, producing full-screen artifacts).
 	// Using per-depth-texture tracking ensures only the first bind clears depth.
-	private static final it.unimi.dsi.fastutil.ints.Int2IntMap depthTexClearFrame =
-		new it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap();
+	// Frames are counted with the frameCounter uniform: Renderer.getCurrentFrame() is the index of the frame in
+	// flight, which repeats every few frames.
+	private static final Int2IntMap depthTexClearFrame = new Int2IntOpenHashMap();
 
 	// Track last bound Iris framebuffer for color attachment layout management
 	private static GlFramebuffer lastBoundIrisFramebuffer = null;
 
-	// Global cache: VulkanMod Framebuffer objects keyed by attachment hash.
+	// Global cache: VulkanMod Framebuffer objects keyed by the images they are made of.
 	// Multiple GlFramebuffer instances with identical attachments (same VulkanImages)
 	// share the SAME VulkanMod Framebuffer. This is critical because VulkanMod's
 	// Renderer.beginRendering() uses Java object identity to detect framebuffer changes —
 	// if terrain and entity GlFramebuffers each create their own Framebuffer, the renderer
 	// sees "different" objects and restarts the render pass on every entity draw.
 	// With sharing, beginRendering() detects same object and keeps the pass active.
-	private static final Map<Integer, CachedFramebuffer> framebufferCache = new HashMap<>();
+	private static final Map<FramebufferKey, CachedFramebuffer> framebufferCache = new HashMap<>();
+
+	// Entries beyond this count that weren't used during the last frame are evicted, least recently used first
+	private static final int MAX_CACHED_FRAMEBUFFERS = 128;
+	private static long sweepFrame;
+	private static long evictedFramebuffers;
+
+	/**
+	 * Identifies a Vulkan framebuffer by the textures it is made of and the images those textures had when it was
+	 * created. A texture keeps its id when a resize gives it a new image, so the texture ids alone can't tell whether
+	 * a framebuffer still points at the right images.
+	 */
+	private record FramebufferKey(int[] colorIndices, int[] colorTextures, long[] colorImages, int depthTexture,
+								  long depthImage, int colorFinalLayout) {
+		boolean isCurrent() {
+			for (int i = 0; i < colorTextures.length; i++) {
+				if (getImageId(colorTextures[i]) != colorImages[i]) {
+					return false;
+				}
+			}
+
+			return getImageId(depthTexture) == depthImage;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof FramebufferKey other && depthTexture == other.depthTexture && depthImage == other.depthImage
+				&& colorFinalLayout == other.colorFinalLayout && Arrays.equals(colorIndices, other.colorIndices)
+				&& Arrays.equals(colorTextures, other.colorTextures) && Arrays.equals(colorImages, other.colorImages);
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = Arrays.hashCode(colorIndices);
+			hash = hash * 31 + Arrays.hashCode(colorTextures);
+			hash = hash * 31 + Arrays.hashCode(colorImages);
+			hash = hash * 31 + depthTexture;
+			hash = hash * 31 + Long.hashCode(depthImage);
+			return hash * 31 + colorFinalLayout;
+		}
+	}
 
 	private static class CachedFramebuffer {
+		final FramebufferKey key;
 		final Framebuffer framebuffer;
 		final RenderPass renderPassClear;
 		final RenderPass renderPassLoad;
-		final int colorFinalLayout;
 		int refCount; // Track how many GlFramebuffers reference this
+		long lastUsedFrame;
+		// Set once the entry has left the cache and its cleanup has been scheduled
+		boolean evicted;
 
-		CachedFramebuffer(Framebuffer fb, RenderPass clear, RenderPass load, int colorFinalLayout) {
+		CachedFramebuffer(FramebufferKey key, Framebuffer fb, RenderPass clear, RenderPass load) {
+			this.key = key;
 			this.framebuffer = fb;
 			this.renderPassClear = clear;
 			this.renderPassLoad = load;
-			this.colorFinalLayout = colorFinalLayout;
-			this.refCount = 1;
 		}
 
 		void cleanUp() {
@@ -187,8 +235,11 @@ public class GlFramebuffer extends GlResource {
 		return vulkanFramebuffer;
 	}
 
-	// Track which attachment set is cached so we know when to recreate
-	private int cachedAttachmentHash = 0;
+	// The cache entry of the current attachments
+	private CachedFramebuffer cached;
+	// The entry of the attachments used before the current ones. It stays referenced, so that framebuffers of
+	// render targets that swap their main and alt textures every frame don't recreate their Vulkan framebuffer.
+	private CachedFramebuffer previous;
 	private static int diagBindCount = 0;
 	private static final int DIAG_BIND_MAX = 60;
 
@@ -206,142 +257,44 @@ public class GlFramebuffer extends GlResource {
 		// Get depth attachment ID (may be 0 if no depth)
 		int depthTexId = hasDepthAttachment ? depthAttachment : 0;
 
-		// Compute a hash of current attachments INCLUDING VkImage handles to detect
-		// VulkanImage replacement (GlTexture.allocateImage() creates new VkImage on resize
-		// but keeps the same texture ID, so texture-ID-only hash misses the change).
-		int attachmentHash = colorAttachments.hashCode() * 31 + depthTexId;
-		for (Int2IntMap.Entry entry : colorAttachments.int2IntEntrySet()) {
-			GlTexture glTex = GlTexture.getTexture(entry.getIntValue());
-			if (glTex != null && glTex.getVulkanImage() != null) {
-				attachmentHash = attachmentHash * 31 + Long.hashCode(glTex.getVulkanImage().getId());
-			}
-		}
-		if (hasDepthAttachment && depthTexId > 0) {
-			GlTexture glDepthTex = GlTexture.getTexture(depthTexId);
-			if (glDepthTex != null && glDepthTex.getVulkanImage() != null) {
-				attachmentHash = attachmentHash * 31 + Long.hashCode(glDepthTex.getVulkanImage().getId());
-			}
-		}
-
-		// Include colorFinalLayout in hash so framebuffers with different final layouts
-		// (e.g., SHADER_READ_ONLY vs COLOR_ATTACHMENT_OPTIMAL) get different cache entries.
-		int cacheKey = attachmentHash * 31 + colorFinalLayout;
-
 		// Look up or create VulkanMod framebuffer from global cache.
 		// Multiple GlFramebuffer instances with identical attachments share the SAME
 		// VulkanMod Framebuffer, so Renderer.beginRendering()'s identity check
 		// (this.boundFramebuffer != framebuffer) detects no change and skips
 		// the render pass restart. This eliminates the terrain→entity ping-pong.
-		if (vulkanFramebuffer == null || cachedAttachmentHash != attachmentHash) {
-			// Detach from previous cache entry if any
-			if (cachedAttachmentHash != 0) {
-				CachedFramebuffer prev = framebufferCache.get(cachedAttachmentHash * 31 + colorFinalLayout);
-				if (prev != null) {
-					prev.refCount--;
-					if (prev.refCount <= 0) {
-						framebufferCache.remove(cachedAttachmentHash * 31 + colorFinalLayout);
-						prev.cleanUp();
-					}
-				}
-			}
-			// Clear per-instance references (don't clean up — cache owns them)
-			vulkanFramebuffer = null;
-			vulkanRenderPassClear = null;
-			vulkanRenderPassLoad = null;
-
-			// Check global cache
-			CachedFramebuffer cached = framebufferCache.get(cacheKey);
-			if (cached != null && cached.colorFinalLayout == colorFinalLayout) {
-				// Reuse cached framebuffer — this is the key optimization
-				vulkanFramebuffer = cached.framebuffer;
-				vulkanRenderPassClear = cached.renderPassClear;
-				vulkanRenderPassLoad = cached.renderPassLoad;
-				cached.refCount++;
+		// The entries are checked against the current attachments in place, so that binding doesn't allocate a key.
+		if (!isUsable(cached)) {
+			if (isUsable(previous)) {
+				// Switching back to the previous attachments: this instance still holds a reference to their entry
+				CachedFramebuffer current = cached;
+				cached = previous;
+				previous = current;
 			} else {
-				// Cache miss — create new VulkanMod Framebuffer
-
-				// Collect VulkanImages for ALL color attachments (MRT)
-				List<VulkanImage> colorImages = new ArrayList<>();
-				int maxIndex = 0;
-				for (Int2IntMap.Entry entry : colorAttachments.int2IntEntrySet()) {
-					if (entry.getIntKey() > maxIndex) maxIndex = entry.getIntKey();
-				}
-
-				for (int i = 0; i <= maxIndex; i++) {
-					if (!colorAttachments.containsKey(i)) continue;
-					int texId = colorAttachments.get(i);
-					if (texId <= 0) continue;
-
-					GlTexture glTex = GlTexture.getTexture(texId);
-					if (glTex == null || glTex.getVulkanImage() == null) {
-						Iris.logger.warn("GlFramebuffer.bind(): No VulkanImage for color attachment {} (tex {}) in FB {}",
-							i, texId, getGlId());
-						continue;
-					}
-					colorImages.add(glTex.getVulkanImage());
-				}
-
-				// Look up VulkanImage for depth attachment (optional)
-				VulkanImage depthImage = null;
-				if (hasDepthAttachment && depthTexId > 0) {
-					GlTexture glDepthTex = GlTexture.getTexture(depthTexId);
-					if (glDepthTex != null) {
-						depthImage = glDepthTex.getVulkanImage();
-					}
-				}
-
-				if (colorImages.isEmpty() && depthImage == null) {
-					Iris.logger.warn("GlFramebuffer.bind(): No valid VulkanImages for FB {}", getGlId());
-					return;
-				}
-
-				// Create VulkanMod Framebuffer with MRT support
-				Framebuffer newFb;
-				if (colorImages.size() == 1) {
-					newFb = Framebuffer.builder(colorImages.get(0), depthImage).build();
-				} else {
-					newFb = Framebuffer.builder(colorImages, depthImage).build();
-				}
-
-				// Create TWO render pass variants: CLEAR depth and LOAD depth
-				RenderPass.Builder rpClearBuilder = RenderPass.builder(newFb);
-				configureColorAttachments(rpClearBuilder);
-				if (depthImage != null) {
-					rpClearBuilder.getDepthAttachmentInfo()
-						.setOps(VK_ATTACHMENT_LOAD_OP_CLEAR, VK_ATTACHMENT_STORE_OP_STORE)
-						.setFinalLayout(VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL);
-				}
-				RenderPass rpClear = rpClearBuilder.build();
-
-				RenderPass.Builder rpLoadBuilder = RenderPass.builder(newFb);
-				configureColorAttachments(rpLoadBuilder);
-				if (depthImage != null) {
-					rpLoadBuilder.getDepthAttachmentInfo()
-						.setOps(VK_ATTACHMENT_LOAD_OP_LOAD, VK_ATTACHMENT_STORE_OP_STORE)
-						.setFinalLayout(VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL);
-				}
-				RenderPass rpLoad = rpLoadBuilder.build();
-
-				// Store in cache
-				CachedFramebuffer newCached = new CachedFramebuffer(newFb, rpClear, rpLoad, colorFinalLayout);
-				// Remove stale entry if present
-				CachedFramebuffer stale = framebufferCache.put(cacheKey, newCached);
-				if (stale != null && stale.refCount <= 0) {
-					stale.cleanUp();
-				}
+				// Detach from the entry before the previous one, if any
+				releaseCacheEntry(previous);
+				previous = cached;
+				cached = acquireCacheEntry(createKey());
+			}
 
-				vulkanFramebuffer = newFb;
-				vulkanRenderPassClear = rpClear;
-				vulkanRenderPassLoad = rpLoad;
+			if (cached == null) {
+				// The old entry is now referenced as the previous one
+				vulkanFramebuffer = null;
+				vulkanRenderPassClear = null;
+				vulkanRenderPassLoad = null;
+				return;
 			}
 
-			cachedAttachmentHash = attachmentHash;
+			vulkanFramebuffer = cached.framebuffer;
+			vulkanRenderPassClear = cached.renderPassClear;
+			vulkanRenderPassLoad = cached.renderPassLoad;
 		}
 
+		cached.lastUsedFrame = sweepFrame;
+
 		// Determine which render pass to use: CLEAR depth on first bind per frame, LOAD otherwise.
 		// Track per DEPTH TEXTURE ID (not per GlFramebuffer instance) to prevent terrain/entity
 		// framebuffers sharing the same depth from double-clearing.
-		int currentFrame = Renderer.getCurrentFrame();
+		int currentFrame = SystemTimeUniforms.COUNTER.getAsInt();
 		boolean clearDepth = false;
 		if (hasDepthAttachment && depthTexId > 0) {
 			int lastClear = depthTexClearFrame.getOrDefault(depthTexId, -1);
@@ -364,6 +317,145 @@ public class GlFramebuffer extends GlResource {
 			renderer.endRenderPass();
 		}
 		renderer.beginRendering(renderPass, vulkanFramebuffer);
+
+		markColorAttachmentsWritten();
+	}
+
+	/**
+	 * Checks whether a cache entry matches the current attachments of this framebuffer and the images they have now.
+	 */
+	private boolean isUsable(CachedFramebuffer entry) {
+		if (entry == null || entry.evicted) {
+			return false;
+		}
+
+		FramebufferKey key = entry.key;
+
+		if (key.colorFinalLayout() != colorFinalLayout || key.depthTexture() != (hasDepthAttachment ? depthAttachment : 0)
+			|| key.colorIndices().length != colorAttachments.size()) {
+			return false;
+		}
+
+		for (int i = 0; i < key.colorIndices().length; i++) {
+			if (!colorAttachments.containsKey(key.colorIndices()[i]) || colorAttachments.get(key.colorIndices()[i]) != key.colorTextures()[i]) {
+				return false;
+			}
+		}
+
+		return key.isCurrent();
+	}
+
+	private FramebufferKey createKey() {
+		int[] indices = colorAttachments.keySet().toIntArray();
+		Arrays.sort(indices);
+
+		int[] textures = new int[indices.length];
+		long[] images = new long[indices.length];
+
+		for (int i = 0; i < indices.length; i++) {
+			textures[i] = colorAttachments.get(indices[i]);
+			images[i] = getImageId(textures[i]);
+		}
+
+		int depthTexture = hasDepthAttachment ? depthAttachment : 0;
+
+		return new FramebufferKey(indices, textures, images, depthTexture, getImageId(depthTexture), colorFinalLayout);
+	}
+
+	private static long getImageId(int texture) {
+		if (texture <= 0) {
+			return VK_NULL_HANDLE;
+		}
+
+		GlTexture glTex = GlTexture.getTexture(texture);
+
+		return glTex != null && glTex.getVulkanImage() != null ? glTex.getVulkanImage().getId() : VK_NULL_HANDLE;
+	}
+
+	private CachedFramebuffer acquireCacheEntry(FramebufferKey key) {
+		CachedFramebuffer entry = framebufferCache.get(key);
+
+		if (entry == null) {
+			// Cache miss — create new VulkanMod Framebuffer
+			entry = createCacheEntry(key);
+
+			if (entry == null) {
+				return null;
+			}
+
+			framebufferCache.put(key, entry);
+		}
+
+		entry.refCount++;
+
+		return entry;
+	}
+
+	private CachedFramebuffer createCacheEntry(FramebufferKey key) {
+		// Collect VulkanImages for ALL color attachments (MRT), in attachment order
+		List<VulkanImage> colorImages = new ArrayList<>();
+
+		for (int i = 0; i < key.colorIndices().length; i++) {
+			int texId = key.colorTextures()[i];
+			if (texId <= 0) continue;
+
+			GlTexture glTex = GlTexture.getTexture(texId);
+			if (glTex == null || glTex.getVulkanImage() == null) {
+				Iris.logger.warn("GlFramebuffer.bind(): No VulkanImage for color attachment {} (tex {}) in FB {}",
+					key.colorIndices()[i], texId, getGlId());
+				continue;
+			}
+			colorImages.add(glTex.getVulkanImage());
+		}
+
+		// Look up VulkanImage for depth attachment (optional)
+		VulkanImage depthImage = null;
+		if (key.depthTexture() > 0) {
+			GlTexture glDepthTex = GlTexture.getTexture(key.depthTexture());
+			if (glDepthTex != null) {
+				depthImage = glDepthTex.getVulkanImage();
+			}
+		}
+
+		if (colorImages.isEmpty() && depthImage == null) {
+			Iris.logger.warn("GlFramebuffer.bind(): No valid VulkanImages for FB {}", getGlId());
+			return null;
+		}
+
+		// Create VulkanMod Framebuffer with MRT support
+		Framebuffer newFb;
+		if (colorImages.size() == 1) {
+			newFb = Framebuffer.builder(colorImages.get(0), depthImage).build();
+		} else {
+			newFb = Framebuffer.builder(colorImages, depthImage).build();
+		}
+
+		// Create TWO render pass variants: CLEAR depth and LOAD depth
+		RenderPass.Builder rpClearBuilder = RenderPass.builder(newFb);
+		configureColorAttachments(rpClearBuilder);
+		if (depthImage != null) {
+			rpClearBuilder.getDepthAttachmentInfo()
+				.setOps(VK_ATTACHMENT_LOAD_OP_CLEAR, VK_ATTACHMENT_STORE_OP_STORE)
+				.setFinalLayout(VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL);
+		}
+		RenderPass rpClear = rpClearBuilder.build();
+
+		RenderPass.Builder rpLoadBuilder = RenderPass.builder(newFb);
+		configureColorAttachments(rpLoadBuilder);
+		if (depthImage != null) {
+			rpLoadBuilder.getDepthAttachmentInfo()
+				.setOps(VK_ATTACHMENT_LOAD_OP_LOAD, VK_ATTACHMENT_STORE_OP_STORE)
+				.setFinalLayout(VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL);
+		}
+		RenderPass rpLoad = rpLoadBuilder.build();
+
+		return new CachedFramebuffer(key, newFb, rpClear, rpLoad);
+	}
+
+	private void markColorAttachmentsWritten() {
+		for (Int2IntMap.Entry entry : colorAttachments.int2IntEntrySet()) {
+			IrisRenderSystem.markTextureWritten(entry.getIntValue());
+		}
 	}
 
 	public void bindAsReadBuffer() {
@@ -500,35 +592,108 @@ public class GlFramebuffer extends GlResource {
 				img.transitionImageLayout(stack, cmd, VK_IMAGE_LAYOUT_SHADER_READ_ONLY_OPTIMAL);
 			}
 		}
+
+		markColorAttachmentsWritten();
 	}
 
 	private void cleanUpVulkanResources() {
-		// Detach from cache entry — cache manages actual cleanup via refCount
-		if (cachedAttachmentHash != 0) {
-			int cacheKey = cachedAttachmentHash * 31 + colorFinalLayout;
-			CachedFramebuffer cached = framebufferCache.get(cacheKey);
-			if (cached != null) {
-				cached.refCount--;
-				if (cached.refCount <= 0) {
-					framebufferCache.remove(cacheKey);
-					cached.cleanUp();
-				}
-			}
-		}
+		// Detach from cache entries — cache manages actual cleanup via refCount
+		releaseCacheEntry(cached);
+		releaseCacheEntry(previous);
 		vulkanFramebuffer = null;
 		vulkanRenderPassClear = null;
 		vulkanRenderPassLoad = null;
-		cachedAttachmentHash = 0;
+		cached = null;
+		previous = null;
+	}
+
+	private static void releaseCacheEntry(CachedFramebuffer entry) {
+		if (entry == null) {
+			return;
+		}
+
+		entry.refCount--;
+		if (entry.refCount <= 0 && !entry.evicted) {
+			evict(entry);
+		}
+	}
+
+	private static void evict(CachedFramebuffer entry) {
+		entry.evicted = true;
+		framebufferCache.remove(entry.key, entry);
+		DeferredDeletionQueue.INSTANCE.defer(entry::cleanUp);
+	}
+
+	/**
+	 * Exchanges two textures wherever they are used as color attachments, for render targets that swap their main
+	 * and alt textures. Unlike {@link #addColorAttachment}, the Vulkan framebuffer of the old attachments is kept
+	 * around, since the textures are expected to be swapped back.
+	 */
+	public void swapColorTextures(int first, int second) {
+		for (Int2IntMap.Entry entry : colorAttachments.int2IntEntrySet()) {
+			if (entry.getIntValue() == first) {
+				entry.setValue(second);
+			} else if (entry.getIntValue() == second) {
+				entry.setValue(first);
+			}
+		}
+	}
+
+	/**
+	 * Evicts the cached framebuffers whose textures have been given new images, such as by a resize, or have been
+	 * deleted. Those can never be bound again, and the handles of their images may be reused by new images. If the
+	 * cache is still over its limit, the least recently used framebuffers that weren't bound during the last frame
+	 * are evicted as well. Instances that still reference an evicted framebuffer create a new one the next time they
+	 * are bound. Call once per frame, before anything is bound.
+	 */
+	public static void evictStaleFramebuffers() {
+		sweepFrame++;
+
+		List<CachedFramebuffer> evicted = new ArrayList<>();
+		List<CachedFramebuffer> idle = new ArrayList<>();
+
+		for (CachedFramebuffer entry : framebufferCache.values()) {
+			if (!entry.key.isCurrent()) {
+				evicted.add(entry);
+			} else if (entry.lastUsedFrame < sweepFrame - 1) {
+				idle.add(entry);
+			}
+		}
+
+		int excess = framebufferCache.size() - evicted.size() - MAX_CACHED_FRAMEBUFFERS;
+		if (excess > 0) {
+			idle.sort(Comparator.comparingLong(entry -> entry.lastUsedFrame));
+			evicted.addAll(idle.subList(0, Math.min(excess, idle.size())));
+		}
+
+		for (CachedFramebuffer entry : evicted) {
+			evict(entry);
+		}
+		evictedFramebuffers += evicted.size();
+
+		// Clears of earlier frames don't matter anymore, and their depth textures may have been deleted since
+		int frame = SystemTimeUniforms.COUNTER.getAsInt();
+		depthTexClearFrame.int2IntEntrySet().removeIf(entry -> entry.getIntValue() != frame);
+	}
+
+	public static int getCachedFramebufferCount() {
+		return framebufferCache.size();
+	}
+
+	/**
+	 * @return how many framebuffers have been evicted from the cache because their images changed or they went unused
+	 */
+	public static long getEvictedFramebufferCount() {
+		return evictedFramebuffers;
 	}
 
 	/**
 	 * Clears the global framebuffer cache. Call on pipeline reload / shader pack change.
 	 */
 	public static void clearFramebufferCache() {
-		for (CachedFramebuffer cached : framebufferCache.values()) {
-			cached.cleanUp();
+		for (CachedFramebuffer cached : List.copyOf(framebufferCache.values())) {
+			evict(cached);
 		}
-		framebufferCache.clear();
 		depthTexClearFrame.clear();
 	}
 
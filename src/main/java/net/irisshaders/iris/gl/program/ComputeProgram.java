@@ -5,6 +5,7 @@ import net.irisshaders.iris.gl.GlResource;
 import net.irisshaders.iris.gl.IrisRenderSystem;
 import net.irisshaders.iris.pipeline.WorldRenderingPipeline;
 import net.irisshaders.iris.shaderpack.FilledIndirectPointer;
+import net.irisshaders.iris.vulkan.profiler.GpuTimestampProfiler;
 import org.joml.Vector2f;
 import org.joml.Vector3i;
 
@@ -17,6 +18,7 @@ import org.joml.Vector3i;
  * Full implementation in Phase 18 (Compute Shaders).
  */
 public final class ComputeProgram extends GlResource {
+	private final String name;
 	private final ProgramUniforms uniforms;
 	private final ProgramSamplers samplers;
 	private final ProgramImages images;
@@ -28,9 +30,11 @@ public final class ComputeProgram extends GlResource {
 	private Vector3i cachedWorkGroups;
 	private FilledIndirectPointer indirectPointer;
 
-	ComputeProgram(int program, ProgramUniforms uniforms, ProgramSamplers samplers, ProgramImages images) {
+	ComputeProgram(String name, int program, ProgramUniforms uniforms, ProgramSamplers samplers, ProgramImages images) {
 		super(program);
 
+		this.name = name;
+
 		localSize = new int[]{1, 1, 1}; // Default local size; will be read from SPIR-V reflection in Phase 18
 		this.uniforms = uniforms;
 		this.samplers = samplers;
@@ -84,11 +88,15 @@ public final class ComputeProgram extends GlResource {
 			IrisRenderSystem.memoryBarrier(0); // Pipeline barrier
 		}
 
+		int timer = GpuTimestampProfiler.begin(name);
+
 		if (indirectPointer != null) {
 			IrisRenderSystem.dispatchComputeIndirect(indirectPointer.offset());
 		} else {
 			IrisRenderSystem.dispatchCompute(getWorkGroups(width, height));
 		}
+
+		GpuTimestampProfiler.end(timer);
 	}
 
 	public void destroyInternal() {
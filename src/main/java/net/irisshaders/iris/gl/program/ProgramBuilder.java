@@ -388,7 +388,7 @@ public class ProgramBuilder extends ProgramUniforms.Builder implements SamplerHo
 	}
 
 	public ComputeProgram buildCompute() {
-		return new ComputeProgram(program, super.buildUniforms(), this.samplers.build(), this.images.build());
+		return new ComputeProgram(name, program, super.buildUniforms(), this.samplers.build(), this.images.build());
 	}
 
 	@Override
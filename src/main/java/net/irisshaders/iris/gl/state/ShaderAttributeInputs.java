@@ -12,6 +12,7 @@ public class ShaderAttributeInputs {
 	private boolean newLines;
 	private boolean glint;
 	private boolean text;
+	private boolean packedMidTexCoord;
 	// WARNING: adding new fields requires updating hashCode and equals methods!
 
 	public ShaderAttributeInputs(VertexFormat format, boolean isFullbright, boolean isLines, boolean glint, boolean text) {
@@ -42,6 +43,10 @@ public class ShaderAttributeInputs {
 			if ("Normal".equals(name)) {
 				normal = true;
 			}
+
+			if ("iris_MidTexPacked".equals(name)) {
+				packedMidTexCoord = true;
+			}
 		});
 	}
 
@@ -81,6 +86,10 @@ public class ShaderAttributeInputs {
 		return glint;
 	}
 
+	public boolean hasPackedMidTexCoord() {
+		return packedMidTexCoord;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -93,6 +102,7 @@ public class ShaderAttributeInputs {
 		result = prime * result + (newLines ? 1231 : 1237);
 		result = prime * result + (glint ? 1231 : 1237);
 		result = prime * result + (text ? 1231 : 1237);
+		result = prime * result + (packedMidTexCoord ? 1231 : 1237);
 		return result;
 	}
 
@@ -119,7 +129,9 @@ public class ShaderAttributeInputs {
 			return false;
 		if (glint != other.glint)
 			return false;
-		return text == other.text;
+		if (text != other.text)
+			return false;
+		return packedMidTexCoord == other.packedMidTexCoord;
 	}
 
 	public boolean isText() {
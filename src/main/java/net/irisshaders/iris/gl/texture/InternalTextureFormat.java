@@ -115,4 +115,20 @@ public enum InternalTextureFormat {
 	public GlVersion getMinimumGlVersion() {
 		return minimumGlVersion;
 	}
+
+	/**
+	 * Estimates how many bytes a single pixel of this format takes up on the GPU. Three component formats are counted
+	 * as four components, since Vulkan implementations generally can't render to them and pad them instead.
+	 */
+	public int getBytesPerPixel() {
+		return switch (this) {
+			case R3_G3_B2, R8, R8_SNORM, R8I, R8UI -> 1;
+			case RG8, RG8_SNORM, RG8I, RG8UI, R16, R16_SNORM, R16F, R16I, R16UI -> 2;
+			case RG16, RG16_SNORM, RG16F, RG16I, RG16UI, R32F, R32I, R32UI, RGB5_A1, RGB10_A2, R11F_G11F_B10F, RGB9_E5,
+				 RGBA, RGB8, RGBA8, RGB8_SNORM, RGBA8_SNORM, RGB8I, RGBA8I, RGB8UI, RGBA8UI -> 4;
+			case RG32F, RG32I, RG32UI, RGB16, RGBA16, RGB16_SNORM, RGBA16_SNORM, RGB16F, RGBA16F, RGB16I, RGBA16I,
+				 RGB16UI, RGBA16UI -> 8;
+			case RGB32F, RGBA32F, RGB32I, RGBA32I, RGB32UI, RGBA32UI -> 16;
+		};
+	}
 }
@@ -10,15 +10,14 @@ import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
-import java.util.Map;
-
 @Mixin(ItemBlockRenderTypes.class)
 public class MixinItemBlockRenderTypes {
 	@Inject(method = "getChunkRenderType", at = @At("HEAD"), cancellable = true)
 	private static void iris$setCustomRenderType(BlockState arg, CallbackInfoReturnable<RenderType> cir) {
-		Map<Block, RenderType> idMap = WorldRenderingSettings.INSTANCE.getBlockTypeIds();
-		if (idMap != null) {
-			RenderType type = idMap.get(arg.getBlock());
+		RenderType[] types = WorldRenderingSettings.INSTANCE.getBlockTypeArray();
+		if (types != null) {
+			int stateId = Block.BLOCK_STATE_REGISTRY.getId(arg);
+			RenderType type = stateId >= 0 && stateId < types.length ? types[stateId] : null;
 			if (type != null) {
 				cir.setReturnValue(type);
 			}
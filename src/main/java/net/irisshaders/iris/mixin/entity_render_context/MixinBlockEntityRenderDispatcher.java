@@ -2,7 +2,6 @@ package net.irisshaders.iris.mixin.entity_render_context;
 
 import com.mojang.blaze3d.vertex.PoseStack;
 import com.mojang.blaze3d.vertex.VertexConsumer;
-import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import net.irisshaders.batchedentityrendering.impl.Groupable;
 import net.irisshaders.batchedentityrendering.impl.wrappers.TaggingRenderTypeWrapper;
 import net.irisshaders.iris.Iris;
@@ -48,13 +47,11 @@ public class MixinBlockEntityRenderDispatcher {
 	private MultiBufferSource iris$wrapBufferSource(MultiBufferSource bufferSource, BlockEntity blockEntity) {
 		BlockState state = blockEntity.getBlockState();
 
-		Object2IntMap<BlockState> blockStateIds = WorldRenderingSettings.INSTANCE.getBlockStateIds();
-
-		if (blockStateIds == null || !ImmediateState.isRenderingLevel) {
+		if (WorldRenderingSettings.INSTANCE.getBlockStateIds() == null || !ImmediateState.isRenderingLevel) {
 			return bufferSource;
 		}
 
-		int intId = blockStateIds.getOrDefault(state, -1);
+		int intId = WorldRenderingSettings.INSTANCE.getBlockStateId(state, -1);
 
 		CapturedRenderingState.INSTANCE.setCurrentBlockEntity(intId);
 
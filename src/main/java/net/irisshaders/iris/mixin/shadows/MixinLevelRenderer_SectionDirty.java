@@ -0,0 +1,22 @@
+package net.irisshaders.iris.mixin.shadows;
+
+import net.irisshaders.iris.shadows.StaticShadowCache;
+import net.minecraft.client.renderer.LevelRenderer;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+/**
+ * Notifies the static shadow terrain cache about sections that are going to be rebuilt, so that it stops reusing the
+ * cached shadow map while the new geometry is being compiled.
+ * <p>
+ * Uses a priority of 1010 to apply after VulkanMod's overwrite of this method.
+ */
+@Mixin(value = LevelRenderer.class, priority = 1010)
+public class MixinLevelRenderer_SectionDirty {
+	@Inject(method = "setSectionDirty(IIIZ)V", at = @At("HEAD"))
+	private void iris$onSectionDirty(int x, int y, int z, boolean playerChanged, CallbackInfo ci) {
+		StaticShadowCache.onSectionDirty(x, y, z);
+	}
+}
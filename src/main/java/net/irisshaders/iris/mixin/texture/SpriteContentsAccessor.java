@@ -1,5 +1,6 @@
 package net.irisshaders.iris.mixin.texture;
 
+import com.mojang.blaze3d.platform.NativeImage;
 import net.minecraft.client.renderer.texture.SpriteContents;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.gen.Accessor;
@@ -8,4 +9,7 @@ import org.spongepowered.asm.mixin.gen.Accessor;
 public interface SpriteContentsAccessor {
 	@Accessor("animatedTexture")
 	SpriteContents.AnimatedTexture getAnimatedTexture();
+
+	@Accessor("byMipLevel")
+	NativeImage[] getByMipLevel();
 }
@@ -2,13 +2,16 @@ package net.irisshaders.iris.mixin.vertices;
 
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.MeshData;
 import com.mojang.blaze3d.vertex.VertexConsumer;
 import com.mojang.blaze3d.vertex.VertexFormat;
 import com.mojang.blaze3d.vertex.VertexFormatElement;
+import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.shaderpack.materialmap.WorldRenderingSettings;
 import net.irisshaders.iris.uniforms.CapturedRenderingState;
 import net.irisshaders.iris.vertices.BlockSensitiveBufferBuilder;
 import net.irisshaders.iris.vertices.BufferBuilderPolygonView;
+import net.irisshaders.iris.vertices.ExtendedDataBatch;
 import net.irisshaders.iris.vertices.ExtendedDataHelper;
 import net.irisshaders.iris.vertices.ImmediateState;
 import net.irisshaders.iris.vertices.IrisVertexFormats;
@@ -75,6 +78,8 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 	@Unique
 	private int iris$vertexCount;
 	@Unique
+	private boolean iris$deferExtendedData;
+	@Unique
 	private short currentBlock = -1;
 	@Unique
 	private short currentRenderType = -1;
@@ -92,6 +97,7 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 	private VertexFormat iris$extendFormat(VertexFormat format) {
 		iris$isTerrain = false;
 		injectNormalAndUV1 = false;
+		iris$deferExtendedData = false;
 
 		if (ImmediateState.skipExtension.get() || !WorldRenderingSettings.INSTANCE.shouldUseExtendedVertexFormat()) {
 			return format;
@@ -101,12 +107,14 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 			extending = true;
 			iris$isTerrain = true;
 			injectNormalAndUV1 = false;
+			iris$deferExtendedData = shouldBatchExtendedData();
 			return IrisVertexFormats.TERRAIN;
-		} else if (format == DefaultVertexFormat.NEW_ENTITY || format == IrisVertexFormats.ENTITY) {
+		} else if (format == DefaultVertexFormat.NEW_ENTITY || format == IrisVertexFormats.ENTITY || format == IrisVertexFormats.ENTITY_COMPACT) {
 			extending = true;
 			iris$isTerrain = false;
 			injectNormalAndUV1 = false;
-			return IrisVertexFormats.ENTITY;
+			iris$deferExtendedData = shouldBatchExtendedData();
+			return IrisVertexFormats.getEntityFormat();
 		} else if (format == DefaultVertexFormat.POSITION_COLOR_TEX_LIGHTMAP || format == IrisVertexFormats.GLYPH) {
 			extending = true;
 			iris$isTerrain = false;
@@ -117,6 +125,11 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 		return format;
 	}
 
+	@Unique
+	private static boolean shouldBatchExtendedData() {
+		return Iris.getIrisConfig() != null && Iris.getIrisConfig().shouldBatchExtendedVertexData();
+	}
+
 	// fastFormat redirect removed: VulkanMod @Overwrites addVertex(FFFIFFIIFFF)V,
 	// making this redirect impossible. VulkanMod handles vertex writing directly.
 
@@ -157,6 +170,7 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 		// Under VulkanMod, addVertex(FFF) inject may not fire (VulkanMod @Overwrites
 		// the combined addVertex), so also clear entity elements here.
 		this.elementsToFill = this.elementsToFill & ~IrisVertexFormats.MID_TEXTURE_ELEMENT.mask();
+		this.elementsToFill = this.elementsToFill & ~IrisVertexFormats.MID_TEXTURE_PACKED_ELEMENT.mask();
 		this.elementsToFill = this.elementsToFill & ~IrisVertexFormats.TANGENT_ELEMENT.mask();
 		this.elementsToFill = this.elementsToFill & ~IrisVertexFormats.ENTITY_ELEMENT.mask();
 		this.elementsToFill = this.elementsToFill & ~IrisVertexFormats.ENTITY_ID_ELEMENT.mask();
@@ -175,6 +189,11 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 			return;
 		}
 
+		if (iris$deferExtendedData) {
+			// Filled in for the whole buffer once it's built, see iris$fillDeferredExtendedData.
+			return;
+		}
+
 		vertexPointers[iris$vertexCount] = vertexPointer;
 
 		iris$vertexCount++;
@@ -184,6 +203,35 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 		}
 	}
 
+	@Inject(method = "build", at = @At("RETURN"))
+	private void iris$fillDeferredExtendedData(CallbackInfoReturnable<MeshData> cir) {
+		MeshData meshData = cir.getReturnValue();
+
+		if (!iris$deferExtendedData || meshData == null) {
+			return;
+		}
+
+		int verticesPerPolygon;
+
+		if (mode == VertexFormat.Mode.QUADS) {
+			verticesPerPolygon = 4;
+		} else if (mode == VertexFormat.Mode.TRIANGLES) {
+			verticesPerPolygon = 3;
+		} else {
+			return;
+		}
+
+		boolean packedMidTex = format.contains(IrisVertexFormats.MID_TEXTURE_PACKED_ELEMENT);
+
+		ExtendedDataBatch.forCurrentThread().fill(MemoryUtil.memAddress(meshData.vertexBuffer()), meshData.drawState().vertexCount(),
+			format.getVertexSize(), verticesPerPolygon,
+			this.offsetsByElement[VertexFormatElement.UV0.id()],
+			this.offsetsByElement[VertexFormatElement.NORMAL.id()],
+			this.offsetsByElement[(packedMidTex ? IrisVertexFormats.MID_TEXTURE_PACKED_ELEMENT : IrisVertexFormats.MID_TEXTURE_ELEMENT).id()],
+			packedMidTex,
+			this.offsetsByElement[IrisVertexFormats.TANGENT_ELEMENT.id()]);
+	}
+
 	@Override
 	public void beginBlock(short block, short renderType, int localPosX, int localPosY, int localPosZ) {
 		this.currentBlock = block;
@@ -221,7 +269,9 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 		midU /= vertexAmount;
 		midV /= vertexAmount;
 
-		int midTexOffset = this.offsetsByElement[IrisVertexFormats.MID_TEXTURE_ELEMENT.id()];
+		boolean packedMidTex = format.contains(IrisVertexFormats.MID_TEXTURE_PACKED_ELEMENT);
+		int midTexOffset = this.offsetsByElement[(packedMidTex ? IrisVertexFormats.MID_TEXTURE_PACKED_ELEMENT : IrisVertexFormats.MID_TEXTURE_ELEMENT).id()];
+		int packedMidTexCoord = ExtendedDataHelper.packMidTexCoord(midU, midV);
 		int normalOffset = this.offsetsByElement[VertexFormatElement.NORMAL.id()];
 		int tangentOffset = this.offsetsByElement[IrisVertexFormats.TANGENT_ELEMENT.id()];
 		if (vertexAmount == 3) {
@@ -232,8 +282,7 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 
 				int tangent = NormalHelper.computeTangentSmooth(NormI8.unpackX(vertexNormal), NormI8.unpackY(vertexNormal), NormI8.unpackZ(vertexNormal), polygon);
 
-				MemoryUtil.memPutFloat(vertexPointers[vertex] + midTexOffset, midU);
-				MemoryUtil.memPutFloat(vertexPointers[vertex] + midTexOffset + 4, midV);
+				iris$putMidTexCoord(vertexPointers[vertex] + midTexOffset, packedMidTex, midU, midV, packedMidTexCoord);
 				MemoryUtil.memPutInt(vertexPointers[vertex] + tangentOffset, tangent);
 			}
 		} else {
@@ -242,8 +291,7 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 			int tangent = NormalHelper.computeTangent(normal.x, normal.y, normal.z, polygon);
 
 			for (int vertex = 0; vertex < vertexAmount; vertex++) {
-				MemoryUtil.memPutFloat(vertexPointers[vertex] + midTexOffset, midU);
-				MemoryUtil.memPutFloat(vertexPointers[vertex] + midTexOffset + 4, midV);
+				iris$putMidTexCoord(vertexPointers[vertex] + midTexOffset, packedMidTex, midU, midV, packedMidTexCoord);
 				MemoryUtil.memPutInt(vertexPointers[vertex] + normalOffset, packedNormal);
 				MemoryUtil.memPutInt(vertexPointers[vertex] + tangentOffset, tangent);
 			}
@@ -251,4 +299,14 @@ public abstract class MixinBufferBuilder implements VertexConsumer, BlockSensiti
 
 		Arrays.fill(vertexPointers, 0);
 	}
+
+	@Unique
+	private static void iris$putMidTexCoord(long pointer, boolean packed, float midU, float midV, int packedMidTexCoord) {
+		if (packed) {
+			MemoryUtil.memPutInt(pointer, packedMidTexCoord);
+		} else {
+			MemoryUtil.memPutFloat(pointer, midU);
+			MemoryUtil.memPutFloat(pointer + 4, midV);
+		}
+	}
 }
@@ -27,7 +27,7 @@ public class MixinVertexFormat {
 
 				ci.cancel();
 			} else if ((Object) this == DefaultVertexFormat.NEW_ENTITY) {
-				IrisVertexFormats.ENTITY.setupBufferState();
+				IrisVertexFormats.getEntityFormat().setupBufferState();
 
 				ci.cancel();
 			}
@@ -46,7 +46,7 @@ public class MixinVertexFormat {
 
 				ci.cancel();
 			} else if ((Object) this == DefaultVertexFormat.NEW_ENTITY) {
-				IrisVertexFormats.ENTITY.clearBufferState();
+				IrisVertexFormats.getEntityFormat().clearBufferState();
 
 				ci.cancel();
 			}
@@ -3,6 +3,7 @@ package net.irisshaders.iris.mixin.vertices.block_rendering;
 import com.mojang.blaze3d.vertex.BufferBuilder;
 import com.mojang.blaze3d.vertex.PoseStack;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import net.irisshaders.iris.shaderpack.materialmap.BlockMaterialMapping;
 import net.irisshaders.iris.shaderpack.materialmap.WorldRenderingSettings;
 import net.irisshaders.iris.vertices.BlockSensitiveBufferBuilder;
 import net.irisshaders.iris.vertices.ExtendedDataHelper;
@@ -39,6 +40,8 @@ public class MixinChunkRebuildTask {
 	@Unique
 	private final Object2IntMap<BlockState> blockStateIds = getBlockStateIds();
 	@Unique
+	private final short[] blockStateIdArray = WorldRenderingSettings.INSTANCE.getBlockStateIdArray();
+	@Unique
 	private BlockSensitiveBufferBuilder lastBufferBuilder;
 
 	@Unique
@@ -48,6 +51,10 @@ public class MixinChunkRebuildTask {
 
 	@Unique
 	private short resolveBlockId(BlockState state) {
+		if (blockStateIdArray != null) {
+			return (short) BlockMaterialMapping.getBlockStateId(blockStateIdArray, state, -1);
+		}
+
 		if (blockStateIds == null) {
 			return -1;
 		}
@@ -8,7 +8,6 @@ import net.irisshaders.iris.gl.program.Program;
 import net.irisshaders.iris.gl.program.ProgramBuilder;
 import net.irisshaders.iris.gl.program.ProgramSamplers;
 import net.irisshaders.iris.gl.program.ProgramUniforms;
-import net.irisshaders.iris.gl.texture.DepthCopyStrategy;
 import net.irisshaders.iris.gl.texture.InternalTextureFormat;
 import net.irisshaders.iris.gl.texture.PixelType;
 import net.irisshaders.iris.gl.uniform.UniformUpdateFrequency;
@@ -27,6 +26,10 @@ import java.util.function.IntSupplier;
  *
  * GlStateManager._genTexture/_deleteTexture replaced with IrisRenderSystem.
  * GL21C constants inlined as hex values.
+ *
+ * The smoothed center depth never leaves the GPU: shader packs sample it from a 1x1 texture. Two such textures are
+ * rendered to in turn, each frame blending the current depth into the value of the previous frame, so that no copy is
+ * needed between frames and the CPU never waits for the result.
  */
 public class CenterDepthSampler {
 	// GL constants (inlined from GL21C)
@@ -40,24 +43,27 @@ public class CenterDepthSampler {
 
 	private static final double LN2 = Math.log(2);
 	private final Program program;
-	private final GlFramebuffer framebuffer;
-	private final int texture;
-	private final int altTexture;
+	private final GlFramebuffer[] framebuffers = new GlFramebuffer[2];
+	private final int[] textures = new int[2];
+	// The texture holding the most recent smoothed value, the other one is rendered to next
+	private int latest;
 	private boolean hasFirstSample;
 	private boolean everRetrieved;
 	private boolean destroyed;
 
 	public CenterDepthSampler(IntSupplier depthSupplier, float halfLife) {
-		this.texture = IrisRenderSystem.createTexture(GL_TEXTURE_2D);
-		this.altTexture = IrisRenderSystem.createTexture(GL_TEXTURE_2D);
-		this.framebuffer = new GlFramebuffer();
-
 		InternalTextureFormat format = InternalTextureFormat.R32F;
-		setupColorTexture(texture, format);
-		setupColorTexture(altTexture, format);
+
+		for (int i = 0; i < 2; i++) {
+			textures[i] = IrisRenderSystem.createTexture(GL_TEXTURE_2D);
+			setupColorTexture(textures[i], format);
+
+			framebuffers[i] = new GlFramebuffer();
+			framebuffers[i].addColorAttachment(0, textures[i]);
+		}
+
 		RenderSystem.bindTexture(0);
 
-		this.framebuffer.addColorAttachment(0, texture);
 		ProgramBuilder builder;
 
 		try {
@@ -70,7 +76,7 @@ public class CenterDepthSampler {
 		}
 
 		builder.addDynamicSampler(depthSupplier, "depth");
-		builder.addDynamicSampler(() -> altTexture, "altDepth");
+		builder.addDynamicSampler(() -> textures[latest], "altDepth");
 		builder.uniform1f(UniformUpdateFrequency.PER_FRAME, "lastFrameTime", SystemTimeUniforms.TIMER::getLastFrameTime);
 		builder.uniform1f(UniformUpdateFrequency.ONCE, "decay", () -> (1.0f / ((halfLife * 0.1) / LN2)));
 		// TODO: can we just do this for all composites?
@@ -87,7 +93,7 @@ public class CenterDepthSampler {
 
 		hasFirstSample = true;
 
-		this.framebuffer.bind();
+		this.framebuffers[1 - latest].bind();
 		this.program.use();
 
 		RenderSystem.viewport(0, 0, 1, 1);
@@ -97,8 +103,7 @@ public class CenterDepthSampler {
 		ProgramUniforms.clearActiveUniforms();
 		ProgramSamplers.clearActiveSamplers();
 
-		// The API contract of DepthCopyStrategy claims it can only copy depth, however the 2 non-stencil methods used are entirely capable of copying color as of now.
-		DepthCopyStrategy.fastest(false).copy(this.framebuffer, texture, null, altTexture, 1, 1);
+		latest = 1 - latest;
 
 		//Reset viewport
 		Minecraft.getInstance().getMainRenderTarget().bindWrite(true);
@@ -114,7 +119,7 @@ public class CenterDepthSampler {
 	}
 
 	public int getCenterDepthTexture() {
-		return altTexture;
+		return textures[latest];
 	}
 
 	public void setUsage(boolean usage) {
@@ -122,9 +127,10 @@ public class CenterDepthSampler {
 	}
 
 	public void destroy() {
-		IrisRenderSystem.deleteTexture(texture);
-		IrisRenderSystem.deleteTexture(altTexture);
-		framebuffer.destroy();
+		for (int i = 0; i < 2; i++) {
+			IrisRenderSystem.deleteTexture(textures[i]);
+			framebuffers[i].destroy();
+		}
 		program.destroy();
 		destroyed = true;
 	}
@@ -37,6 +37,11 @@ public class ColorSpaceComputeConverter implements ColorSpaceConverter {
 		this.height = height;
 		this.colorSpace = colorSpace;
 
+		if (colorSpace == ColorSpace.SRGB) {
+			// Nothing to convert, so there's no need for a program
+			return;
+		}
+
 		String source;
 		try {
 			source = new String(IOUtils.toByteArray(Objects.requireNonNull(getClass().getResourceAsStream("/colorSpace.csh"))), StandardCharsets.UTF_8);
@@ -4,4 +4,16 @@ public interface ColorSpaceConverter {
 	void rebuildProgram(int width, int height, ColorSpace colorSpace);
 
 	void process(int target);
+
+	/**
+	 * Draws a texture into the currently bound framebuffer, converted to the output color space. This lets whatever
+	 * would have copied that texture to the screen do the conversion on the way, instead of converting the screen in a
+	 * separate pass afterwards.
+	 *
+	 * @return false if nothing was drawn, either because the output color space is sRGB or because this converter can't
+	 * draw into other framebuffers. The caller has to copy the texture itself and call {@link #process} as usual.
+	 */
+	default boolean drawConverted(int source) {
+		return false;
+	}
 }
@@ -48,6 +48,9 @@ public class ColorSpaceFragmentConverter implements ColorSpaceConverter {
 		if (program != null) {
 			program.destroy();
 			program = null;
+		}
+
+		if (framebuffer != null) {
 			framebuffer.destroy();
 			framebuffer = null;
 			IrisRenderSystem.deleteTexture(swapTexture);
@@ -58,6 +61,11 @@ public class ColorSpaceFragmentConverter implements ColorSpaceConverter {
 		this.height = height;
 		this.colorSpace = colorSpace;
 
+		if (colorSpace == ColorSpace.SRGB) {
+			// Nothing to convert, so there's no need for a program or a full screen texture
+			return;
+		}
+
 		String vertexSource;
 		String source;
 		try {
@@ -80,16 +88,20 @@ public class ColorSpaceFragmentConverter implements ColorSpaceConverter {
 		builder.uniformMatrix(UniformUpdateFrequency.ONCE, "projection", () -> new Matrix4f(2, 0, 0, 0, 0, 2, 0, 0, 0, 0, 0, 0, -1, -1, 0, 1));
 		builder.addDynamicSampler(() -> target, "readImage");
 
-		swapTexture = IrisRenderSystem.createTexture(GL_TEXTURE_2D);
-		IrisRenderSystem.texImage2D(swapTexture, GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, null);
-
-		this.framebuffer = new GlFramebuffer();
-		framebuffer.addColorAttachment(0, swapTexture);
 		this.program = builder.build();
 	}
 
 	public void process(int targetImage) {
-		if (colorSpace == ColorSpace.SRGB) return;
+		if (program == null) return;
+
+		if (framebuffer == null) {
+			// Only needed when the conversion can't be done while copying to the screen, see drawConverted
+			swapTexture = IrisRenderSystem.createTexture(GL_TEXTURE_2D);
+			IrisRenderSystem.texImage2D(swapTexture, GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, null);
+
+			this.framebuffer = new GlFramebuffer();
+			framebuffer.addColorAttachment(0, swapTexture);
+		}
 
 		this.target = targetImage;
 		program.use();
@@ -99,4 +111,15 @@ public class ColorSpaceFragmentConverter implements ColorSpaceConverter {
 		framebuffer.bindAsReadBuffer();
 		IrisRenderSystem.copyTexSubImage2D(targetImage, GL_TEXTURE_2D, 0, 0, 0, 0, 0, width, height);
 	}
+
+	public boolean drawConverted(int source) {
+		if (program == null) return false;
+
+		this.target = source;
+		program.use();
+		FullScreenQuadRenderer.INSTANCE.render();
+		Program.unbind();
+
+		return true;
+	}
 }
@@ -24,6 +24,10 @@ import net.irisshaders.iris.gl.state.FogMode;
 import net.irisshaders.iris.gl.texture.TextureAccess;
 import net.irisshaders.iris.pathways.CenterDepthSampler;
 import net.irisshaders.iris.pathways.FullScreenQuadRenderer;
+import net.irisshaders.iris.pipeline.graph.PassPlan;
+import net.irisshaders.iris.pipeline.graph.RenderGraph;
+import net.irisshaders.iris.pipeline.graph.RenderGraphCompiler;
+import net.irisshaders.iris.pipeline.graph.RenderGraphPass;
 import net.irisshaders.iris.pipeline.transform.PatchShaderType;
 import net.irisshaders.iris.pipeline.transform.ShaderPrinter;
 import net.irisshaders.iris.pipeline.transform.TransformPatcher;
@@ -43,11 +47,14 @@ import net.irisshaders.iris.targets.RenderTargets;
 import net.irisshaders.iris.uniforms.CommonUniforms;
 import net.irisshaders.iris.uniforms.FrameUpdateNotifier;
 import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import net.irisshaders.iris.vulkan.profiler.GpuTimestampProfiler;
 import net.minecraft.client.Minecraft;
 import net.vulkanmod.gl.GlTexture;
 import net.vulkanmod.vulkan.texture.VulkanImage;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -74,6 +81,7 @@ public class CompositeRenderer {
 	private final RenderTargets renderTargets;
 
 	private final ImmutableList<Pass> passes;
+	private final RenderGraph renderGraph;
 	private final TextureAccess noiseTexture;
 	private final FrameUpdateNotifier updateNotifier;
 	private final CenterDepthSampler centerDepthSampler;
@@ -112,6 +120,7 @@ public class CompositeRenderer {
 
 		final ImmutableList.Builder<Pass> passes = ImmutableList.builder();
 		final ImmutableSet.Builder<Integer> flippedAtLeastOnce = new ImmutableSet.Builder<>();
+		final List<RenderGraphPass> graphPasses = new ArrayList<>();
 
 		explicitPreFlips.forEach((buffer, shouldFlip) -> {
 			if (shouldFlip) {
@@ -131,6 +140,7 @@ public class CompositeRenderer {
 					ComputeOnlyPass pass = new ComputeOnlyPass();
 					pass.computes = createComputes(computes[i], flipped, flippedAtLeastOnceSnapshot, shadowTargetsSupplier, holder);
 					passes.add(pass);
+					graphPasses.add(RenderGraphPass.compute(flipped));
 				}
 				continue;
 			}
@@ -138,6 +148,7 @@ public class CompositeRenderer {
 			Pass pass = new Pass();
 			ProgramDirectives directives = source.getDirectives();
 
+			pass.name = source.getName();
 			pass.program = createProgram(source, flipped, flippedAtLeastOnceSnapshot, shadowTargetsSupplier);
 			pass.blendModeOverride = source.getDirectives().getBlendModeOverride().orElse(null);
 			pass.computes = createComputes(computes[i], flipped, flippedAtLeastOnceSnapshot, shadowTargetsSupplier, holder);
@@ -184,9 +195,13 @@ public class CompositeRenderer {
 			pass.flippedAtLeastOnce = flippedAtLeastOnceSnapshot;
 
 			passes.add(pass);
+			graphPasses.add(new RenderGraphPass(pass.drawBuffers, flipped, pass.mipmappedBuffers,
+				Arrays.stream(pass.computes).anyMatch(Objects::nonNull), false));
 		}
 
 		this.passes = passes.build();
+		this.renderGraph = RenderGraphCompiler.compile(graphPasses);
+		Iris.logger.debug("Compiled render graph for {} passes: {}", graphPasses.size(), renderGraph);
 		this.flippedAtLeastOnceFinal = flippedAtLeastOnce.build();
 
 		IrisRenderSystem.bindFramebuffer(GL_READ_FRAMEBUFFER, 0);
@@ -197,8 +212,7 @@ public class CompositeRenderer {
 
 		int texture = readFromAlt ? target.getAltTexture() : target.getMainTexture();
 
-		// TODO: Only generate the mipmap if a valid mipmap hasn't been generated or if we've written to the buffer
-		// (since the last mipmap was generated)
+		// The mipmap is only regenerated if the texture has been written to since the last time it was generated.
 		//
 		// NB: We leave mipmapping enabled even if the buffer is written to again, this appears to match the
 		// behavior of ShadersMod/OptiFine, however I'm not sure if it's desired behavior. It's possible that a
@@ -208,7 +222,7 @@ public class CompositeRenderer {
 		//
 		// Also note that this only applies to one of the two buffers in a render target buffer pair - making it
 		// unlikely that this issue occurs in practice with most shader packs.
-		IrisRenderSystem.generateMipmaps(texture, GL_TEXTURE_2D);
+		IrisRenderSystem.generateMipmapsIfStale(texture, GL_TEXTURE_2D);
 
 		int filter = GL_LINEAR_MIPMAP_LINEAR;
 		if (target.getInternalFormat().getPixelFormat().isInteger()) {
@@ -250,11 +264,21 @@ public class CompositeRenderer {
 		com.mojang.blaze3d.pipeline.RenderTarget main = Minecraft.getInstance().getMainRenderTarget();
 
 		int passIdx = 0;
-		for (Pass renderPass : passes) {
+		for (int i = 0; i < passes.size(); i++) {
+			Pass renderPass = passes.get(i);
+			PassPlan plan = renderGraph.getPass(i);
+
 			boolean ranCompute = false;
+
 			for (ComputeProgram computeProgram : renderPass.computes) {
 				if (computeProgram != null) {
-					ranCompute = true;
+					// Dispatches can't be recorded inside a render pass, so end whatever the previous pass (or the
+					// caller) left open before the first one, including for compute-only passes.
+					if (!ranCompute) {
+						net.vulkanmod.vulkan.Renderer.getInstance().endRenderPass();
+						ranCompute = true;
+					}
+
 					computeProgram.use();
 					this.customUniforms.push(computeProgram);
 					computeProgram.dispatch(main.width, main.height);
@@ -271,6 +295,13 @@ public class CompositeRenderer {
 				continue;
 			}
 
+			// The render graph decides where render passes end. A pass that writes to exactly the same images as the
+			// previous one keeps its render pass going; anything else has to end it, even when the framebuffer cache
+			// hands back the same VulkanMod framebuffer, so that the previous writes reach SHADER_READ_ONLY_OPTIMAL.
+			if (!plan.mergeWithPrevious()) {
+				net.vulkanmod.vulkan.Renderer.getInstance().endRenderPass();
+			}
+
 			if (!renderPass.mipmappedBuffers.isEmpty()) {
 				RenderSystem.activeTexture(GL_TEXTURE0);
 
@@ -315,7 +346,9 @@ public class CompositeRenderer {
 				logCompositeTextureDiag();
 			}
 
+			int timer = GpuTimestampProfiler.begin(renderPass.name);
 			FullScreenQuadRenderer.INSTANCE.renderQuad();
+			GpuTimestampProfiler.end(timer);
 
 			BlendModeOverride.restore();
 			passIdx++;
@@ -473,6 +506,7 @@ public class CompositeRenderer {
 	}
 
 	private static class Pass {
+		String name;
 		int[] drawBuffers;
 		int viewWidth;
 		int viewHeight;
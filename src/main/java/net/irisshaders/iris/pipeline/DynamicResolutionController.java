@@ -0,0 +1,93 @@
+package net.irisshaders.iris.pipeline;
+
+/**
+ * Picks a resolution scale for the render targets that can be rendered below screen resolution, based on how long
+ * frames take compared to a target frame time.
+ *
+ * <p>Changing the scale means resizing render targets and rebuilding the framebuffers of every pass, so the scale only
+ * moves in fixed steps, and only after the smoothed frame time has stayed outside of a band around the target for a
+ * number of frames. Going down reacts faster than going up, and every change is followed by a cooldown so that the
+ * effect of the new scale can be measured before the next decision.</p>
+ */
+public class DynamicResolutionController {
+	private static final float MIN_SCALE = 0.5f;
+	private static final float MAX_SCALE = 1.0f;
+	private static final float SCALE_STEP = 0.1f;
+
+	// Frame times above TARGET * OVER_BUDGET count towards lowering the scale, below TARGET * UNDER_BUDGET towards
+	// raising it. Anything in between keeps the current scale.
+	private static final float OVER_BUDGET = 1.1f;
+	private static final float UNDER_BUDGET = 0.8f;
+	private static final int FRAMES_BEFORE_DOWNSCALE = 30;
+	private static final int FRAMES_BEFORE_UPSCALE = 120;
+	private static final int COOLDOWN_FRAMES = 60;
+
+	private static final float SMOOTHING = 0.1f;
+
+	private final float targetFrameTimeMs;
+	private float scale = MAX_SCALE;
+	private float averageFrameTimeMs = -1.0f;
+	private int framesOverBudget;
+	private int framesUnderBudget;
+	private int cooldown;
+
+	public DynamicResolutionController(float targetFrameTimeMs) {
+		this.targetFrameTimeMs = targetFrameTimeMs;
+	}
+
+	/**
+	 * Records the time the last frame took.
+	 *
+	 * @return whether the scale changed
+	 */
+	public boolean onFrame(float frameTimeMs) {
+		if (frameTimeMs <= 0.0f) {
+			// The first frame, or one that took less than the timer resolution
+			return false;
+		}
+
+		if (averageFrameTimeMs < 0.0f) {
+			averageFrameTimeMs = frameTimeMs;
+		} else {
+			averageFrameTimeMs += (frameTimeMs - averageFrameTimeMs) * SMOOTHING;
+		}
+
+		if (cooldown > 0) {
+			cooldown--;
+			return false;
+		}
+
+		framesOverBudget = averageFrameTimeMs > targetFrameTimeMs * OVER_BUDGET ? framesOverBudget + 1 : 0;
+		framesUnderBudget = averageFrameTimeMs < targetFrameTimeMs * UNDER_BUDGET ? framesUnderBudget + 1 : 0;
+
+		if (framesOverBudget >= FRAMES_BEFORE_DOWNSCALE && scale > MIN_SCALE) {
+			return setScale(scale - SCALE_STEP);
+		} else if (framesUnderBudget >= FRAMES_BEFORE_UPSCALE && scale < MAX_SCALE) {
+			return setScale(scale + SCALE_STEP);
+		}
+
+		return false;
+	}
+
+	private boolean setScale(float newScale) {
+		// Round to whole steps so that repeated changes don't accumulate floating point error
+		scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, Math.round(newScale / SCALE_STEP) * SCALE_STEP));
+		framesOverBudget = 0;
+		framesUnderBudget = 0;
+		cooldown = COOLDOWN_FRAMES;
+
+		return true;
+	}
+
+	public float getScale() {
+		return scale;
+	}
+
+	public float getAverageFrameTimeMs() {
+		return Math.max(averageFrameTimeMs, 0.0f);
+	}
+
+	public float getTargetFrameTimeMs() {
+		return targetFrameTimeMs;
+	}
+}
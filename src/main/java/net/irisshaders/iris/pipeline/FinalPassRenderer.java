@@ -1,8 +1,8 @@
 package net.irisshaders.iris.pipeline;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import net.irisshaders.iris.Iris;
@@ -22,6 +22,7 @@ import net.irisshaders.iris.gl.state.FogMode;
 import net.irisshaders.iris.gl.texture.TextureAccess;
 import net.irisshaders.iris.pathways.CenterDepthSampler;
 import net.irisshaders.iris.pathways.FullScreenQuadRenderer;
+import net.irisshaders.iris.pathways.colorspace.ColorSpaceConverter;
 import net.irisshaders.iris.pipeline.transform.PatchShaderType;
 import net.irisshaders.iris.pipeline.transform.ShaderPrinter;
 import net.irisshaders.iris.pipeline.transform.TransformPatcher;
@@ -42,6 +43,7 @@ import net.irisshaders.iris.targets.RenderTargets;
 import net.irisshaders.iris.uniforms.CommonUniforms;
 import net.irisshaders.iris.uniforms.FrameUpdateNotifier;
 import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import net.irisshaders.iris.vulkan.profiler.GpuTimestampProfiler;
 import net.minecraft.client.Minecraft;
 import org.jetbrains.annotations.Nullable;
 
@@ -74,7 +76,7 @@ public class FinalPassRenderer {
 
 	@Nullable
 	private final Pass finalPass;
-	private final ImmutableList<SwapPass> swapPasses;
+	private final int[] swappedBuffers;
 	private final GlFramebuffer baseline;
 	private final GlFramebuffer colorHolder;
 	private final Object2ObjectMap<String, TextureAccess> irisCustomTextures;
@@ -85,8 +87,10 @@ public class FinalPassRenderer {
 	private final Object2ObjectMap<String, TextureAccess> customTextureIds;
 	private final CustomUniforms customUniforms;
 	private final WorldRenderingPipeline pipeline;
+	private final boolean readsColortex0FromAlt;
 	private int lastColorTextureId;
 	private int lastColorTextureVersion;
+	private long lastFrameBytesCopied;
 
 	// TODO: The length of this argument list is getting a bit ridiculous
 	public FinalPassRenderer(WorldRenderingPipeline pipeline, ProgramSet pack, RenderTargets renderTargets, TextureAccess noiseTexture, ShaderStorageBufferHolder holder,
@@ -129,6 +133,7 @@ public class FinalPassRenderer {
 		// a framebuffer with color attachments different from what was written last (as we do with normal composite
 		// passes that write to framebuffers).
 		this.baseline = renderTargets.createGbufferFramebuffer(flippedBuffers, new int[]{0});
+		this.readsColortex0FromAlt = flippedBuffers.contains(0);
 		this.colorHolder = new GlFramebuffer();
 		// Swap chain target must use COLOR_ATTACHMENT_OPTIMAL as finalLayout so that
 		// rebindMainTarget() can start its auxRenderPass (which expects that layout).
@@ -137,10 +142,9 @@ public class FinalPassRenderer {
 		this.lastColorTextureVersion = ((Blaze3dRenderTargetExt) Minecraft.getInstance().getMainRenderTarget()).iris$getColorBufferVersion();
 		this.colorHolder.addColorAttachment(0, lastColorTextureId);
 
-		// TODO: We don't actually fully swap the content, we merely copy it from alt to main
-		// This works for the most part, but it's not perfect. A better approach would be creating secondary
-		// framebuffers for every other frame, but that would be a lot more complex...
-		ImmutableList.Builder<SwapPass> swapPasses = ImmutableList.builder();
+		// Buffers whose latest content ends up in the alt texture have their main and alt textures swapped at the end
+		// of the frame, so that the next frame finds it in the main texture without anything being copied.
+		IntList swappedBuffers = new IntArrayList();
 
 		flippedBuffers.forEach((i) -> {
 			int target = i;
@@ -149,20 +153,11 @@ public class FinalPassRenderer {
 				return;
 			}
 
-			SwapPass swap = new SwapPass();
-			RenderTarget target1 = renderTargets.getOrCreate(target);
-			swap.target = target;
-			swap.width = target1.getWidth();
-			swap.height = target1.getHeight();
-			swap.from = renderTargets.createColorFramebuffer(ImmutableSet.of(), new int[]{target});
-			// NB: This is handled in RenderTargets now.
-			//swap.from.readBuffer(target);
-			swap.targetTexture = renderTargets.get(target).getMainTexture();
-
-			swapPasses.add(swap);
+			renderTargets.getOrCreate(target);
+			swappedBuffers.add(target);
 		});
 
-		this.swapPasses = swapPasses.build();
+		this.swappedBuffers = swappedBuffers.toIntArray();
 
 		IrisRenderSystem.bindFramebuffer(GL_READ_FRAMEBUFFER, 0);
 	}
@@ -172,8 +167,7 @@ public class FinalPassRenderer {
 
 		int texture = readFromAlt ? target.getAltTexture() : target.getMainTexture();
 
-		// TODO: Only generate the mipmap if a valid mipmap hasn't been generated or if we've written to the buffer
-		// (since the last mipmap was generated)
+		// The mipmap is only regenerated if the texture has been written to since the last time it was generated.
 		//
 		// NB: We leave mipmapping enabled even if the buffer is written to again, this appears to match the
 		// behavior of ShadersMod/OptiFine, however I'm not sure if it's desired behavior. It's possible that a
@@ -183,7 +177,7 @@ public class FinalPassRenderer {
 		//
 		// Also note that this only applies to one of the two buffers in a render target buffer pair - making it
 		// unlikely that this issue occurs in practice with most shader packs.
-		IrisRenderSystem.generateMipmaps(texture, GL_TEXTURE_2D);
+		IrisRenderSystem.generateMipmapsIfStale(texture, GL_TEXTURE_2D);
 
 		int filter = GL_LINEAR_MIPMAP_LINEAR;
 		if (target.getInternalFormat().getPixelFormat().isInteger()) {
@@ -208,13 +202,19 @@ public class FinalPassRenderer {
 		RenderSystem.bindTexture(0);
 	}
 
-	public void renderFinalPass() {
+	/**
+	 * @return whether the output has already been converted to the output color space, which is the case when there is
+	 * no final program, fusing the conversion is enabled, and the converter could draw colortex0 to the screen itself
+	 */
+	public boolean renderFinalPass(ColorSpaceConverter colorSpaceConverter) {
 		RenderSystem.disableBlend();
 		RenderSystem.depthMask(false);
 
 		final com.mojang.blaze3d.pipeline.RenderTarget main = Minecraft.getInstance().getMainRenderTarget();
 		final int baseWidth = main.width;
 		final int baseHeight = main.height;
+		long bytesCopied = 0;
+		boolean colorSpaceConverted = false;
 
 		// Note that since DeferredWorldRenderingPipeline uses the depth texture of the main Minecraft framebuffer,
 		// we'll be writing to that depth buffer directly automatically and won't need to futz around with copying
@@ -267,7 +267,9 @@ public class FinalPassRenderer {
 
 			finalPass.program.use();
 			this.customUniforms.push(finalPass.program);
+			int timer = GpuTimestampProfiler.begin("final");
 			FullScreenQuadRenderer.INSTANCE.renderQuad();
+			GpuTimestampProfiler.end(timer);
 
 			FullScreenQuadRenderer.INSTANCE.end();
 		} else {
@@ -281,9 +283,30 @@ public class FinalPassRenderer {
 			//
 			// We could have used a shader here, but it should be about the same performance either way:
 			// https://stackoverflow.com/a/23994979/18166885
-			this.baseline.bindAsReadBuffer();
+			//
+			// That is, unless the output has to be converted to another color space and fusing is enabled. The converter
+			// can then draw colortex0 to the screen itself, instead of converting the screen with a draw and a copy of its
+			// own later. It's opt-in since anything drawn after this point would no longer be converted.
+			int timer = GpuTimestampProfiler.begin("final");
+
+			if (Iris.getIrisConfig().shouldFuseColorSpaceConversion()) {
+				RenderTarget colortex0 = renderTargets.get(0);
+
+				main.bindWrite(false);
+				RenderSystem.viewport(0, 0, baseWidth, baseHeight);
+				RenderSystem.disableCull();
+				colorSpaceConverted = colorSpaceConverter.drawConverted(readsColortex0FromAlt ? colortex0.getAltTexture() : colortex0.getMainTexture());
+			}
 
-			IrisRenderSystem.copyTexSubImage2D(main.getColorTextureId(), GL_TEXTURE_2D, 0, 0, 0, 0, 0, baseWidth, baseHeight);
+			if (!colorSpaceConverted) {
+				this.baseline.bindAsReadBuffer();
+
+				IrisRenderSystem.copyTexSubImage2D(main.getColorTextureId(), GL_TEXTURE_2D, 0, 0, 0, 0, 0, baseWidth, baseHeight);
+				// The main Minecraft framebuffer is always RGBA8
+				bytesCopied += 4L * baseWidth * baseHeight;
+			}
+
+			GpuTimestampProfiler.end(timer);
 		}
 
 		RenderSystem.activeTexture(GL_TEXTURE0);
@@ -293,20 +316,9 @@ public class FinalPassRenderer {
 			resetRenderTarget(renderTargets.get(i));
 		}
 
-		for (SwapPass swapPass : swapPasses) {
-			// NB: We need to use bind(), not bindAsReadBuffer()... Previously we used bindAsReadBuffer() here which
-			//     broke TAA on many packs and on many drivers.
-			//
-			// Note that glCopyTexSubImage2D reads from the current GL_READ_BUFFER (given by glReadBuffer()) for the
-			// current framebuffer bound to GL_FRAMEBUFFER, but that is distinct from the current GL_READ_FRAMEBUFFER,
-			// which is what bindAsReadBuffer() binds.
-			//
-			// Also note that RenderTargets already calls readBuffer(0) for us.
-			swapPass.from.bind();
+		renderTargets.swapMainAndAlt(swappedBuffers);
 
-			RenderSystem.bindTexture(swapPass.targetTexture);
-			IrisRenderSystem.copyTexSubImage2D(swapPass.targetTexture, GL_TEXTURE_2D, 0, 0, 0, 0, 0, swapPass.width, swapPass.height);
-		}
+		this.lastFrameBytesCopied = bytesCopied;
 
 		// Reset the viewport to full screen dimensions. The final pass may have
 		// used different dimensions; subsequent rendering (next frame terrain) must
@@ -327,17 +339,22 @@ public class FinalPassRenderer {
 		}
 
 		RenderSystem.activeTexture(GL_TEXTURE0);
+
+		return colorSpaceConverted;
 	}
 
-	public void recalculateSwapPassSize() {
-		for (SwapPass swapPass : swapPasses) {
-			RenderTarget target = renderTargets.get(swapPass.target);
-			renderTargets.destroyFramebuffer(swapPass.from);
-			swapPass.from = renderTargets.createColorFramebuffer(ImmutableSet.of(), new int[]{swapPass.target});
-			swapPass.width = target.getWidth();
-			swapPass.height = target.getHeight();
-			swapPass.targetTexture = target.getMainTexture();
-		}
+	/**
+	 * @return the number of render targets whose main and alt textures are swapped at the end of every frame
+	 */
+	public int getSwappedBufferCount() {
+		return swappedBuffers.length;
+	}
+
+	/**
+	 * @return the number of bytes copied between textures by the last final pass
+	 */
+	public long getLastFrameBytesCopied() {
+		return lastFrameBytesCopied;
 	}
 
 	// TODO: Don't just copy this from DeferredWorldRenderingPipeline
@@ -476,12 +493,4 @@ public class FinalPassRenderer {
 			this.program.destroy();
 		}
 	}
-
-	private static final class SwapPass {
-		public int target;
-		public int width;
-		public int height;
-		GlFramebuffer from;
-		int targetTexture;
-	}
 }
@@ -5,8 +5,13 @@ import com.google.common.collect.ImmutableSet;
 import com.mojang.blaze3d.pipeline.RenderTarget;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.VertexFormat;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMaps;
+import net.fabricmc.loader.api.FabricLoader;
+import net.irisshaders.batchedentityrendering.impl.MemoryTrackingRenderBuffers;
 import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.compat.dh.DHCompat;
 import net.irisshaders.iris.features.FeatureFlags;
@@ -44,6 +49,7 @@ import net.irisshaders.iris.pipeline.programs.FallbackShader;
 import net.irisshaders.iris.pipeline.programs.ShaderCreator;
 import net.irisshaders.iris.pipeline.programs.ShaderKey;
 import net.irisshaders.iris.pipeline.programs.ShaderMap;
+import net.irisshaders.iris.pipeline.terrain.IrisTerrainRenderHook;
 import net.irisshaders.iris.pipeline.transform.PatchShaderType;
 import net.irisshaders.iris.pipeline.transform.ShaderPrinter;
 import net.irisshaders.iris.pipeline.transform.TransformPatcher;
@@ -73,6 +79,7 @@ import net.irisshaders.iris.targets.BufferFlipper;
 import net.irisshaders.iris.targets.ClearPass;
 import net.irisshaders.iris.targets.ClearPassCreator;
 import net.irisshaders.iris.targets.RenderTargetStateListener;
+import net.irisshaders.iris.targets.RenderTargetUsageScanner;
 import net.irisshaders.iris.targets.RenderTargets;
 import net.irisshaders.iris.targets.backed.NativeImageBackedSingleColorTexture;
 import net.irisshaders.iris.texture.TextureInfoCache;
@@ -84,7 +91,12 @@ import net.irisshaders.iris.texture.pbr.PBRType;
 import net.irisshaders.iris.uniforms.CapturedRenderingState;
 import net.irisshaders.iris.uniforms.CommonUniforms;
 import net.irisshaders.iris.uniforms.FrameUpdateNotifier;
+import net.irisshaders.iris.uniforms.SystemTimeUniforms;
 import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import net.irisshaders.iris.vertices.IrisVertexFormats;
+import net.irisshaders.iris.vulkan.profiler.GpuTimestampProfiler;
+import net.irisshaders.iris.vulkan.profiler.PassTimingStats;
+import net.irisshaders.iris.vulkan.resource.DeferredDeletionQueue;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.DimensionSpecialEffects;
@@ -97,6 +109,7 @@ import org.jetbrains.annotations.Nullable;
 import org.joml.Vector3d;
 import org.joml.Vector4f;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
@@ -118,6 +131,9 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 	private static final int GL_FRAMEBUFFER = 0x8D40;
 
 	private final RenderTargets renderTargets;
+	private final Int2IntMap renderTargetAliases;
+	@Nullable
+	private final DynamicResolutionController dynamicResolution;
 	private final ShaderMap shaderMap;
 	private final CustomUniforms customUniforms;
 	private final ShadowCompositeRenderer shadowCompositeRenderer;
@@ -174,6 +190,7 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 	private ShadowRenderTargets shadowRenderTargets;
 	private WorldRenderingPhase overridePhase = null;
 	private WorldRenderingPhase phase = WorldRenderingPhase.NONE;
+	private int phaseTimer = -1;
 	private ImmutableList<ClearPass> clearPassesFull;
 	private ImmutableList<ClearPass> clearPasses;
 	private ImmutableList<ClearPass> shadowClearPasses;
@@ -185,6 +202,7 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 	private int currentNormalTexture;
 	private int currentSpecularTexture;
 	private ColorSpace currentColorSpace;
+	private boolean colorSpaceConverted;
 
 	public IrisRenderingPipeline(ProgramSet programSet) {
 		ShaderPrinter.resetPrintState();
@@ -247,6 +265,33 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		});
 
 		this.renderTargets = new RenderTargets(main.width, main.height, depthTextureId, ((Blaze3dRenderTargetExt) main).iris$getDepthBufferVersion(), depthBufferFormat, programSet.getPackDirectives().getRenderTargetDirectives().getRenderTargetSettings(), programSet.getPackDirectives());
+		int dynamicResolutionTargetFps = Iris.getIrisConfig().getDynamicResolutionTargetFps();
+		IntSet dynamicallyScaled = dynamicResolutionTargetFps > 0
+			? RenderTargetUsageScanner.findDynamicallyScalable(programSet, renderTargets.getRenderTargetCount())
+			: IntSets.EMPTY_SET;
+
+		if (dynamicallyScaled.isEmpty()) {
+			if (dynamicResolutionTargetFps > 0) {
+				// Every render target is either drawn to by gbuffer programs, read at pixel coordinates (viewWidth,
+				// gl_FragCoord, texelFetch), or kept between frames, so lowering the resolution would break the pack.
+				Iris.logger.info("Dynamic resolution is inactive: the shader pack has no render targets that can be scaled");
+			}
+
+			this.dynamicResolution = null;
+		} else {
+			this.dynamicResolution = new DynamicResolutionController(1000.0f / dynamicResolutionTargetFps);
+		}
+
+		renderTargets.setDynamicallyScaledTargets(dynamicallyScaled, Iris.getIrisConfig().shouldUseNearestDynamicResolutionUpscale());
+
+		// Render targets with a scale override or a dynamic scale are never aliased, since their size isn't tied to
+		// their format.
+		this.renderTargetAliases = RenderTargetUsageScanner.analyze(programSet, renderTargets.getRenderTargetCount())
+			.findAliases(index -> packDirectives.hasTextureScaleOverride(index) || dynamicallyScaled.contains(index) ? "colortex" + index
+				: packDirectives.getRenderTargetDirectives().getRenderTargetSettings().get(index).getInternalFormat());
+		if (Iris.getIrisConfig().shouldAliasRenderTargets()) {
+			renderTargets.setAliases(renderTargetAliases);
+		}
 		this.sunPathRotation = programSet.getPackDirectives().getSunPathRotation();
 
 		PackShadowDirectives shadowDirectives = programSet.getPackDirectives().getShadowDirectives();
@@ -469,6 +514,13 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 			if (programSet.getPackDirectives().getShadowDirectives().isShadowEnabled().orElse(true)) {
 				this.shadowRenderer = new ShadowRenderer(resolver.resolveNullable(ProgramId.ShadowSolid),
 					programSet.getPackDirectives(), shadowRenderTargets, shadowCompositeRenderer, customUniforms, programSet.getPack().hasFeature(FeatureFlags.SEPARATE_HARDWARE_SAMPLERS));
+
+				// The cached shadow terrain would be post-processed twice by shadowcomp, and shadow computes / images
+				// may depend on the shadow pass running in full.
+				if (Iris.getIrisConfig().shouldCacheShadowTerrain() && !shadowUsesImages && !shadowCompositeRenderer.hasPasses()
+					&& Arrays.stream(shadowComputes).allMatch(Objects::isNull)) {
+					shadowRenderer.enableStaticTerrainCache();
+				}
 			} else {
 				shadowRenderer = null;
 			}
@@ -808,6 +860,12 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		GLDebug.popGroup();
 		if (phase != WorldRenderingPhase.NONE)
 			GLDebug.pushGroup(phase.ordinal(), StringUtils.capitalize(phase.name().toLowerCase(Locale.ROOT).replace("_", " ")));
+
+		// Gbuffer programs are timed per phase, the shadow pass is timed as a whole by the shadow renderer
+		GpuTimestampProfiler.end(phaseTimer);
+		// Checked first so that the pass name isn't built on every phase change while profiling is off
+		phaseTimer = GpuTimestampProfiler.isEnabled() && phase != WorldRenderingPhase.NONE && !ShadowRenderer.ACTIVE
+			? GpuTimestampProfiler.begin("gbuffers_" + phase.name().toLowerCase(Locale.ROOT)) : -1;
 		this.phase = phase;
 	}
 
@@ -861,6 +919,11 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 	@Override
 	public void beginLevelRendering() {
 		isRenderingWorld = true;
+		IrisRenderSystem.resetTextureBindingCounters();
+		IrisRenderSystem.resetMipmapCounters();
+		GlFramebuffer.evictStaleFramebuffers();
+		GpuTimestampProfiler.beginFrame();
+		phaseTimer = -1;
 
 		if (!initializedBlockIds) {
 			WorldRenderingSettings.INSTANCE.setBlockStateIds(
@@ -934,17 +997,23 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		boolean changed = renderTargets.resizeIfNeeded(((Blaze3dRenderTargetExt) main).iris$getDepthBufferVersion(), depthTextureId, main.width,
 			main.height, depthBufferFormat, packDirectives);
 
-		if (changed) {
+		boolean rescaled = dynamicResolution != null
+			&& dynamicResolution.onFrame(SystemTimeUniforms.TIMER.getLastFrameTime() * 1000.0f)
+			&& renderTargets.setDynamicScale(dynamicResolution.getScale());
+
+		if (changed || rescaled) {
 			beginRenderer.recalculateSizes();
 			prepareRenderer.recalculateSizes();
 			deferredRenderer.recalculateSizes();
 			compositeRenderer.recalculateSizes();
-			finalPassRenderer.recalculateSwapPassSize();
-			if (shaderStorageBufferHolder != null) {
-				shaderStorageBufferHolder.hasResizedScreen(main.width, main.height);
-			}
 
-			customImages.forEach(image -> image.updateNewSize(main.width, main.height));
+			if (changed) {
+				if (shaderStorageBufferHolder != null) {
+					shaderStorageBufferHolder.hasResizedScreen(main.width, main.height);
+				}
+
+				customImages.forEach(image -> image.updateNewSize(main.width, main.height));
+			}
 
 			this.clearPassesFull.forEach(clearPass -> renderTargets.destroyFramebuffer(clearPass.getFramebuffer()));
 			this.clearPasses.forEach(clearPass -> renderTargets.destroyFramebuffer(clearPass.getFramebuffer()));
@@ -1039,6 +1108,55 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 
 	@Override
 	public void addDebugText(List<String> messages) {
+		if (Iris.getIrisConfig().areDebugOptionsEnabled() && IrisTerrainRenderHook.getInstance().isActive()) {
+			messages.add("[" + Iris.MODNAME + "] Terrain Uniforms: " + IrisTerrainRenderHook.getInstance().getUniformDebugString());
+		}
+
+		if (Iris.getIrisConfig().areDebugOptionsEnabled()) {
+			messages.add("[" + Iris.MODNAME + "] Texture Binds: " + IrisRenderSystem.getLastFrameTextureBinds() + " bound, "
+				+ IrisRenderSystem.getLastFrameTextureBindsSkipped() + " skipped");
+			messages.add("[" + Iris.MODNAME + "] Mipmaps: " + IrisRenderSystem.getLastFrameMipmapsGenerated() + " generated, "
+				+ IrisRenderSystem.getLastFrameMipmapsSkipped() + " up to date");
+			messages.add("[" + Iris.MODNAME + "] Final Pass: " + finalPassRenderer.getSwappedBufferCount() + " buffers swapped, "
+				+ finalPassRenderer.getLastFrameBytesCopied() / 1024 + " KB copied");
+			messages.add("[" + Iris.MODNAME + "] Deferred Deletions: " + DeferredDeletionQueue.INSTANCE.getPendingCount() + " pending, "
+				+ DeferredDeletionQueue.INSTANCE.getLastFrameRetired() + " retired");
+			messages.add("[" + Iris.MODNAME + "] Entity Buffers: " + ((MemoryTrackingRenderBuffers) Minecraft.getInstance().renderBuffers()).getEntityBufferAllocatedSize() / 1024
+				+ " KB allocated for " + IrisVertexFormats.getEntityFormat().getVertexSize() + "-byte vertices");
+			messages.add("[" + Iris.MODNAME + "] Framebuffer Cache: " + GlFramebuffer.getCachedFramebufferCount() + " framebuffers, "
+				+ GlFramebuffer.getCachedFramebufferCount() * 2 + " render passes, " + GlFramebuffer.getEvictedFramebufferCount() + " evicted");
+		}
+
+		long renderTargetBytes = 0;
+		long aliasableBytes = 0;
+		for (int i = 0; i < renderTargets.getRenderTargetCount(); i++) {
+			if (renderTargetAliases.containsKey(i)) {
+				aliasableBytes += renderTargets.getTextureBytes(i);
+			}
+			if (!renderTargets.isAliased(i)) {
+				renderTargetBytes += renderTargets.getTextureBytes(i);
+			}
+		}
+		messages.add("[" + Iris.MODNAME + "] Render Targets: " + (renderTargetBytes >> 20) + " MB, "
+			+ (aliasableBytes >> 20) + " MB " + (Iris.getIrisConfig().shouldAliasRenderTargets() ? "saved" : "could be saved") + " by aliasing");
+
+		if (dynamicResolution != null) {
+			messages.add("[" + Iris.MODNAME + "] Dynamic Resolution: " + Math.round(renderTargets.getDynamicScale() * 100) + "% for "
+				+ renderTargets.getDynamicallyScaledCount() + " render targets, " + Math.round(dynamicResolution.getAverageFrameTimeMs())
+				+ " ms average, " + Math.round(dynamicResolution.getTargetFrameTimeMs()) + " ms target");
+		}
+
+		if (GpuTimestampProfiler.isEnabled()) {
+			messages.add("[" + Iris.MODNAME + "] GPU Time (p50 / p95):");
+			for (PassTimingStats.Summary summary : GpuTimestampProfiler.getStats().getSlowest(8)) {
+				messages.add("  " + summary.pass() + ": " + formatMillis(summary.p50()) + " / " + formatMillis(summary.p95()) + " ms");
+			}
+			PassTimingStats.Summary total = GpuTimestampProfiler.getStats().getFrameTotal();
+			if (total != null) {
+				messages.add("  Total: " + formatMillis(total.p50()) + " / " + formatMillis(total.p95()) + " ms");
+			}
+		}
+
 		if (this.shadowRenderer != null) {
 			messages.add("");
 			shadowRenderer.addDebugText(messages);
@@ -1048,6 +1166,10 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 		}
 	}
 
+	private static String formatMillis(float millis) {
+		return String.valueOf(Math.round(millis * 100) / 100.0f);
+	}
+
 	@Override
 	public OptionalInt getForcedShadowRenderDistanceChunksForDisplay() {
 		return forcedShadowRenderDistanceChunks;
@@ -1092,12 +1214,18 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 	public void finalizeLevelRendering() {
 		isRenderingWorld = false;
 		compositeRenderer.renderAll();
-		finalPassRenderer.renderFinalPass();
+		colorSpaceConverted = finalPassRenderer.renderFinalPass(colorSpaceConverter);
+		GpuTimestampProfiler.endFrame();
 	}
 
 	@Override
 	public void finalizeGameRendering() {
-		colorSpaceConverter.process(Minecraft.getInstance().getMainRenderTarget().getColorTextureId());
+		// The final pass only converts the screen itself when fuseColorSpaceConversion is enabled in the config
+		if (!colorSpaceConverted) {
+			colorSpaceConverter.process(Minecraft.getInstance().getMainRenderTarget().getColorTextureId());
+		}
+
+		colorSpaceConverted = false;
 	}
 
 	@Override
@@ -1188,6 +1316,11 @@ public class IrisRenderingPipeline implements WorldRenderingPipeline, ShaderRend
 
 		destroyShaders();
 
+		if (GpuTimestampProfiler.isEnabled()) {
+			GpuTimestampProfiler.dumpCsv(FabricLoader.getInstance().getGameDir().resolve("iris-gpu-profile.csv"));
+			GpuTimestampProfiler.getStats().clear();
+		}
+
 		// Unbind all textures
 		//
 		// This is necessary because we don't want destroyed render target textures to remain bound to certain texture
@@ -0,0 +1,9 @@
+package net.irisshaders.iris.pipeline.graph;
+
+/**
+ * What has to happen at the boundary in front of a single pass.
+ *
+ * @param mergeWithPrevious  whether this pass may continue the render pass of the previous pass instead of ending it
+ */
+public record PassPlan(boolean mergeWithPrevious) {
+}
@@ -0,0 +1,36 @@
+package net.irisshaders.iris.pipeline.graph;
+
+import java.util.List;
+
+/**
+ * The compiled plan for a list of passes, as produced by {@link RenderGraphCompiler}.
+ */
+public class RenderGraph {
+	private final List<PassPlan> passes;
+	private final int renderPassCount;
+
+	RenderGraph(List<PassPlan> passes, int renderPassCount) {
+		this.passes = List.copyOf(passes);
+		this.renderPassCount = renderPassCount;
+	}
+
+	/**
+	 * @param index the index of the pass in the list the graph was compiled from
+	 */
+	public PassPlan getPass(int index) {
+		return passes.get(index);
+	}
+
+	public List<PassPlan> getPasses() {
+		return passes;
+	}
+
+	public int getRenderPassCount() {
+		return renderPassCount;
+	}
+
+	@Override
+	public String toString() {
+		return getRenderPassCount() + " render passes";
+	}
+}
@@ -0,0 +1,66 @@
+package net.irisshaders.iris.pipeline.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Works out the render pass boundaries of a list of composite-style passes ahead of time, so that they don't have
+ * to be rediscovered while rendering.
+ *
+ * <p>Adjacent passes that write to exactly the same images share one render pass; since both passes then write the
+ * same side of each of those render targets, the second pass can never read what the first one wrote. Compute
+ * dispatches, mipmap generation and different attachments all end the render pass.</p>
+ */
+public class RenderGraphCompiler {
+	private RenderGraphCompiler() {
+	}
+
+	public static RenderGraph compile(List<RenderGraphPass> passes) {
+		List<PassPlan> plans = new ArrayList<>(passes.size());
+		RenderGraphPass openPass = null;
+		int renderPassCount = 0;
+
+		for (RenderGraphPass pass : passes) {
+			if (pass.hasComputes()) {
+				// Compute programs can sample any render target, and can't be dispatched inside a render pass anyway.
+				openPass = null;
+			}
+
+			if (pass.computeOnly()) {
+				plans.add(new PassPlan(false));
+				continue;
+			}
+
+			if (!pass.mipmappedBuffers().isEmpty()) {
+				// Mipmaps are generated outside a render pass, from the side of the render target this pass reads.
+				openPass = null;
+			}
+
+			boolean merge = openPass != null && writesSameImages(openPass, pass);
+
+			if (!merge) {
+				renderPassCount++;
+			}
+
+			plans.add(new PassPlan(merge));
+			openPass = pass;
+		}
+
+		return new RenderGraph(plans, renderPassCount);
+	}
+
+	private static boolean writesSameImages(RenderGraphPass previous, RenderGraphPass pass) {
+		if (!Arrays.equals(previous.drawBuffers(), pass.drawBuffers())) {
+			return false;
+		}
+
+		for (int buffer : pass.drawBuffers()) {
+			if (previous.writesToAlt(buffer) != pass.writesToAlt(buffer)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,23 @@
+package net.irisshaders.iris.pipeline.graph;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The parts of a composite-style pass that decide which render target images it touches.
+ *
+ * @param drawBuffers       the render targets written by the fragment program, in attachment order
+ * @param readsFromAlt      the render targets whose alternate texture is read by this pass; the other side is written
+ * @param mipmappedBuffers  the render targets that get mipmaps generated before this pass runs
+ * @param hasComputes       whether compute programs are dispatched before the fragment program
+ * @param computeOnly       whether this pass has no fragment program at all
+ */
+public record RenderGraphPass(int[] drawBuffers, ImmutableSet<Integer> readsFromAlt,
+							  ImmutableSet<Integer> mipmappedBuffers, boolean hasComputes, boolean computeOnly) {
+	public static RenderGraphPass compute(ImmutableSet<Integer> readsFromAlt) {
+		return new RenderGraphPass(new int[0], readsFromAlt, ImmutableSet.of(), true, true);
+	}
+
+	public boolean writesToAlt(int buffer) {
+		return !readsFromAlt.contains(buffer);
+	}
+}
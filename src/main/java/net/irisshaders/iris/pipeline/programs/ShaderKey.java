@@ -103,6 +103,10 @@ public enum ShaderKey {
 	}
 
 	public VertexFormat getVertexFormat() {
+		if (vertexFormat == IrisVertexFormats.ENTITY) {
+			return IrisVertexFormats.getEntityFormat();
+		}
+
 		return vertexFormat;
 	}
 
@@ -6,7 +6,9 @@ import net.irisshaders.iris.gl.shader.ShaderType;
 import net.irisshaders.iris.gl.uniform.IrisUniformBuffer;
 import net.irisshaders.iris.pipeline.VulkanTerrainPipeline;
 import net.irisshaders.iris.uniforms.CapturedRenderingState;
+import net.irisshaders.iris.uniforms.SystemTimeUniforms;
 import org.joml.Vector3d;
+import net.irisshaders.iris.vulkan.resource.DeferredDeletionQueue;
 import net.irisshaders.iris.vulkan.shader.IrisSPIRVCompiler;
 import net.vulkanmod.render.vertex.CustomVertexFormat;
 import net.vulkanmod.vulkan.VRenderSystem;
@@ -869,25 +871,100 @@ public class IrisTerrainPipelineCompiler {
 		};
 	}
 
-	/**
-	 * Updates the IrisUniforms UBO data with current render state.
-	 * Must be called before terrain draw commands.
-	 */
 	private int uniformLogCounter = 0;
 	private int gbufferProjLogCount = 0;
 
 	// Frame timing state
 	private long lastFrameNanos = System.nanoTime();
 	private float cumulativeTime = 0.0f;
+	private float frameTimeSec = 0.0f;
 	private int frameCount = 0;
 	private float[] prevMvArr = new float[16];
 	private float[] prevProjArr = new float[16];
+	private float[] currentMvArr = new float[16];
+	private float[] currentProjArr = new float[16];
 	private double prevCamX, prevCamY, prevCamZ;
+	private double currentCamX, currentCamY, currentCamZ;
 	private boolean hasPreviousFrame = false;
+	private boolean hasCurrentFrame = false;
 	private boolean hasPrevCamPos = false;
+	private boolean hasCurrentCamPos = false;
 	private float currentVelocity = 0.0f;
 
-	public void updateUniforms(org.joml.Matrix4f modelView, org.joml.Matrix4f projection, boolean isShadowPass) {
+	// The inputs of the last evaluation of the shared uniforms, used to skip re-evaluating them for every layer
+	private int uniformFrame = -1;
+	private boolean uniformShadowPass;
+	private final Matrix4f uniformModelView = new Matrix4f();
+	private final Matrix4f uniformProjection = new Matrix4f();
+	private int uniformEvaluations;
+	private int uniformReuses;
+	private int lastFrameUniformEvaluations;
+	private int lastFrameUniformReuses;
+
+	/**
+	 * Updates the IrisUniforms UBO data with current render state.
+	 * Must be called before terrain draw commands.
+	 *
+	 * <p>This is called for every terrain layer, but nearly all of the uniforms only depend on the frame and the pass.
+	 * They are evaluated the first time a pass is drawn with a given set of matrices in a frame, and later layers
+	 * reuse the UBO contents, since the layer-specific values live in separate UBOs.</p>
+	 */
+	public void updateUniforms(Matrix4f modelView, Matrix4f projection, boolean isShadowPass) {
+		int frame = SystemTimeUniforms.COUNTER.getAsInt();
+
+		if (frame != uniformFrame) {
+			beginUniformFrame(frame);
+		} else if (isShadowPass == uniformShadowPass && modelView.equals(uniformModelView)
+			&& projection.equals(uniformProjection)) {
+			uniformReuses++;
+			return;
+		}
+
+		uniformShadowPass = isShadowPass;
+		uniformModelView.set(modelView);
+		uniformProjection.set(projection);
+		uniformEvaluations++;
+
+		updateFrameUniforms(modelView, projection, isShadowPass);
+	}
+
+	private void beginUniformFrame(int frame) {
+		uniformFrame = frame;
+		lastFrameUniformEvaluations = uniformEvaluations;
+		lastFrameUniformReuses = uniformReuses;
+		uniformEvaluations = 0;
+		uniformReuses = 0;
+
+		long nowNanos = System.nanoTime();
+		frameTimeSec = (nowNanos - lastFrameNanos) / 1_000_000_000.0f;
+		lastFrameNanos = nowNanos;
+		cumulativeTime += frameTimeSec;
+		if (cumulativeTime > 3600.0f) cumulativeTime -= 3600.0f;
+		frameCount = (frameCount + 1) % 720720;
+
+		// The values captured during the last frame's gbuffer pass become the previous frame values
+		if (hasCurrentFrame) {
+			System.arraycopy(currentMvArr, 0, prevMvArr, 0, 16);
+			System.arraycopy(currentProjArr, 0, prevProjArr, 0, 16);
+			hasPreviousFrame = true;
+		}
+
+		if (hasCurrentCamPos) {
+			prevCamX = currentCamX;
+			prevCamY = currentCamY;
+			prevCamZ = currentCamZ;
+			hasPrevCamPos = true;
+		}
+	}
+
+	/**
+	 * @return the amount of shared uniform evaluations and reuses during the last frame
+	 */
+	public String getUniformDebugString() {
+		return lastFrameUniformEvaluations + " evaluated, " + lastFrameUniformReuses + " reused";
+	}
+
+	private void updateFrameUniforms(Matrix4f modelView, Matrix4f projection, boolean isShadowPass) {
 		// Select the appropriate UBO buffer for this pass
 		IrisUniformBuffer buf;
 		if (isShadowPass && shadowUniformBuffer != null) {
@@ -1052,9 +1129,11 @@ public class IrisTerrainPipelineCompiler {
 			off = buf.getFieldOffset("gbufferPreviousProjection");
 			if (off >= 0) buf.writeMat4f(off, prevProjArr);
 		}
-		System.arraycopy(mvArr, 0, prevMvArr, 0, 16);
-		System.arraycopy(projGLArr, 0, prevProjArr, 0, 16);
-		hasPreviousFrame = true;
+		if (!isShadowPass) {
+			System.arraycopy(mvArr, 0, currentMvArr, 0, 16);
+			System.arraycopy(projGLArr, 0, currentProjArr, 0, 16);
+			hasCurrentFrame = true;
+		}
 
 		// === CAMERA ===
 		writeFloatField(buf, "near", 0.05f);
@@ -1078,7 +1157,6 @@ public class IrisTerrainPipelineCompiler {
 			// relativeEyePosition = camera offset from eye (usually 0 for first person)
 			writeVec3Field(buf, "relativeEyePosition", 0.0f, 0.0f, 0.0f);
 
-			// Write previousCameraPosition BEFORE overwriting prevCam with current position
 			if (hasPrevCamPos) {
 				writeVec3Field(buf, "previousCameraPosition", (float) prevCamX, (float) prevCamY, (float) prevCamZ);
 				writeVec3iField(buf, "previousCameraPositionInt",
@@ -1095,10 +1173,10 @@ public class IrisTerrainPipelineCompiler {
 			}
 
 			// Store current camera position for next frame
-			prevCamX = camPos.x;
-			prevCamY = camPos.y;
-			prevCamZ = camPos.z;
-			hasPrevCamPos = true;
+			currentCamX = camPos.x;
+			currentCamY = camPos.y;
+			currentCamZ = camPos.z;
+			hasCurrentCamPos = true;
 		}
 
 		// === VIEWPORT ===
@@ -1111,13 +1189,7 @@ public class IrisTerrainPipelineCompiler {
 		}
 
 		// === TIME ===
-		long nowNanos = System.nanoTime();
-		float frameTimeSec = (nowNanos - lastFrameNanos) / 1_000_000_000.0f;
-		lastFrameNanos = nowNanos;
-		cumulativeTime += frameTimeSec;
-		if (cumulativeTime > 3600.0f) cumulativeTime -= 3600.0f;
-		frameCount = (frameCount + 1) % 720720;
-
+		// Advanced once per frame in beginUniformFrame
 		writeFloatField(buf, "frameTime", frameTimeSec);
 		writeFloatField(buf, "frameTimeCounter", cumulativeTime);
 		writeIntField(buf, "frameCounter", frameCount);
@@ -1344,7 +1416,7 @@ public class IrisTerrainPipelineCompiler {
 		writeVec4Field(buf, "entityColor", 0.0f, 0.0f, 0.0f, 0.0f);
 		writeVec4Field(buf, "lightningBoltPosition", 0.0f, -1000.0f, 0.0f, 0.0f);
 
-		// previousCameraPosition is now written in the camera section above (before prevCam is overwritten)
+		// previousCameraPosition is written in the camera section above
 
 		// Shadow matrices — read from ShadowRenderer's static fields (set during renderShadows())
 		org.joml.Matrix4f shadowMV = net.irisshaders.iris.shadows.ShadowRenderer.MODELVIEW;
@@ -1415,10 +1487,16 @@ public class IrisTerrainPipelineCompiler {
 			uniformLogCounter++;
 		}
 
-		// Copy uniform data to cutout and translucent buffers (only during gbuffer pass).
-		// Their UBO layouts share the same field offsets for common uniforms,
-		// with pass-specific fields (iris_currentAlphaTest) appended at the end.
 		if (isShadowPass) return; // Shadow pass only needs the shadow UBO
+		updateLayerUniforms(buf);
+	}
+
+	/**
+	 * Copies the shared uniforms into the cutout and translucent buffers and writes the values that differ per layer.
+	 * Their UBO layouts share the same field offsets for common uniforms, with layer-specific fields
+	 * (iris_currentAlphaTest) appended at the end.
+	 */
+	private void updateLayerUniforms(IrisUniformBuffer buf) {
 		int solidSize = buf.getUsedSize();
 		if (cutoutUniformBuffer != null) {
 			int copySize = Math.min(solidSize, cutoutUniformBuffer.getUsedSize());
@@ -1575,22 +1653,23 @@ public class IrisTerrainPipelineCompiler {
 	public GraphicsPipeline getShadowCutoutPipeline() { return shadowCutoutPipeline; }
 
 	public void destroy() {
+		// Pipelines are destroyed once the frames in flight that may still use them are done.
 		// Avoid double-free when pipelines share the same instance
 		Set<GraphicsPipeline> destroyed = new HashSet<>();
 		if (solidPipeline != null && destroyed.add(solidPipeline)) {
-			solidPipeline.cleanUp();
+			DeferredDeletionQueue.INSTANCE.defer(solidPipeline::cleanUp);
 		}
 		if (cutoutPipeline != null && destroyed.add(cutoutPipeline)) {
-			cutoutPipeline.cleanUp();
+			DeferredDeletionQueue.INSTANCE.defer(cutoutPipeline::cleanUp);
 		}
 		if (translucentPipeline != null && destroyed.add(translucentPipeline)) {
-			translucentPipeline.cleanUp();
+			DeferredDeletionQueue.INSTANCE.defer(translucentPipeline::cleanUp);
 		}
 		if (shadowSolidPipeline != null && destroyed.add(shadowSolidPipeline)) {
-			shadowSolidPipeline.cleanUp();
+			DeferredDeletionQueue.INSTANCE.defer(shadowSolidPipeline::cleanUp);
 		}
 		if (shadowCutoutPipeline != null && destroyed.add(shadowCutoutPipeline)) {
-			shadowCutoutPipeline.cleanUp();
+			DeferredDeletionQueue.INSTANCE.defer(shadowCutoutPipeline::cleanUp);
 		}
 		solidPipeline = null;
 		cutoutPipeline = null;
@@ -290,4 +290,11 @@ public class IrisTerrainRenderHook {
 	public boolean isActive() {
 		return active;
 	}
+
+	/**
+	 * @return how often the shared terrain uniforms were evaluated and reused during the last frame
+	 */
+	public String getUniformDebugString() {
+		return compiler.getUniformDebugString();
+	}
 }
@@ -1,13 +1,18 @@
 package net.irisshaders.iris.pipeline.transform.transformer;
 
+import io.github.douira.glsl_transformer.ast.node.Identifier;
 import io.github.douira.glsl_transformer.ast.node.TranslationUnit;
 import io.github.douira.glsl_transformer.ast.node.abstract_node.ASTNode;
+import io.github.douira.glsl_transformer.ast.node.declaration.TypeAndInitDeclaration;
+import io.github.douira.glsl_transformer.ast.node.external_declaration.DeclarationExternalDeclaration;
 import io.github.douira.glsl_transformer.ast.node.external_declaration.ExternalDeclaration;
+import io.github.douira.glsl_transformer.ast.node.type.specifier.BuiltinNumericTypeSpecifier;
 import io.github.douira.glsl_transformer.ast.query.Root;
 import io.github.douira.glsl_transformer.ast.query.match.AutoHintedMatcher;
 import io.github.douira.glsl_transformer.ast.transform.ASTInjectionPoint;
 import io.github.douira.glsl_transformer.ast.transform.ASTParser;
 import io.github.douira.glsl_transformer.parser.ParseShape;
+import io.github.douira.glsl_transformer.util.Type;
 import net.irisshaders.iris.gl.shader.ShaderType;
 import net.irisshaders.iris.pipeline.transform.parameter.GeometryInfoParameters;
 import net.irisshaders.iris.pipeline.transform.parameter.VanillaParameters;
@@ -199,4 +204,62 @@ public class EntityPatcher {
 			}
 		}
 	}
+
+	/**
+	 * Replaces the mc_midTexCoord input with a value decoded from the normalized shorts of the compact entity format.
+	 * Must run on the vertex stage after every other transformation that may declare mc_midTexCoord.
+	 */
+	public static void patchPackedMidTexCoord(
+		ASTParser t,
+		TranslationUnit tree,
+		Root root) {
+		Type dimension = Type.BOOL;
+		for (Identifier id : root.identifierIndex.get("mc_midTexCoord")) {
+			TypeAndInitDeclaration initDeclaration = (TypeAndInitDeclaration) id.getAncestor(
+				2, 0, TypeAndInitDeclaration.class::isInstance);
+			if (initDeclaration == null) {
+				continue;
+			}
+			DeclarationExternalDeclaration declaration = (DeclarationExternalDeclaration) initDeclaration.getAncestor(
+				1, 0, DeclarationExternalDeclaration.class::isInstance);
+			if (declaration == null) {
+				continue;
+			}
+			if (initDeclaration.getType().getTypeSpecifier() instanceof BuiltinNumericTypeSpecifier numeric) {
+				dimension = numeric.type;
+
+				declaration.detachAndDelete();
+				initDeclaration.detachAndDelete();
+				id.detachAndDelete();
+				break;
+			}
+		}
+
+		String decoded = "(vec2(iris_MidTexPacked) / 65535.0)";
+		String declaration = switch (dimension) {
+			case BOOL -> null;
+			case FLOAT32 -> "float";
+			case F32VEC2 -> "vec2";
+			case F32VEC3 -> "vec3";
+			case F32VEC4 -> "vec4";
+			default -> throw new IllegalStateException("Somehow got a midTexCoord that is *above* 4 dimensions???");
+		};
+
+		if (declaration == null) {
+			return;
+		}
+
+		String value = switch (dimension) {
+			case FLOAT32 -> decoded + ".x";
+			case F32VEC3 -> "vec3(" + decoded + ", 0.0)";
+			case F32VEC4 -> "vec4(" + decoded + ", 0.0, 1.0)";
+			default -> decoded;
+		};
+
+		root.rename("mc_midTexCoord", "iris_MidTex");
+		tree.parseAndInjectNodes(t, ASTInjectionPoint.BEFORE_DECLARATIONS,
+			"in uvec2 iris_MidTexPacked;",
+			declaration + " iris_MidTex;");
+		tree.prependMainFunctionBody(t, "iris_MidTex = " + value + ";");
+	}
 }
@@ -87,6 +87,10 @@ public class VanillaCoreTransformer {
 			addIfNotExists(root, t, tree, "iris_UV0", Type.F32VEC2, StorageType.IN);
 			addIfNotExists(root, t, tree, "iris_UV1", Type.F32VEC2, StorageType.IN);
 			addIfNotExists(root, t, tree, "iris_UV2", Type.F32VEC2, StorageType.IN);
+
+			if (parameters.inputs.hasPackedMidTexCoord()) {
+				EntityPatcher.patchPackedMidTexCoord(t, tree, root);
+			}
 		}
 
 		// Gbuffer fragment shaders use standard Vulkan viewport (Y=0 at top),
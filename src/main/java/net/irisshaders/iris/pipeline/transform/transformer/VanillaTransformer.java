@@ -53,6 +53,10 @@ public class VanillaTransformer {
 
 			CommonTransformer.patchMultiTexCoord3(t, tree, root, parameters);
 
+			if (parameters.inputs.hasPackedMidTexCoord()) {
+				EntityPatcher.patchPackedMidTexCoord(t, tree, root);
+			}
+
 			// gl_MultiTexCoord0 and gl_MultiTexCoord1 are the only valid inputs (with
 			// gl_MultiTexCoord2 and gl_MultiTexCoord3 as aliases), other texture
 			// coordinates are not valid inputs.
@@ -5,6 +5,7 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceLinkedOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Reference2ReferenceOpenHashMap;
 import net.irisshaders.iris.Iris;
@@ -17,32 +18,112 @@ import net.minecraft.world.level.block.Blocks;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.Property;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.IntStream;
 
 public class BlockMaterialMapping {
+	public static final short NO_ID = -1;
+	private static final int UNMAPPED = Integer.MIN_VALUE;
+
 	public static Object2IntMap<BlockState> createBlockStateIdMap(Int2ObjectLinkedOpenHashMap<List<BlockEntry>> blockPropertiesMap, Int2ObjectLinkedOpenHashMap<List<TagEntry>> tagPropertiesMap) {
-		Object2IntMap<BlockState> blockStateIds = new Object2IntLinkedOpenHashMap<>();
+		// The entries are first compiled into per-block matchers, in the order in which they appear. Taking the first
+		// matcher that matches a state means that the first successful mapping takes precedence.
+		//     Needed for OptiFine parity:
+		//     https://github.com/IrisShaders/Iris/issues/1327
+		Map<Block, List<StateMatcher>> matchers = new Reference2ObjectOpenHashMap<>();
 
 		blockPropertiesMap.forEach((intId, entries) -> {
 			for (BlockEntry entry : entries) {
-				addBlockStates(entry, blockStateIds, intId);
+				addBlockStates(entry, matchers, intId);
 			}
 		});
 
 		tagPropertiesMap.forEach((intId, entries) -> {
 			for (TagEntry entry : entries) {
-				addTag(entry, blockStateIds, intId);
+				addTag(entry, matchers, intId);
 			}
 		});
 
+		// With the matchers compiled, every state can be resolved independently, so sweep the registry in parallel.
+		int[] ids = new int[Block.BLOCK_STATE_REGISTRY.size()];
+		IntStream.range(0, ids.length).parallel().forEach(stateId -> {
+			BlockState state = Block.BLOCK_STATE_REGISTRY.byId(stateId);
+			ids[stateId] = state != null ? findId(matchers.get(state.getBlock()), state) : UNMAPPED;
+		});
+
+		Object2IntMap<BlockState> blockStateIds = new Object2IntLinkedOpenHashMap<>();
+
+		for (int stateId = 0; stateId < ids.length; stateId++) {
+			if (ids[stateId] != UNMAPPED) {
+				blockStateIds.put(Block.BLOCK_STATE_REGISTRY.byId(stateId), ids[stateId]);
+			}
+		}
+
 		return blockStateIds;
 	}
 
-	private static void addTag(TagEntry tagEntry, Object2IntMap<BlockState> idMap, int intId) {
+	private static int findId(@Nullable List<StateMatcher> matchers, BlockState state) {
+		if (matchers == null) {
+			return UNMAPPED;
+		}
+
+		for (StateMatcher matcher : matchers) {
+			if (matcher.matches(state)) {
+				return matcher.intId();
+			}
+		}
+
+		return UNMAPPED;
+	}
+
+	/**
+	 * Flattens a block state ID map into an array indexed by {@link Block#BLOCK_STATE_REGISTRY} id, so that the ID of a
+	 * state can be resolved with a single array load instead of a hash lookup. States without an ID are stored as
+	 * {@link #NO_ID}; read the array through {@link #getBlockStateId}.
+	 *
+	 * @return the ID array, or null if an ID doesn't fit into an unsigned short
+	 */
+	@Nullable
+	public static short[] createBlockStateIdArray(Object2IntMap<BlockState> blockStateIds) {
+		short[] ids = new short[Block.BLOCK_STATE_REGISTRY.size()];
+		Arrays.fill(ids, NO_ID);
+
+		for (Object2IntMap.Entry<BlockState> entry : blockStateIds.object2IntEntrySet()) {
+			int id = entry.getIntValue();
+			if (id < 0 || id >= (NO_ID & 0xFFFF)) {
+				Iris.logger.warn("Block ID " + id + " is out of range for the dense block ID table, falling back to map lookups");
+				return null;
+			}
+
+			int stateId = Block.BLOCK_STATE_REGISTRY.getId(entry.getKey());
+			if (stateId >= 0 && stateId < ids.length) {
+				ids[stateId] = (short) id;
+			}
+		}
+
+		return ids;
+	}
+
+	/**
+	 * @return the ID of the state in an array created by {@link #createBlockStateIdArray}, or the fallback if it has none
+	 */
+	public static int getBlockStateId(short[] ids, BlockState state, int fallback) {
+		int stateId = Block.BLOCK_STATE_REGISTRY.getId(state);
+		if (stateId < 0 || stateId >= ids.length) {
+			return fallback;
+		}
+
+		int id = ids[stateId] & 0xFFFF;
+		return id == (NO_ID & 0xFFFF) ? fallback : id;
+	}
+
+	private static void addTag(TagEntry tagEntry, Map<Block, List<StateMatcher>> matchers, int intId) {
 		List<TagKey<Block>> compatibleTags = BuiltInRegistries.BLOCK.getTagNames().filter(t -> t.location().getNamespace().equalsIgnoreCase(tagEntry.id().getNamespace()) &&
 			t.location().getPath().equalsIgnoreCase(tagEntry.id().getName())).toList();
 
@@ -52,51 +133,11 @@ public class BlockMaterialMapping {
 			Iris.logger.fatal("You've broke the system; congrats. More than one tag matched " + tagEntry.id());
 		} else {
 			BuiltInRegistries.BLOCK.getTag(compatibleTags.get(0)).get().forEach((block) -> {
-					Map<String, String> propertyPredicates = tagEntry.propertyPredicates();
-
-					if (propertyPredicates.isEmpty()) {
-						// Just add all the states if there aren't any predicates
-						for (BlockState state : block.value().getStateDefinition().getPossibleStates()) {
-							// NB: Using putIfAbsent means that the first successful mapping takes precedence
-							//     Needed for OptiFine parity:
-							//     https://github.com/IrisShaders/Iris/issues/1327
-							idMap.putIfAbsent(state, intId);
-						}
-
-						return;
-					}
-
-					// As a result, we first collect each key=value pair in order to determine what properties we need to filter on.
-					// We already get this from BlockEntry, but we convert the keys to `Property`s to ensure they exist and to avoid
-					// string comparisons later.
-					Map<Property<?>, String> properties = new LinkedHashMap<>();
-					StateDefinition<Block, BlockState> stateManager = block.value().getStateDefinition();
-
-					propertyPredicates.forEach((key, value) -> {
-						Property<?> property = stateManager.getProperty(key);
-
-						if (property == null) {
-							Iris.logger.warn("Error while parsing the block ID map entry for tag \"" + "block." + intId + "\":");
-							Iris.logger.warn("- The block " + block.unwrapKey().get().location() + " has no property with the name " + key + ", ignoring!");
-
-							return;
-						}
-
-						properties.put(property, value);
-					});
-
-					// Once we have a list of properties and their expected values, we iterate over every possible state of this
-					// block and check for ones that match the filters. This isn't particularly efficient, but it works!
-					for (BlockState state : stateManager.getPossibleStates()) {
-						if (checkState(state, properties)) {
-							// NB: Using putIfAbsent means that the first successful mapping takes precedence
-							//     Needed for OptiFine parity:
-							//     https://github.com/IrisShaders/Iris/issues/1327
-							idMap.putIfAbsent(state, intId);
-						}
-					}
-			}
-			);
+				StateMatcher matcher = compileMatcher(block.value(), tagEntry.propertyPredicates(), intId,
+					"tag \"" + "block." + intId + "\"", block.unwrapKey().get().location());
+
+				matchers.computeIfAbsent(block.value(), b -> new ArrayList<>()).add(matcher);
+			});
 		}
 	}
 
@@ -114,6 +155,25 @@ public class BlockMaterialMapping {
 		return blockTypeIds;
 	}
 
+	/**
+	 * Flattens a block render type map into an array indexed by {@link Block#BLOCK_STATE_REGISTRY} id. States of blocks
+	 * without a custom render type are null.
+	 */
+	public static RenderType[] createBlockTypeArray(Map<Block, RenderType> blockTypeIds) {
+		RenderType[] types = new RenderType[Block.BLOCK_STATE_REGISTRY.size()];
+
+		blockTypeIds.forEach((block, type) -> {
+			for (BlockState state : block.getStateDefinition().getPossibleStates()) {
+				int stateId = Block.BLOCK_STATE_REGISTRY.getId(state);
+				if (stateId >= 0 && stateId < types.length) {
+					types[stateId] = type;
+				}
+			}
+		});
+
+		return types;
+	}
+
 	private static RenderType convertBlockToRenderType(BlockRenderType type) {
 		if (type == null) {
 			return null;
@@ -127,7 +187,7 @@ public class BlockMaterialMapping {
 		};
 	}
 
-	private static void addBlockStates(BlockEntry entry, Object2IntMap<BlockState> idMap, int intId) {
+	private static void addBlockStates(BlockEntry entry, Map<Block, List<StateMatcher>> matchers, int intId) {
 		NamespacedId id = entry.id();
 		ResourceLocation resourceLocation;
 		try {
@@ -144,69 +204,59 @@ public class BlockMaterialMapping {
 			return;
 		}
 
-		Map<String, String> propertyPredicates = entry.propertyPredicates();
-
-		if (propertyPredicates.isEmpty()) {
-			// Just add all the states if there aren't any predicates
-			for (BlockState state : block.getStateDefinition().getPossibleStates()) {
-				// NB: Using putIfAbsent means that the first successful mapping takes precedence
-				//     Needed for OptiFine parity:
-				//     https://github.com/IrisShaders/Iris/issues/1327
-				idMap.putIfAbsent(state, intId);
-			}
-
-			return;
-		}
+		StateMatcher matcher = compileMatcher(block, entry.propertyPredicates(), intId, "\"" + "block." + intId + "\"", resourceLocation);
+		matchers.computeIfAbsent(block, b -> new ArrayList<>()).add(matcher);
+	}
 
-		// As a result, we first collect each key=value pair in order to determine what properties we need to filter on.
-		// We already get this from BlockEntry, but we convert the keys to `Property`s to ensure they exist and to avoid
-		// string comparisons later.
-		Map<Property<?>, String> properties = new LinkedHashMap<>();
+	// We ignore generics here, the actual types don't matter because we only compare the values against each other,
+	// and the compiler checks just get in the way.
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static StateMatcher compileMatcher(Block block, Map<String, String> propertyPredicates, int intId, String entryName, ResourceLocation blockName) {
+		// We convert the keys to `Property`s to ensure they exist, and the expected values to the property's own value
+		// objects, to avoid string comparisons for every state.
 		StateDefinition<Block, BlockState> stateManager = block.getStateDefinition();
+		List<Property<?>> properties = new ArrayList<>(propertyPredicates.size());
+		List<Object> values = new ArrayList<>(propertyPredicates.size());
 
 		propertyPredicates.forEach((key, value) -> {
-			Property<?> property = stateManager.getProperty(key);
+			Property property = stateManager.getProperty(key);
 
 			if (property == null) {
-				Iris.logger.warn("Error while parsing the block ID map entry for \"" + "block." + intId + "\":");
-				Iris.logger.warn("- The block " + resourceLocation + " has no property with the name " + key + ", ignoring!");
+				Iris.logger.warn("Error while parsing the block ID map entry for " + entryName + ":");
+				Iris.logger.warn("- The block " + blockName + " has no property with the name " + key + ", ignoring!");
 
 				return;
 			}
 
-			properties.put(property, value);
+			// Compare against the serialized names, so that only values whose name matches exactly are accepted. If none
+			// does, the expected value stays null and the matcher never matches.
+			Object expectedValue = null;
+			for (Object possibleValue : property.getPossibleValues()) {
+				if (property.getName((Comparable) possibleValue).equals(value)) {
+					expectedValue = possibleValue;
+					break;
+				}
+			}
+
+			properties.add(property);
+			values.add(expectedValue);
 		});
 
-		// Once we have a list of properties and their expected values, we iterate over every possible state of this
-		// block and check for ones that match the filters. This isn't particularly efficient, but it works!
-		for (BlockState state : stateManager.getPossibleStates()) {
-			if (checkState(state, properties)) {
-				// NB: Using putIfAbsent means that the first successful mapping takes precedence
-				//     Needed for OptiFine parity:
-				//     https://github.com/IrisShaders/Iris/issues/1327
-				idMap.putIfAbsent(state, intId);
-			}
-		}
+		return new StateMatcher(intId, properties.toArray(Property[]::new), values.toArray());
 	}
 
-	// We ignore generics here, the actual types don't matter because we just convert
-	// them to strings anyways, and the compiler checks just get in the way.
-	//
-	// If you're able to rewrite this function without SuppressWarnings, feel free.
-	// But otherwise it works fine.
-	@SuppressWarnings({"rawtypes", "unchecked"})
-	private static boolean checkState(BlockState state, Map<Property<?>, String> expectedValues) {
-		for (Map.Entry<Property<?>, String> condition : expectedValues.entrySet()) {
-			Property property = condition.getKey();
-			String expectedValue = condition.getValue();
-
-			String actualValue = property.getName(state.getValue(property));
+	private record StateMatcher(int intId, Property<?>[] properties, Object[] values) {
+		@SuppressWarnings({"rawtypes", "unchecked"})
+		boolean matches(BlockState state) {
+			for (int i = 0; i < properties.length; i++) {
+				Property property = properties[i];
 
-			if (!expectedValue.equals(actualValue)) {
-				return false;
+				if (!state.getValue(property).equals(values[i])) {
+					return false;
+				}
 			}
-		}
 
-		return true;
+			return true;
+		}
 	}
 }
@@ -14,7 +14,9 @@ public class WorldRenderingSettings {
 
 	private boolean reloadRequired;
 	private Object2IntMap<BlockState> blockStateIds;
+	private short[] blockStateIdArray;
 	private Map<Block, RenderType> blockTypeIds;
+	private RenderType[] blockTypeArray;
 	private Object2IntFunction<NamespacedId> entityIds;
 	private Object2IntFunction<NamespacedId> itemIds;
 	private float ambientOcclusionLevel;
@@ -58,6 +60,29 @@ public class WorldRenderingSettings {
 
 		this.reloadRequired = true;
 		this.blockStateIds = blockStateIds;
+		this.blockStateIdArray = blockStateIds != null ? BlockMaterialMapping.createBlockStateIdArray(blockStateIds) : null;
+	}
+
+	/**
+	 * @return the block state IDs indexed by block state registry id, or null if they're unavailable. Read through
+	 * {@link BlockMaterialMapping#getBlockStateId}.
+	 */
+	@Nullable
+	public short[] getBlockStateIdArray() {
+		return blockStateIdArray;
+	}
+
+	/**
+	 * Resolves the ID of a block state, preferring the dense ID array over the map.
+	 */
+	public int getBlockStateId(BlockState state, int fallback) {
+		short[] ids = blockStateIdArray;
+		if (ids != null) {
+			return BlockMaterialMapping.getBlockStateId(ids, state, fallback);
+		}
+
+		Object2IntMap<BlockState> map = blockStateIds;
+		return map != null ? map.getOrDefault(state, fallback) : fallback;
 	}
 
 	@Nullable
@@ -72,6 +97,15 @@ public class WorldRenderingSettings {
 
 		this.reloadRequired = true;
 		this.blockTypeIds = blockTypeIds;
+		this.blockTypeArray = blockTypeIds != null ? BlockMaterialMapping.createBlockTypeArray(blockTypeIds) : null;
+	}
+
+	/**
+	 * @return the custom render types indexed by block state registry id, or null if there are none
+	 */
+	@Nullable
+	public RenderType[] getBlockTypeArray() {
+		return blockTypeArray;
 	}
 
 	@Nullable
@@ -287,6 +287,15 @@ public class PackDirectives {
 		return explicitFlips.build();
 	}
 
+	public boolean hasTextureScaleOverride(int index) {
+		if (index < PackRenderTargetDirectives.LEGACY_RENDER_TARGETS.size()
+			&& scaleOverrides.containsKey(PackRenderTargetDirectives.LEGACY_RENDER_TARGETS.get(index))) {
+			return true;
+		}
+
+		return scaleOverrides.containsKey("colortex" + index);
+	}
+
 	public Vector2i getTextureScaleOverride(int index, int dimensionX, int dimensionY) {
 		final String name = "colortex" + index;
 
@@ -36,6 +36,7 @@ import net.irisshaders.iris.targets.RenderTarget;
 import net.irisshaders.iris.uniforms.CommonUniforms;
 import net.irisshaders.iris.uniforms.FrameUpdateNotifier;
 import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import net.irisshaders.iris.vulkan.profiler.GpuTimestampProfiler;
 import net.minecraft.client.Minecraft;
 
 import java.util.Map;
@@ -118,6 +119,7 @@ public class ShadowCompositeRenderer {
 			Pass pass = new Pass();
 			ProgramDirectives directives = source.getDirectives();
 
+			pass.name = source.getName();
 			pass.program = createProgram(source, flipped, flippedAtLeastOnceSnapshot, renderTargets);
 			pass.computes = createComputes(computes[i], flipped, flippedAtLeastOnceSnapshot, renderTargets, holder);
 			int[] drawBuffers = source.getDirectives().hasUnknownDrawBuffers() ? new int[]{0, 1} : source.getDirectives().getDrawBuffers();
@@ -162,8 +164,7 @@ public class ShadowCompositeRenderer {
 	private static void setupMipmapping(net.irisshaders.iris.targets.RenderTarget target, boolean readFromAlt) {
 		int texture = readFromAlt ? target.getAltTexture() : target.getMainTexture();
 
-		// TODO: Only generate the mipmap if a valid mipmap hasn't been generated or if we've written to the buffer
-		// (since the last mipmap was generated)
+		// The mipmap is only regenerated if the texture has been written to since the last time it was generated.
 		//
 		// NB: We leave mipmapping enabled even if the buffer is written to again, this appears to match the
 		// behavior of ShadersMod/OptiFine, however I'm not sure if it's desired behavior. It's possible that a
@@ -173,7 +174,7 @@ public class ShadowCompositeRenderer {
 		//
 		// Also note that this only applies to one of the two buffers in a render target buffer pair - making it
 		// unlikely that this issue occurs in practice with most shader packs.
-		IrisRenderSystem.generateMipmaps(texture, GL_TEXTURE_2D);
+		IrisRenderSystem.generateMipmapsIfStale(texture, GL_TEXTURE_2D);
 		IrisRenderSystem.texParameteri(texture, GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, target.getInternalFormat().getPixelFormat().isInteger() ? GL_NEAREST_MIPMAP_NEAREST : GL_LINEAR_MIPMAP_LINEAR);
 	}
 
@@ -190,6 +191,10 @@ public class ShadowCompositeRenderer {
 		IrisRenderSystem.texParameteri(target.getAltTexture(), GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, filter);
 	}
 
+	public boolean hasPasses() {
+		return !passes.isEmpty();
+	}
+
 	public ImmutableSet<Integer> getFlippedAtLeastOnceFinal() {
 		return this.flippedAtLeastOnceFinal;
 	}
@@ -240,7 +245,9 @@ public class ShadowCompositeRenderer {
 
 			this.customUniforms.push(renderPass.program);
 
+			int timer = GpuTimestampProfiler.begin(renderPass.name);
 			FullScreenQuadRenderer.INSTANCE.renderQuad();
+			GpuTimestampProfiler.end(timer);
 		}
 
 		FullScreenQuadRenderer.INSTANCE.end();
@@ -355,6 +362,7 @@ public class ShadowCompositeRenderer {
 	}
 
 	private static class Pass {
+		String name;
 		Program program;
 		GlFramebuffer framebuffer;
 		ImmutableSet<Integer> flippedAtLeastOnce;
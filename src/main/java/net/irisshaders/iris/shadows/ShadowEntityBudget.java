@@ -0,0 +1,127 @@
+package net.irisshaders.iris.shadows;
+
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.phys.AABB;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Limits the amount of entities that are drawn into the shadow map.
+ *
+ * <p>Entities whose bounding box covers too few shadow texels are skipped, since their shadow would be a few
+ * flickering texels at best. The required amount of texels grows with the distance from the player, so that small
+ * entities stop casting shadows sooner than large ones.</p>
+ *
+ * <p>Each entity type is also capped to a fixed amount of shadow casters per frame. When a type goes over the cap,
+ * the closest half of the cap is always rendered, and the remaining slots are handed out round-robin to the other
+ * entities of that type over the following frames. That keeps crowded farms from blowing up the shadow pass while
+ * still giving the player consistent shadows for nearby mobs.</p>
+ */
+public class ShadowEntityBudget {
+	private static final float MIN_SHADOW_TEXELS = 2.0f;
+	private static final float LOD_DISTANCE = 32.0f;
+	private static final int MAX_ENTITIES_PER_TYPE = 64;
+
+	private final float texelSize;
+	private int frame;
+	private int rejectedTooSmall;
+	private int rejectedOverCap;
+
+	/**
+	 * @param texelSize the size of one shadow texel in blocks, or zero if it isn't constant (perspective shadows)
+	 */
+	public ShadowEntityBudget(float texelSize) {
+		this.texelSize = texelSize;
+	}
+
+	public void beginFrame() {
+		frame++;
+		rejectedTooSmall = 0;
+		rejectedOverCap = 0;
+	}
+
+	/**
+	 * @return true if the entity is too small to cast a meaningful shadow at its distance from the camera
+	 */
+	public boolean isTooSmall(Entity entity, double cameraX, double cameraY, double cameraZ) {
+		if (texelSize <= 0.0f) {
+			return false;
+		}
+
+		AABB box = entity.getBoundingBox();
+		double size = Math.max(box.getXsize(), Math.max(box.getYsize(), box.getZsize()));
+		double distance = Math.sqrt(entity.distanceToSqr(cameraX, cameraY, cameraZ));
+		double requiredTexels = MIN_SHADOW_TEXELS * Math.max(1.0, distance / LOD_DISTANCE);
+
+		if (size / texelSize < requiredTexels) {
+			rejectedTooSmall++;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Applies the per-type cap to a list of entities. The entities are grouped by type, and each group is ordered by
+	 * distance to the camera.
+	 *
+	 * @return the entities that should be drawn this frame, grouped by type
+	 */
+	public List<Entity> select(List<Entity> entities, double cameraX, double cameraY, double cameraZ) {
+		// Sort the entities by type first in order to allow vanilla's entity batching system to work better.
+		entities.sort(Comparator.<Entity>comparingInt(entity -> entity.getType().hashCode())
+			.thenComparingDouble(entity -> entity.distanceToSqr(cameraX, cameraY, cameraZ)));
+
+		List<Entity> selected = new ArrayList<>(entities.size());
+
+		int start = 0;
+
+		while (start < entities.size()) {
+			EntityType<?> type = entities.get(start).getType();
+			int end = start + 1;
+
+			while (end < entities.size() && entities.get(end).getType() == type) {
+				end++;
+			}
+
+			selectGroup(entities, start, end, selected);
+			start = end;
+		}
+
+		return selected;
+	}
+
+	private void selectGroup(List<Entity> entities, int start, int end, List<Entity> selected) {
+		int count = end - start;
+
+		if (count <= MAX_ENTITIES_PER_TYPE) {
+			selected.addAll(entities.subList(start, end));
+			return;
+		}
+
+		int nearest = MAX_ENTITIES_PER_TYPE / 2;
+		int rotating = MAX_ENTITIES_PER_TYPE - nearest;
+		int remaining = count - nearest;
+
+		selected.addAll(entities.subList(start, start + nearest));
+
+		int offset = (int) (((long) frame * rotating) % remaining);
+
+		for (int i = 0; i < rotating; i++) {
+			selected.add(entities.get(start + nearest + (offset + i) % remaining));
+		}
+
+		rejectedOverCap += count - MAX_ENTITIES_PER_TYPE;
+	}
+
+	public int getRejectedTooSmall() {
+		return rejectedTooSmall;
+	}
+
+	public int getRejectedOverCap() {
+		return rejectedOverCap;
+	}
+}
@@ -18,9 +18,11 @@ import net.irisshaders.iris.shaderpack.programs.ProgramSource;
 import net.irisshaders.iris.shaderpack.properties.PackDirectives;
 import net.irisshaders.iris.shaderpack.properties.PackShadowDirectives;
 import net.irisshaders.iris.shaderpack.properties.ShadowCullState;
+import net.irisshaders.iris.shadows.frustum.AabbBatch;
 import net.irisshaders.iris.shadows.frustum.BoxCuller;
 import net.irisshaders.iris.shadows.frustum.CullEverythingFrustum;
 import net.irisshaders.iris.shadows.frustum.FrustumHolder;
+import net.irisshaders.iris.shadows.frustum.ShadowOcclusionCuller;
 import net.irisshaders.iris.shadows.frustum.advanced.AdvancedShadowCullingFrustum;
 import net.irisshaders.iris.shadows.frustum.advanced.ReversedAdvancedShadowCullingFrustum;
 import net.irisshaders.iris.shadows.frustum.fallback.BoxCullingFrustum;
@@ -29,6 +31,7 @@ import net.irisshaders.iris.uniforms.CameraUniforms;
 import net.irisshaders.iris.uniforms.CapturedRenderingState;
 import net.irisshaders.iris.uniforms.CelestialUniforms;
 import net.irisshaders.iris.uniforms.custom.CustomUniforms;
+import net.irisshaders.iris.vulkan.profiler.GpuTimestampProfiler;
 import net.minecraft.client.Camera;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.multiplayer.ClientLevel;
@@ -36,6 +39,8 @@ import net.minecraft.client.renderer.LevelRenderer;
 import net.minecraft.client.renderer.MultiBufferSource;
 import net.minecraft.client.renderer.RenderBuffers;
 import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.blockentity.BlockEntityRenderDispatcher;
+import net.minecraft.client.renderer.blockentity.BlockEntityRenderer;
 import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.client.renderer.entity.EntityRenderDispatcher;
 import net.minecraft.core.BlockPos;
@@ -47,7 +52,6 @@ import org.joml.Vector3f;
 import org.joml.Vector4f;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 
@@ -101,6 +105,10 @@ public class ShadowRenderer {
 	private final RenderBuffers buffers;
 	private final RenderBuffersExt renderBuffersExt;
 	private final List<MipmapPass> mipmapPasses = new ArrayList<>();
+	private final ShadowViewChangeTracker viewChangeTracker = new ShadowViewChangeTracker();
+	private final ShadowOcclusionCuller occlusionCuller = new ShadowOcclusionCuller();
+	private final AabbBatch blockEntityBounds = new AabbBatch();
+	private final ShadowEntityBudget entityBudget;
 	private final String debugStringOverall;
 	private final boolean separateHardwareSamplers;
 	private final boolean shouldRenderLightBlockEntities;
@@ -110,6 +118,9 @@ public class ShadowRenderer {
 	private String debugStringTerrain = "(unavailable)";
 	private int renderedShadowEntities = 0;
 	private int renderedShadowBlockEntities = 0;
+	private boolean shadowViewUnchanged;
+	private StaticShadowCache staticShadowCache;
+	private boolean staticTerrainRestored;
 
 	public ShadowRenderer(ProgramSource shadow, PackDirectives directives,
 						  ShadowRenderTargets shadowRenderTargets, ShadowCompositeRenderer compositeRenderer, CustomUniforms customUniforms, boolean separateHardwareSamplers) {
@@ -145,6 +156,9 @@ public class ShadowRenderer {
 		this.fov = shadowDirectives.getFov();
 		this.targets = shadowRenderTargets;
 
+		// Perspective shadow maps don't have a constant texel size, so size based rejection is disabled for them.
+		this.entityBudget = new ShadowEntityBudget(fov == null ? (2.0f * halfPlaneLength) / resolution : 0.0f);
+
 		if (shadow != null) {
 			// Assume that the shader pack is doing voxelization if a geometry shader is detected.
 			// Also assume voxelization if image load / store is detected.
@@ -216,6 +230,18 @@ public class ShadowRenderer {
 		this.packHasVoxelization = packHasVoxelization || usesImages;
 	}
 
+	/**
+	 * Enables caching of the opaque shadow terrain between frames, unless the pack relies on the shadow pass running in
+	 * full every frame (voxelization or DH shadows).
+	 */
+	public void enableStaticTerrainCache() {
+		if (packHasVoxelization || shouldRenderDH || !shouldRenderTerrain || staticShadowCache != null) {
+			return;
+		}
+
+		staticShadowCache = new StaticShadowCache(targets);
+	}
+
 	private void configureSamplingSettings(PackShadowDirectives shadowDirectives) {
 		final ImmutableList<PackShadowDirectives.DepthSamplingSettings> depthSamplingSettings =
 			shadowDirectives.getDepthSamplingSettings();
@@ -347,25 +373,39 @@ public class ShadowRenderer {
 
 			cullingInfo = (isReversed ? "Reversed" : "Advanced") + " Frustum Culling enabled";
 
-			Vector4f shadowLightPosition = new CelestialUniforms(sunPathRotation).getShadowLightPositionInWorldSpace();
-
-			Vector3f shadowLightVectorFromOrigin =
-				new Vector3f(shadowLightPosition.x(), shadowLightPosition.y(), shadowLightPosition.z());
+			if (!isReversed && Minecraft.getInstance().smartCull) {
+				cullingInfo += ", Light Occlusion Culling enabled";
+			}
 
-			shadowLightVectorFromOrigin.normalize();
+			Vector3f shadowLightVectorFromOrigin = getShadowLightDirection();
 
 			if (isReversed) {
 				return holder.setInfo(new ReversedAdvancedShadowCullingFrustum(CapturedRenderingState.INSTANCE.getGbufferModelView(),
 					(shouldRenderDH && DHCompat.hasRenderingEnabled()) ? DHCompat.getProjection() : CapturedRenderingState.INSTANCE.getGbufferProjection(), shadowLightVectorFromOrigin, boxCuller, new BoxCuller(halfPlaneLength * renderMultiplier)), distanceInfo, cullingInfo);
 			} else {
-				return holder.setInfo(new AdvancedShadowCullingFrustum(CapturedRenderingState.INSTANCE.getGbufferModelView(),
-					(shouldRenderDH && DHCompat.hasRenderingEnabled()) ? DHCompat.getProjection() : CapturedRenderingState.INSTANCE.getGbufferProjection(), shadowLightVectorFromOrigin, boxCuller), distanceInfo, cullingInfo);
+				AdvancedShadowCullingFrustum frustum = new AdvancedShadowCullingFrustum(CapturedRenderingState.INSTANCE.getGbufferModelView(),
+					(shouldRenderDH && DHCompat.hasRenderingEnabled()) ? DHCompat.getProjection() : CapturedRenderingState.INSTANCE.getGbufferProjection(), shadowLightVectorFromOrigin, boxCuller);
+
+				if (Minecraft.getInstance().smartCull) {
+					frustum.setOcclusionCuller(occlusionCuller);
+				}
+
+				return holder.setInfo(frustum, distanceInfo, cullingInfo);
 			}
 		}
 
 		return holder;
 	}
 
+	private Vector3f getShadowLightDirection() {
+		Vector4f shadowLightPosition = new CelestialUniforms(sunPathRotation).getShadowLightPositionInWorldSpace();
+
+		Vector3f shadowLightVectorFromOrigin =
+			new Vector3f(shadowLightPosition.x(), shadowLightPosition.y(), shadowLightPosition.z());
+
+		return shadowLightVectorFromOrigin.normalize();
+	}
+
 	public void setupShadowViewport() {
 		// Set up the viewport
 		RenderSystem.viewport(0, 0, resolution, resolution);
@@ -381,6 +421,7 @@ public class ShadowRenderer {
 		levelRenderer.getLevel().getProfiler().popPush("shadows");
 		ACTIVE = true;
 		net.vulkanmod.render.chunk.WorldRenderer.setShadowPassActive(true);
+		int timer = GpuTimestampProfiler.begin("shadow");
 
 		renderDistance = (int) ((halfPlaneLength * renderDistanceMultiplier) / 16);
 
@@ -426,15 +467,35 @@ public class ShadowRenderer {
 
 		levelRenderer.getLevel().getProfiler().pop();
 
-		// Disable chunk occlusion culling - it's a bit complex to get this properly working with shadow rendering
-		// as-is, however in the future it will be good to work on restoring it for a nice performance boost.
-		//
-		// TODO: Get chunk occlusion working with shadows
+		// Disable the camera-based chunk occlusion culling, since it has no meaning from the point of view of the shadow
+		// light. Instead, the advanced shadow frustum is given a light-direction occlusion culler when smart culling
+		// is enabled, which is rebuilt below whenever the shadow view changed.
 		boolean wasChunkCullingEnabled = client.smartCull;
 		client.smartCull = false;
 
-		// Always schedule a terrain update
-		// TODO: Only schedule a terrain update if the sun / moon is moving, or the shadow map camera moved.
+		// The terrain setup has to run every frame: VulkanMod draws from its own section queues rather than the vanilla
+		// visible section list that CullingDataCache keeps for the shadow pass, and the player camera setup refills
+		// them. Only the work Iris derives from the shadow view, such as the light occlusion culler, is skipped when
+		// the sun / moon and the shadow map camera haven't moved.
+		Frustum terrainFrustum = terrainFrustumHolder.getFrustum();
+		boolean viewDependent = terrainFrustum instanceof AdvancedShadowCullingFrustum;
+
+		shadowViewUnchanged = !viewChangeTracker.hasViewChanged(getLevel(), MODELVIEW, intervalSize, renderDistance,
+			terrainFrustum.getClass(),
+			viewDependent ? CapturedRenderingState.INSTANCE.getGbufferModelView() : null,
+			viewDependent ? CapturedRenderingState.INSTANCE.getGbufferProjection() : null,
+			cameraX, cameraY, cameraZ);
+
+		if (!(wasChunkCullingEnabled && terrainFrustum instanceof AdvancedShadowCullingFrustum
+			&& !(terrainFrustum instanceof ReversedAdvancedShadowCullingFrustum))) {
+			occlusionCuller.clear();
+		} else if (!shadowViewUnchanged) {
+			levelRenderer.getLevel().getProfiler().push("light occlusion");
+			occlusionCuller.update(getLevel(), getShadowLightDirection(), cameraX, cameraZ,
+				Minecraft.getInstance().options.getEffectiveRenderDistance());
+			levelRenderer.getLevel().getProfiler().pop();
+		}
+
 		// We have to ensure that we don't regenerate clouds every frame, since that's what needsUpdate ends up doing.
 		// This took up to 10% of the frame time before we applied this fix! That's really bad!
 		boolean regenerateClouds = levelRenderer.shouldRegenerateClouds();
@@ -442,7 +503,7 @@ public class ShadowRenderer {
 		levelRenderer.setShouldRegenerateClouds(regenerateClouds);
 
 		// Execute the vanilla terrain setup / culling routines using our shadow frustum.
-		levelRenderer.invokeSetupRender(playerCamera, terrainFrustumHolder.getFrustum(), false, false);
+		levelRenderer.invokeSetupRender(playerCamera, terrainFrustum, false, false);
 
 		// Don't forget to increment the frame counter! This variable is arbitrary and only used in terrain setup,
 		// and if it's not incremented, the vanilla culling code will get confused and think that it's already seen
@@ -488,8 +549,14 @@ public class ShadowRenderer {
 			terrainHook.setShadowFramebuffer(targets.getDepthSourceFb());
 		}
 
+		staticTerrainRestored = staticShadowCache != null && staticShadowCache.canRestore(shadowViewUnchanged, shadowProjection,
+			cameraX, cameraY, cameraZ, client.options.getEffectiveRenderDistance() * 16);
+
 		// Render all opaque terrain unless pack requests not to
-		if (shouldRenderTerrain) {
+		if (shouldRenderTerrain && staticTerrainRestored) {
+			// Nothing relevant changed since the static terrain was last drawn, just put it back.
+			staticShadowCache.restore();
+		} else if (shouldRenderTerrain) {
 			if (shadowTerrainLogCount < 3) {
 				net.irisshaders.iris.Iris.logger.info("[ShadowRenderer] Rendering shadow terrain: resolution={} hookActive={} hasFB={}",
 					resolution, terrainHook.isActive(), targets.getDepthSourceFb() != null);
@@ -498,6 +565,10 @@ public class ShadowRenderer {
 			levelRenderer.invokeRenderSectionLayer(RenderType.solid(), cameraX, cameraY, cameraZ, MODELVIEW, shadowProjection);
 			levelRenderer.invokeRenderSectionLayer(RenderType.cutout(), cameraX, cameraY, cameraZ, MODELVIEW, shadowProjection);
 			levelRenderer.invokeRenderSectionLayer(RenderType.cutoutMipped(), cameraX, cameraY, cameraZ, MODELVIEW, shadowProjection);
+
+			if (staticShadowCache != null) {
+				staticShadowCache.capture();
+			}
 		}
 
 		// Log shadow terrain pass results (first 3 frames only)
@@ -627,6 +698,7 @@ public class ShadowRenderer {
 			((CullingDataCache) levelRenderer).restoreState();
 		}
 
+		GpuTimestampProfiler.end(timer);
 		compositeRenderer.renderAll();
 
 		levelRenderer.setRenderBuffers(playerBuffers);
@@ -649,7 +721,27 @@ public class ShadowRenderer {
 			culler.setPosition(cameraX, cameraY, cameraZ);
 		}
 
-		for (BlockEntity entity : visibleBlockEntities) {
+		BlockEntityRenderDispatcher dispatcher = Minecraft.getInstance().getBlockEntityRenderDispatcher();
+
+		// Block entities come from sections that passed the shadow frustum, but a section that is only partly inside it
+		// brings along all of its block entities. Test each of them against the frustum as well, all in one batch.
+		AdvancedShadowCullingFrustum frustum = entityFrustumHolder.getFrustum() instanceof AdvancedShadowCullingFrustum advanced ? advanced : null;
+
+		if (frustum != null) {
+			blockEntityBounds.clear();
+
+			for (BlockEntity entity : visibleBlockEntities) {
+				BlockPos pos = entity.getBlockPos();
+				// One block of padding, since most block entity models stick out of their block a bit.
+				blockEntityBounds.add(pos.getX() - 1, pos.getY() - 1, pos.getZ() - 1, pos.getX() + 2, pos.getY() + 2, pos.getZ() + 2);
+			}
+
+			blockEntityBounds.test(frustum);
+		}
+
+		for (int i = 0; i < visibleBlockEntities.size(); i++) {
+			BlockEntity entity = visibleBlockEntities.get(i);
+
 			if (lightsOnly && entity.getBlockState().getLightEmission() == 0) {
 				continue;
 			}
@@ -660,9 +752,19 @@ public class ShadowRenderer {
 					continue;
 				}
 			}
+
+			if (frustum != null && !blockEntityBounds.isVisible(i)) {
+				BlockEntityRenderer<BlockEntity> renderer = dispatcher.getRenderer(entity);
+
+				// Beacon beams and the like reach far outside of their block
+				if (renderer == null || !renderer.shouldRenderOffScreen(entity)) {
+					continue;
+				}
+			}
+
 			modelView.pushPose();
 			modelView.translate(pos.getX() - cameraX, pos.getY() - cameraY, pos.getZ() - cameraZ);
-			Minecraft.getInstance().getBlockEntityRenderDispatcher().render(entity, tickDelta, modelView, bufferSource);
+			dispatcher.render(entity, tickDelta, modelView, bufferSource);
 			modelView.popPose();
 
 			shadowBlockEntities++;
@@ -676,21 +778,33 @@ public class ShadowRenderer {
 	private int renderEntities(LevelRendererAccessor levelRenderer, EntityRenderDispatcher dispatcher, MultiBufferSource.BufferSource bufferSource, PoseStack modelView, float tickDelta, Frustum frustum, double cameraX, double cameraY, double cameraZ) {
 		levelRenderer.getLevel().getProfiler().push("cull");
 
+		List<Entity> candidateEntities = new ArrayList<>(32);
 		List<Entity> renderedEntities = new ArrayList<>(32);
+		Entity player = Minecraft.getInstance().player;
+
+		entityBudget.beginFrame();
 
-		// TODO: I'm sure that this can be improved / optimized.
 		for (Entity entity : getLevel().entitiesForRendering()) {
 			if (!dispatcher.shouldRender(entity, frustum, cameraX, cameraY, cameraZ) || entity.isSpectator()) {
 				continue;
 			}
 
-			renderedEntities.add(entity);
+			// The player's own shadow (and whatever they're riding) is always rendered, regardless of the budget.
+			if (player != null && (entity == player || entity.hasPassenger(player) || player.hasPassenger(entity))) {
+				renderedEntities.add(entity);
+				continue;
+			}
+
+			if (entityBudget.isTooSmall(entity, cameraX, cameraY, cameraZ)) {
+				continue;
+			}
+
+			candidateEntities.add(entity);
 		}
 
 		levelRenderer.getLevel().getProfiler().popPush("sort");
 
-		// Sort the entities by type first in order to allow vanilla's entity batching system to work better.
-		renderedEntities.sort(Comparator.comparingInt(entity -> entity.getType().hashCode()));
+		renderedEntities.addAll(entityBudget.select(candidateEntities, cameraX, cameraY, cameraZ));
 
 		levelRenderer.getLevel().getProfiler().popPush("build entity geometry");
 
@@ -760,6 +874,14 @@ public class ShadowRenderer {
 			messages.add("[" + Iris.MODNAME + "] Shadow Culling Terrain: " + terrainFrustumHolder.getCullingInfo() + " Entity: " + entityFrustumHolder.getCullingInfo());
 			messages.add("[" + Iris.MODNAME + "] Shadow Terrain: " + debugStringTerrain
 				+ (shouldRenderTerrain ? "" : " (no terrain) ") + (shouldRenderTranslucent ? "" : "(no translucent)"));
+			messages.add("[" + Iris.MODNAME + "] Shadow View: " + (shadowViewUnchanged ? "unchanged" : "moved")
+				+ " (light occlusion / terrain cache reused for " + viewChangeTracker.getTotalUnchangedFrames() + " frames)");
+			messages.add("[" + Iris.MODNAME + "] Shadow Light Occlusion: " + occlusionCuller.getCulledSections() + " sections unreachable");
+
+			if (staticShadowCache != null) {
+				messages.add("[" + Iris.MODNAME + "] Shadow Terrain Cache: " + (staticTerrainRestored ? "restored" : "redrawn")
+					+ " (" + staticShadowCache.getRestoredFrames() + " restored, " + staticShadowCache.getCapturedFrames() + " redrawn)");
+			}
 			messages.add("[" + Iris.MODNAME + "] Shadow Entities: " + getEntitiesDebugString());
 			messages.add("[" + Iris.MODNAME + "] Shadow Block Entities: " + getBlockEntitiesDebugString());
 
@@ -768,13 +890,20 @@ public class ShadowRenderer {
 			}
 		} else {
 			messages.add("[" + Iris.MODNAME + "] Shadow info: " + debugStringTerrain);
-			messages.add("[" + Iris.MODNAME + "] E: " + renderedShadowEntities);
+			messages.add("[" + Iris.MODNAME + "] E: " + renderedShadowEntities + " (-" + (entityBudget.getRejectedTooSmall() + entityBudget.getRejectedOverCap()) + ")");
 			messages.add("[" + Iris.MODNAME + "] BE: " + renderedShadowBlockEntities);
 		}
 	}
 
 	private String getEntitiesDebugString() {
-		return (shouldRenderEntities || shouldRenderPlayer) ? (renderedShadowEntities + "/" + Minecraft.getInstance().level.getEntityCount()) : "disabled by pack";
+		if (!(shouldRenderEntities || shouldRenderPlayer)) {
+			return "disabled by pack";
+		}
+
+		String budgetInfo = shouldRenderEntities ? " (" + entityBudget.getRejectedTooSmall() + " too small, "
+			+ entityBudget.getRejectedOverCap() + " over type cap)" : "";
+
+		return renderedShadowEntities + "/" + Minecraft.getInstance().level.getEntityCount() + budgetInfo;
 	}
 
 	private String getBlockEntitiesDebugString() {
@@ -782,6 +911,10 @@ public class ShadowRenderer {
 	}
 
 	public void destroy() {
+		if (staticShadowCache != null) {
+			staticShadowCache.destroy();
+		}
+
 		targets.destroy();
 		((MemoryTrackingRenderBuffers) buffers).freeAndDeleteBuffers();
 	}
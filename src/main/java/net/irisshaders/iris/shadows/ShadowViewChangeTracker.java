@@ -0,0 +1,135 @@
+package net.irisshaders.iris.shadows;
+
+import net.minecraft.core.SectionPos;
+import org.joml.Matrix4fc;
+
+import java.util.Arrays;
+
+/**
+ * Tracks the inputs of the shadow view (the shadow model-view, the camera position and the culling frustum inputs) so
+ * that work derived from them, such as the light occlusion culler and the static terrain cache, can be reused when none
+ * of them changed since the previous shadow frame. This doesn't gate the shadow terrain setup: the section traversal
+ * still runs every frame, since VulkanMod keeps a single set of section queues that the player camera setup refills.
+ *
+ * <p>The shadow model-view matrix is quantised before being compared, since the sun moves a tiny amount every frame
+ * and redoing that work for sub-texel rotations only burns CPU time. The grid snapping from
+ * {@link ShadowMatrices#snapModelViewToGrid} is accounted for by keying on the interval cell the camera is in, and the
+ * camera section position covers the distance based culling that is centered on the player.</p>
+ *
+ * <p>Since newly compiled or loaded sections can't be observed from here, the view is still reported as changed every
+ * {@link #MAX_UNCHANGED_FRAMES} frames so that the derived results never lag too far behind.</p>
+ */
+public class ShadowViewChangeTracker {
+	/**
+	 * Number of steps per unit used when quantising matrix elements. 256 steps keeps the shadow light direction within
+	 * roughly a quarter of a degree, which is several in-game seconds of sun movement.
+	 */
+	private static final float MATRIX_QUANTIZATION = 256.0f;
+	private static final int MAX_UNCHANGED_FRAMES = 20;
+
+	private final int[] shadowModelView = new int[16];
+	private final int[] playerView = new int[32];
+	private final int[] scratch = new int[32];
+	private boolean valid;
+	private Object level;
+	private Class<?> frustumType;
+	private int renderDistance;
+	private float intervalSize;
+	private long intervalCellX;
+	private long intervalCellY;
+	private long intervalCellZ;
+	private int sectionX;
+	private int sectionY;
+	private int sectionZ;
+	private int unchangedFrames;
+	private int totalUnchangedFrames;
+
+	private static void quantize(Matrix4fc matrix, int[] target, int offset) {
+		for (int column = 0; column < 4; column++) {
+			for (int row = 0; row < 4; row++) {
+				target[offset + column * 4 + row] = Math.round(matrix.get(column, row) * MATRIX_QUANTIZATION);
+			}
+		}
+	}
+
+	private static long cell(double position, float intervalSize) {
+		if (intervalSize == 0.0F) {
+			return 0;
+		}
+
+		return (long) Math.floor(position / intervalSize);
+	}
+
+	/**
+	 * Compares the current shadow view inputs against the ones from the previous call and records them.
+	 *
+	 * @param playerView       the player model-view matrix, or null if the shadow frustum doesn't depend on it
+	 * @param playerProjection the player projection matrix, or null if the shadow frustum doesn't depend on it
+	 * @return true if the shadow view changed, false if the results derived from the previous one can be reused
+	 */
+	public boolean hasViewChanged(Object level, Matrix4fc shadowModelView, float intervalSize, int renderDistance,
+								 Class<?> frustumType, Matrix4fc playerView, Matrix4fc playerProjection,
+								 double cameraX, double cameraY, double cameraZ) {
+		boolean changed = !valid
+			|| unchangedFrames >= MAX_UNCHANGED_FRAMES
+			|| level != this.level
+			|| frustumType != this.frustumType
+			|| renderDistance != this.renderDistance
+			|| intervalSize != this.intervalSize;
+
+		long cellX = cell(cameraX, intervalSize);
+		long cellY = cell(cameraY, intervalSize);
+		long cellZ = cell(cameraZ, intervalSize);
+
+		changed |= cellX != intervalCellX || cellY != intervalCellY || cellZ != intervalCellZ;
+
+		int newSectionX = SectionPos.posToSectionCoord(cameraX);
+		int newSectionY = SectionPos.posToSectionCoord(cameraY);
+		int newSectionZ = SectionPos.posToSectionCoord(cameraZ);
+
+		changed |= newSectionX != sectionX || newSectionY != sectionY || newSectionZ != sectionZ;
+
+		quantize(shadowModelView, scratch, 0);
+		changed |= !Arrays.equals(scratch, 0, 16, this.shadowModelView, 0, 16);
+		System.arraycopy(scratch, 0, this.shadowModelView, 0, 16);
+
+		if (playerView != null && playerProjection != null) {
+			quantize(playerView, scratch, 0);
+			quantize(playerProjection, scratch, 16);
+		} else {
+			Arrays.fill(scratch, 0);
+		}
+
+		changed |= !Arrays.equals(scratch, this.playerView);
+		System.arraycopy(scratch, 0, this.playerView, 0, 32);
+
+		this.valid = true;
+		this.level = level;
+		this.frustumType = frustumType;
+		this.renderDistance = renderDistance;
+		this.intervalSize = intervalSize;
+		this.intervalCellX = cellX;
+		this.intervalCellY = cellY;
+		this.intervalCellZ = cellZ;
+		this.sectionX = newSectionX;
+		this.sectionY = newSectionY;
+		this.sectionZ = newSectionZ;
+
+		if (changed) {
+			unchangedFrames = 0;
+		} else {
+			unchangedFrames++;
+			totalUnchangedFrames++;
+		}
+
+		return changed;
+	}
+
+	public void invalidate() {
+		valid = false;
+	}
+
+	public int getTotalUnchangedFrames() {
+		return totalUnchangedFrames;
+	}
+}
@@ -0,0 +1,182 @@
+package net.irisshaders.iris.shadows;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.irisshaders.iris.gl.IrisRenderSystem;
+import net.irisshaders.iris.targets.DepthTexture;
+import net.irisshaders.iris.targets.RenderTarget;
+import net.minecraft.core.SectionPos;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a persistent copy of the shadow map as it looked right after the opaque terrain was drawn, so that static
+ * terrain doesn't have to be re-rendered into the shadow map every frame.
+ *
+ * <p>The cached copy is restored into the shadow targets instead of drawing the solid, cutout and cutout_mipped layers.
+ * Entities, block entities and translucent terrain are still drawn on top of it every frame. The cache is invalidated
+ * whenever the shadow view changed (see {@link ShadowViewChangeTracker}), which covers the sun moving past
+ * the quantisation threshold, the shadow camera moving, and the periodic refresh for newly compiled sections. It is
+ * also invalidated for a few frames after a section inside the shadow volume was marked dirty, since the rebuilt mesh
+ * is only uploaded asynchronously some time later.</p>
+ */
+public class StaticShadowCache {
+	private static final int GL_TEXTURE_2D = 0x0DE1;
+	private static final int REBUILD_GRACE_FRAMES = 10;
+	private static final int MAX_PENDING_SECTIONS = 4096;
+
+	private static final LongArrayList pendingDirtySections = new LongArrayList();
+	private static boolean pendingOverflow;
+
+	private final ShadowRenderTargets targets;
+	private final DepthTexture depth;
+	private final int[] colorTextures;
+	private final Matrix4f projection = new Matrix4f();
+	private boolean valid;
+	private int dirtyFrames;
+	private int restoredFrames;
+	private int capturedFrames;
+
+	public StaticShadowCache(ShadowRenderTargets targets) {
+		this.targets = targets;
+		this.depth = new DepthTexture("shadowtex0 static cache", targets.getResolution(), targets.getResolution(),
+			targets.getDepthTexture().getFormat());
+		this.colorTextures = new int[targets.getNumColorTextures()];
+	}
+
+	public static void onSectionDirty(int x, int y, int z) {
+		if (pendingDirtySections.size() >= MAX_PENDING_SECTIONS) {
+			pendingOverflow = true;
+			return;
+		}
+
+		pendingDirtySections.add(SectionPos.asLong(x, y, z));
+	}
+
+	private void processDirtySections(double cameraX, double cameraY, double cameraZ, double radius) {
+		if (pendingOverflow) {
+			dirtyFrames = REBUILD_GRACE_FRAMES;
+		} else {
+			for (int i = 0; i < pendingDirtySections.size(); i++) {
+				long section = pendingDirtySections.getLong(i);
+
+				double centerX = SectionPos.sectionToBlockCoord(SectionPos.x(section), 8);
+				double centerY = SectionPos.sectionToBlockCoord(SectionPos.y(section), 8);
+				double centerZ = SectionPos.sectionToBlockCoord(SectionPos.z(section), 8);
+
+				if (Math.abs(centerX - cameraX) <= radius + 8 && Math.abs(centerY - cameraY) <= radius + 8
+					&& Math.abs(centerZ - cameraZ) <= radius + 8) {
+					dirtyFrames = REBUILD_GRACE_FRAMES;
+					break;
+				}
+			}
+		}
+
+		pendingDirtySections.clear();
+		pendingOverflow = false;
+	}
+
+	/**
+	 * Decides whether the cached static terrain can be used for this frame.
+	 *
+	 * @param shadowViewUnchanged whether the shadow view is the same as in the previous frame
+	 * @param radius              distance from the camera in blocks in which dirty sections affect the shadow map
+	 */
+	public boolean canRestore(boolean shadowViewUnchanged, Matrix4fc shadowProjection,
+							  double cameraX, double cameraY, double cameraZ, double radius) {
+		processDirtySections(cameraX, cameraY, cameraZ, radius);
+
+		if (dirtyFrames > 0) {
+			dirtyFrames--;
+			valid = false;
+		}
+
+		if (!shadowViewUnchanged || !projection.equals(shadowProjection, 0.0f)) {
+			valid = false;
+		}
+
+		projection.set(shadowProjection);
+
+		return valid;
+	}
+
+	/**
+	 * Copies the static terrain from the current shadow targets into the cache.
+	 */
+	public void capture() {
+		int resolution = targets.getResolution();
+
+		IrisRenderSystem.copyDepthImage(targets.getDepthTexture().getTextureId(), depth.getTextureId(), resolution, resolution);
+
+		for (int i = 0; i < colorTextures.length; i++) {
+			if (targets.get(i) == null) {
+				continue;
+			}
+
+			if (colorTextures[i] == 0) {
+				colorTextures[i] = createColorTexture(targets.get(i), resolution);
+			}
+
+			IrisRenderSystem.copyDepthImage(targets.get(i).getMainTexture(), colorTextures[i], resolution, resolution);
+		}
+
+		valid = true;
+		capturedFrames++;
+	}
+
+	/**
+	 * Copies the cached static terrain back into the shadow targets, replacing their current contents.
+	 */
+	public void restore() {
+		int resolution = targets.getResolution();
+
+		IrisRenderSystem.copyDepthImage(depth.getTextureId(), targets.getDepthTexture().getTextureId(), resolution, resolution);
+
+		for (int i = 0; i < colorTextures.length; i++) {
+			if (colorTextures[i] != 0 && targets.get(i) != null) {
+				IrisRenderSystem.copyDepthImage(colorTextures[i], targets.get(i).getMainTexture(), resolution, resolution);
+			}
+		}
+
+		restoredFrames++;
+	}
+
+	/**
+	 * Allocates a texture the same way as the given shadow render target, so that float and integer formats get the
+	 * same pixel format and type as the target they are copied from.
+	 */
+	private static int createColorTexture(RenderTarget target, int resolution) {
+		int texture = IrisRenderSystem.createTexture(GL_TEXTURE_2D);
+
+		IrisRenderSystem.texImage2D(texture, GL_TEXTURE_2D, 0, target.getInternalFormat().getGlFormat(), resolution, resolution, 0,
+			target.getPixelFormat().getGlFormat(), target.getPixelType().getGlFormat(), null);
+
+		return texture;
+	}
+
+	public void invalidate() {
+		valid = false;
+	}
+
+	public int getRestoredFrames() {
+		return restoredFrames;
+	}
+
+	public int getCapturedFrames() {
+		return capturedFrames;
+	}
+
+	public void destroy() {
+		depth.destroy();
+
+		for (int texture : colorTextures) {
+			if (texture != 0) {
+				IrisRenderSystem.deleteTexture(texture);
+			}
+		}
+
+		Arrays.fill(colorTextures, 0);
+		valid = false;
+	}
+}
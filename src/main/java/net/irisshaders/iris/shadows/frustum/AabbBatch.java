@@ -0,0 +1,61 @@
+package net.irisshaders.iris.shadows.frustum;
+
+import net.irisshaders.iris.shadows.frustum.advanced.AdvancedShadowCullingFrustum;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of boxes stored as a struct of arrays, for testing them against a shadow frustum in one call with
+ * {@link AdvancedShadowCullingFrustum#fastAabbTestBatch}. Meant to be kept around and refilled every frame.
+ */
+public class AabbBatch {
+	private float[] minX = new float[64];
+	private float[] minY = new float[64];
+	private float[] minZ = new float[64];
+	private float[] maxX = new float[64];
+	private float[] maxY = new float[64];
+	private float[] maxZ = new float[64];
+	private long[] visible = new long[1];
+	private int count;
+
+	public void clear() {
+		count = 0;
+	}
+
+	public void add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		if (count == this.minX.length) {
+			int capacity = count * 2;
+
+			this.minX = Arrays.copyOf(this.minX, capacity);
+			this.minY = Arrays.copyOf(this.minY, capacity);
+			this.minZ = Arrays.copyOf(this.minZ, capacity);
+			this.maxX = Arrays.copyOf(this.maxX, capacity);
+			this.maxY = Arrays.copyOf(this.maxY, capacity);
+			this.maxZ = Arrays.copyOf(this.maxZ, capacity);
+			this.visible = Arrays.copyOf(this.visible, capacity >>> 6);
+		}
+
+		this.minX[count] = minX;
+		this.minY[count] = minY;
+		this.minZ[count] = minZ;
+		this.maxX[count] = maxX;
+		this.maxY[count] = maxY;
+		this.maxZ[count] = maxZ;
+		count++;
+	}
+
+	/**
+	 * Tests every box added since the last {@link #clear}; the results are read with {@link #isVisible}.
+	 */
+	public void test(AdvancedShadowCullingFrustum frustum) {
+		frustum.fastAabbTestBatch(minX, minY, minZ, maxX, maxY, maxZ, count, visible);
+	}
+
+	public boolean isVisible(int index) {
+		return (visible[index >>> 6] & (1L << index)) != 0;
+	}
+
+	public int size() {
+		return count;
+	}
+}
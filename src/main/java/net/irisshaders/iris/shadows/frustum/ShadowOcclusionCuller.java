@@ -0,0 +1,186 @@
+package net.irisshaders.iris.shadows.frustum;
+
+import net.minecraft.client.multiplayer.ClientLevel;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.status.ChunkStatus;
+import net.minecraft.world.phys.AABB;
+import org.joml.Vector3fc;
+
+import java.util.BitSet;
+
+/**
+ * A light-direction variant of vanilla's "cave culling" section graph, used to cull shadow casters that can't possibly
+ * be reached by the shadow light.
+ *
+ * <p>Vanilla's occlusion culling walks the section graph outwards from the player camera, which is meaningless for the
+ * shadow pass. Instead, we sweep the sections around the camera in the direction that the light travels. A section
+ * can only receive light through the neighbors on its light-facing sides, so a section is considered reachable if any
+ * of those neighbors is reachable and lets light pass through it. Sections on the edge of the swept volume are
+ * treated as if open sky lies beyond them.</p>
+ *
+ * <p>A section only blocks light if every block in it is a full opaque cube. This is much stricter than the face
+ * visibility sets that vanilla uses, but it can be determined from the block state palette alone and is always
+ * conservative: a straight ray passing through a fully solid section is guaranteed to hit geometry inside of it or
+ * before it, so nothing behind that section can show up in the shadow map.</p>
+ */
+public class ShadowOcclusionCuller {
+	private final BitSet reachable = new BitSet();
+	private final BitSet passesLight = new BitSet();
+	private boolean active;
+	private int originX;
+	private int originY;
+	private int originZ;
+	private int sizeX;
+	private int sizeY;
+	private int sizeZ;
+	private int culledSections;
+
+	private static boolean isOpaque(ClientLevel level, LevelChunkSection section) {
+		if (section == null || section.hasOnlyAir()) {
+			return false;
+		}
+
+		// maybeHas checks the palette, which may contain stale entries. That only ever makes us more conservative.
+		return !section.maybeHas(state -> !isOpaque(level, state));
+	}
+
+	private static boolean isOpaque(ClientLevel level, BlockState state) {
+		return state.isSolidRender(level, BlockPos.ZERO);
+	}
+
+	/**
+	 * Rebuilds the reachability graph for the sections around the camera.
+	 *
+	 * @param lightDirection normalized vector pointing from the origin towards the shadow light
+	 * @param radius         horizontal radius of the swept volume, in sections
+	 */
+	public void update(ClientLevel level, Vector3fc lightDirection, double cameraX, double cameraZ, int radius) {
+		int centerX = SectionPos.posToSectionCoord(cameraX);
+		int centerZ = SectionPos.posToSectionCoord(cameraZ);
+
+		this.originX = centerX - radius;
+		this.originY = level.getMinSection();
+		this.originZ = centerZ - radius;
+		this.sizeX = radius * 2 + 1;
+		this.sizeY = level.getSectionsCount();
+		this.sizeZ = radius * 2 + 1;
+		this.culledSections = 0;
+
+		reachable.clear();
+		passesLight.clear();
+
+		// Light travels away from the light source, so a section receives light from the neighbor that is closer to the
+		// light on each axis. Iterating each axis starting from the light-facing side ensures those neighbors are
+		// always processed first.
+		int stepX = lightDirection.x() > 0 ? -1 : 1;
+		int stepY = lightDirection.y() > 0 ? -1 : 1;
+		int stepZ = lightDirection.z() > 0 ? -1 : 1;
+		boolean crossesX = lightDirection.x() != 0;
+		boolean crossesY = lightDirection.y() != 0;
+		boolean crossesZ = lightDirection.z() != 0;
+
+		for (int ix = 0; ix < sizeX; ix++) {
+			int x = stepX > 0 ? ix : sizeX - 1 - ix;
+
+			for (int iz = 0; iz < sizeZ; iz++) {
+				int z = stepZ > 0 ? iz : sizeZ - 1 - iz;
+
+				LevelChunk chunk = (LevelChunk) level.getChunkSource().getChunk(originX + x, originZ + z, ChunkStatus.FULL, false);
+
+				for (int iy = 0; iy < sizeY; iy++) {
+					int y = stepY > 0 ? iy : sizeY - 1 - iy;
+
+					boolean lit = !crossesX && !crossesY && !crossesZ;
+
+					lit |= crossesX && passesLightFrom(x - stepX, y, z);
+					lit |= crossesY && passesLightFrom(x, y - stepY, z);
+					lit |= crossesZ && passesLightFrom(x, y, z - stepZ);
+
+					int index = index(x, y, z);
+
+					if (!lit) {
+						culledSections++;
+						continue;
+					}
+
+					reachable.set(index);
+
+					if (chunk == null || !isOpaque(level, chunk.getSections()[y])) {
+						passesLight.set(index);
+					}
+				}
+			}
+		}
+
+		active = true;
+	}
+
+	private boolean passesLightFrom(int x, int y, int z) {
+		if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+			// Assume open sky outside of the swept volume.
+			return true;
+		}
+
+		return passesLight.get(index(x, y, z));
+	}
+
+	private int index(int x, int y, int z) {
+		return (x * sizeZ + z) * sizeY + y;
+	}
+
+	public void clear() {
+		active = false;
+		culledSections = 0;
+	}
+
+	public boolean isCulled(AABB aabb) {
+		return isCulled(aabb.minX, aabb.minY, aabb.minZ, aabb.maxX, aabb.maxY, aabb.maxZ);
+	}
+
+	/**
+	 * @return true if every section overlapping the box is unreachable by the shadow light
+	 */
+	public boolean isCulled(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+		if (!active) {
+			return false;
+		}
+
+		int minSectionX = SectionPos.posToSectionCoord(minX) - originX;
+		int minSectionY = SectionPos.posToSectionCoord(minY) - originY;
+		int minSectionZ = SectionPos.posToSectionCoord(minZ) - originZ;
+		// Boxes usually end exactly on a section boundary, which shouldn't pull in the neighboring section.
+		int maxSectionX = Math.max(minSectionX, SectionPos.posToSectionCoord(Math.ceil(maxX) - 1) - originX);
+		int maxSectionY = Math.max(minSectionY, SectionPos.posToSectionCoord(Math.ceil(maxY) - 1) - originY);
+		int maxSectionZ = Math.max(minSectionZ, SectionPos.posToSectionCoord(Math.ceil(maxZ) - 1) - originZ);
+
+		if (minSectionX < 0 || minSectionY < 0 || minSectionZ < 0
+			|| maxSectionX >= sizeX || maxSectionY >= sizeY || maxSectionZ >= sizeZ) {
+			return false;
+		}
+
+		for (int x = minSectionX; x <= maxSectionX; x++) {
+			for (int z = minSectionZ; z <= maxSectionZ; z++) {
+				for (int y = minSectionY; y <= maxSectionY; y++) {
+					if (reachable.get(index(x, y, z))) {
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	public int getCulledSections() {
+		return culledSections;
+	}
+
+	@Override
+	public String toString() {
+		return "Light occlusion culling active; " + culledSections + " sections unreachable";
+	}
+}
@@ -3,6 +3,7 @@ package net.irisshaders.iris.shadows.frustum.advanced;
 import com.seibel.distanthorizons.api.interfaces.override.rendering.IDhApiShadowCullingFrustum;
 import com.seibel.distanthorizons.coreapi.util.math.Mat4f;
 import net.irisshaders.iris.shadows.frustum.BoxCuller;
+import net.irisshaders.iris.shadows.frustum.ShadowOcclusionCuller;
 import net.minecraft.client.renderer.culling.Frustum;
 import net.minecraft.world.phys.AABB;
 import org.joml.Math;
@@ -11,6 +12,8 @@ import org.joml.Matrix4fc;
 import org.joml.Vector3f;
 import org.joml.Vector4f;
 
+import java.util.Arrays;
+
 /**
  * A Frustum implementation that derives a tightly-fitted shadow pass frustum based on the player's camera frustum and
  * an assumption that the shadow map will only be sampled for the purposes of direct shadow casting, volumetric lighting,
@@ -71,6 +74,7 @@ public class AdvancedShadowCullingFrustum extends Frustum implements IDhApiShado
 	private int worldMinYDH;
 	private int worldMaxYDH;
 	private int planeCount = 0;
+	private ShadowOcclusionCuller occlusionCuller;
 
 	public AdvancedShadowCullingFrustum(Matrix4fc playerView, Matrix4fc playerProjection, Vector3f shadowLightVectorFromOrigin,
 										BoxCuller boxCuller) {
@@ -86,6 +90,13 @@ public class AdvancedShadowCullingFrustum extends Frustum implements IDhApiShado
 		this.boxCuller = boxCuller;
 	}
 
+	/**
+	 * Sets an additional culler that rejects boxes the shadow light can't reach, or null to disable occlusion culling.
+	 */
+	public void setOcclusionCuller(ShadowOcclusionCuller occlusionCuller) {
+		this.occlusionCuller = occlusionCuller;
+	}
+
 	private void addPlane(Vector4f plane) {
 		planes[planeCount] = plane;
 		planeCount += 1;
@@ -286,7 +297,11 @@ public class AdvancedShadowCullingFrustum extends Frustum implements IDhApiShado
 			return false;
 		}
 
-		return this.isVisible(aabb.minX, aabb.minY, aabb.minZ, aabb.maxX, aabb.maxY, aabb.maxZ) != 0;
+		if (this.isVisible(aabb.minX, aabb.minY, aabb.minZ, aabb.maxX, aabb.maxY, aabb.maxZ) == 0) {
+			return false;
+		}
+
+		return occlusionCuller == null || !occlusionCuller.isCulled(aabb);
 	}
 
 	// For terrain culling
@@ -295,7 +310,105 @@ public class AdvancedShadowCullingFrustum extends Frustum implements IDhApiShado
 			return 0;
 		}
 
-		return isVisible(minX, minY, minZ, maxX, maxY, maxZ);
+		int visibility = isVisible(minX, minY, minZ, maxX, maxY, maxZ);
+
+		if (visibility != 0 && occlusionCuller != null && occlusionCuller.isCulled(minX, minY, minZ, maxX, maxY, maxZ)) {
+			return 0;
+		}
+
+		return visibility;
+	}
+
+	/**
+	 * Batch version of {@link #fastAabbTest}, testing many boxes stored as a struct of arrays in one call. The shadow
+	 * renderer uses it for the block entities of visible sections, see {@link net.irisshaders.iris.shadows.frustum.AabbBatch}.
+	 *
+	 * <p>The boxes are tested plane by plane rather than box by box, so that the inner loop only streams through the
+	 * bound arrays selected for the current plane. This keeps it free of per-box branches, and words of boxes that
+	 * have already been rejected by an earlier plane are skipped entirely.</p>
+	 *
+	 * @param count   the number of boxes to test
+	 * @param visible output bitmask, bit {@code i} is set if box {@code i} may be visible. Must hold at least
+	 *                {@code (count + 63) / 64} words.
+	 */
+	public void fastAabbTestBatch(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ,
+								  int count, long[] visible) {
+		int words = (count + 63) >>> 6;
+
+		if (words == 0) {
+			return;
+		}
+
+		Arrays.fill(visible, 0, words, -1L);
+
+		if ((count & 63) != 0) {
+			visible[words - 1] = (1L << (count & 63)) - 1;
+		}
+
+		if (boxCuller != null) {
+			for (int i = 0; i < count; i++) {
+				if (boxCuller.isCulled(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) {
+					visible[i >>> 6] &= ~(1L << i);
+				}
+			}
+		}
+
+		for (int planeIndex = 0; planeIndex < planeCount; planeIndex++) {
+			Vector4f plane = this.planes[planeIndex];
+
+			float planeX = plane.x();
+			float planeY = plane.y();
+			float planeZ = plane.z();
+			float limit = -plane.w();
+
+			// Same corner selection as checkCornerVisibility, hoisted out of the loop since it only depends on the plane.
+			float[] boundX = planeX < 0 ? minX : maxX;
+			float[] boundY = planeY < 0 ? minY : maxY;
+			float[] boundZ = planeZ < 0 ? minZ : maxZ;
+
+			for (int word = 0; word < words; word++) {
+				long bits = visible[word];
+
+				if (bits == 0) {
+					continue;
+				}
+
+				int base = word << 6;
+				int end = Math.min(64, count - base);
+				long culled = 0;
+
+				for (int bit = 0; bit < end; bit++) {
+					int i = base + bit;
+
+					float outsideBoundX = (float) (boundX[i] - this.x);
+					float outsideBoundY = (float) (boundY[i] - this.y);
+					float outsideBoundZ = (float) (boundZ[i] - this.z);
+
+					float dot = Math.fma(planeX, outsideBoundX, Math.fma(planeY, outsideBoundY, planeZ * outsideBoundZ));
+
+					culled |= (dot < limit ? 1L : 0L) << bit;
+				}
+
+				visible[word] = bits & ~culled;
+			}
+		}
+
+		if (occlusionCuller != null) {
+			for (int word = 0; word < words; word++) {
+				long bits = visible[word];
+
+				while (bits != 0) {
+					int bit = Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+
+					int i = (word << 6) + bit;
+
+					if (occlusionCuller.isCulled(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i])) {
+						visible[word] &= ~(1L << bit);
+					}
+				}
+			}
+		}
 	}
 
 	// For Immersive Portals
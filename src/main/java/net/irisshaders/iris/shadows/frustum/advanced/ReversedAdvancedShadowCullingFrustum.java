@@ -6,6 +6,8 @@ import org.joml.Matrix4f;
 import org.joml.Matrix4fc;
 import org.joml.Vector3f;
 
+import java.util.Arrays;
+
 public class ReversedAdvancedShadowCullingFrustum extends AdvancedShadowCullingFrustum {
 	private final BoxCuller distanceCuller;
 
@@ -48,6 +50,19 @@ public class ReversedAdvancedShadowCullingFrustum extends AdvancedShadowCullingF
 		return isVisible(minX, minY, minZ, maxX, maxY, maxZ);
 	}
 
+	@Override
+	public void fastAabbTestBatch(float[] minX, float[] minY, float[] minZ, float[] maxX, float[] maxY, float[] maxZ,
+								  int count, long[] visible) {
+		// The voxel culler short-circuits the plane tests here, so there's nothing to gain from testing plane by plane.
+		Arrays.fill(visible, 0, (count + 63) >>> 6, 0L);
+
+		for (int i = 0; i < count; i++) {
+			if (fastAabbTest(minX[i], minY[i], minZ[i], maxX[i], maxY[i], maxZ[i]) != 0) {
+				visible[i >>> 6] |= 1L << i;
+			}
+		}
+	}
+
 	public boolean testAab(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
 		if (distanceCuller != null && distanceCuller.isCulledRelative(minX, minY, minZ, maxX, maxY, maxZ)) {
 			return false;
@@ -39,6 +39,13 @@ public class ClearPassCreator {
 			// unboxed
 			final int buffer = bufferI;
 
+			// Aliased render targets share their textures with a render target that becomes live earlier in the frame.
+			// Their own contents are completely replaced before anything reads them, so clearing them would only
+			// destroy the contents of the other render target.
+			if (renderTargets.isAliased(buffer)) {
+				return;
+			}
+
 			if (fullClear || settings.shouldClear()) {
 				Vector4f defaultClearColor;
 
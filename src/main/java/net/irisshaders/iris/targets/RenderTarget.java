@@ -5,6 +5,7 @@ import net.irisshaders.iris.gl.IrisRenderSystem;
 import net.irisshaders.iris.gl.texture.InternalTextureFormat;
 import net.irisshaders.iris.gl.texture.PixelFormat;
 import net.irisshaders.iris.gl.texture.PixelType;
+import net.irisshaders.iris.vulkan.resource.DeferredDeletionQueue;
 import org.joml.Vector2i;
 
 import java.nio.ByteBuffer;
@@ -26,8 +27,9 @@ public class RenderTarget {
 	private final InternalTextureFormat internalFormat;
 	private final PixelFormat format;
 	private final PixelType type;
-	private final int mainTexture;
-	private final int altTexture;
+	private int mainTexture;
+	private int altTexture;
+	private final boolean ownsTextures;
 	private int width;
 	private int height;
 	private boolean isValid;
@@ -44,6 +46,7 @@ public class RenderTarget {
 
 		this.mainTexture = IrisRenderSystem.createTexture(GL_TEXTURE_2D);
 		this.altTexture = IrisRenderSystem.createTexture(GL_TEXTURE_2D);
+		this.ownsTextures = true;
 
 		boolean isPixelFormatInteger = builder.internalFormat.getPixelFormat().isInteger();
 		setupTexture(mainTexture, builder.width, builder.height, !isPixelFormatInteger);
@@ -55,6 +58,31 @@ public class RenderTarget {
 		}
 	}
 
+	private RenderTarget(RenderTarget owner) {
+		this.isValid = true;
+
+		this.internalFormat = owner.internalFormat;
+		this.format = owner.format;
+		this.type = owner.type;
+
+		this.width = owner.width;
+		this.height = owner.height;
+
+		this.mainTexture = owner.mainTexture;
+		this.altTexture = owner.altTexture;
+		this.ownsTextures = false;
+	}
+
+	/**
+	 * Creates a render target that uses the textures of this one, for render targets whose contents are never needed
+	 * at the same time. Resizing the alias doesn't touch the textures; the owner takes care of that.
+	 */
+	public RenderTarget createAlias() {
+		requireValid();
+
+		return new RenderTarget(this);
+	}
+
 	public static Builder builder() {
 		return new Builder();
 	}
@@ -84,15 +112,36 @@ public class RenderTarget {
 		this.width = width;
 		this.height = height;
 
+		if (!ownsTextures) {
+			return;
+		}
+
 		resizeTexture(mainTexture, width, height);
 
 		resizeTexture(altTexture, width, height);
 	}
 
+	// Package private, call RenderTargets#swapMainAndAlt instead.
+	void swapTextures() {
+		requireValid();
+
+		int texture = mainTexture;
+		mainTexture = altTexture;
+		altTexture = texture;
+	}
+
 	public InternalTextureFormat getInternalFormat() {
 		return internalFormat;
 	}
 
+	public PixelFormat getPixelFormat() {
+		return format;
+	}
+
+	public PixelType getPixelType() {
+		return type;
+	}
+
 	public int getMainTexture() {
 		requireValid();
 
@@ -117,7 +166,16 @@ public class RenderTarget {
 		requireValid();
 		isValid = false;
 
-		// VulkanImage destruction handled in Phase 3/4
+		if (ownsTextures) {
+			// Frames that are still in flight may be drawing to or sampling from the textures
+			int main = mainTexture;
+			int alt = altTexture;
+
+			DeferredDeletionQueue.INSTANCE.defer(() -> {
+				IrisRenderSystem.deleteTexture(main);
+				IrisRenderSystem.deleteTexture(alt);
+			});
+		}
 	}
 
 	private void requireValid() {
@@ -0,0 +1,149 @@
+package net.irisshaders.iris.targets;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * Works out during which part of a frame each render target holds data that is still needed, so that render targets
+ * whose live ranges don't overlap can share the same textures.
+ *
+ * <p>The frame is described as an ordered list of stages. A render target is live from the first stage that touches it
+ * until the last one. A render target needs to keep its contents for the whole frame (and is never shared) if it isn't
+ * cleared every frame, or if the first stage that touches it reads it, since it's then reading data from the previous
+ * frame. A render target whose first write doesn't replace every pixel relies on the clear at the start of the frame,
+ * so its live range starts with the first stage.</p>
+ */
+public class RenderTargetLifetimes {
+	private static final int UNUSED = -1;
+
+	private final int[] start;
+	private final int[] end;
+
+	private RenderTargetLifetimes(int[] start, int[] end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * @param persistentTargets the render targets that have to keep their contents between frames
+	 */
+	public static RenderTargetLifetimes analyze(List<Stage> stages, int targetCount, IntSet persistentTargets) {
+		int[] start = new int[targetCount];
+		int[] end = new int[targetCount];
+		Arrays.fill(start, UNUSED);
+		Arrays.fill(end, UNUSED);
+
+		int lastStage = stages.size() - 1;
+
+		for (int index = 0; index < stages.size(); index++) {
+			Stage stage = stages.get(index);
+
+			for (int target = 0; target < targetCount; target++) {
+				boolean reads = stage.reads().contains(target);
+				boolean writes = stage.writes().contains(target);
+
+				if (!reads && !writes) {
+					continue;
+				}
+
+				if (start[target] == UNUSED) {
+					boolean persistent = reads || persistentTargets.contains(target);
+					start[target] = !persistent && stage.overwrites() ? index : 0;
+					end[target] = persistent ? lastStage : index;
+				}
+
+				end[target] = Math.max(end[target], index);
+			}
+		}
+
+		return new RenderTargetLifetimes(start, end);
+	}
+
+	public boolean isUsed(int target) {
+		return start[target] != UNUSED;
+	}
+
+	/**
+	 * @return the index of the first stage in which the render target holds needed data, or -1 if it is never used
+	 */
+	public int getStart(int target) {
+		return start[target];
+	}
+
+	/**
+	 * @return the index of the last stage in which the render target holds needed data, or -1 if it is never used
+	 */
+	public int getEnd(int target) {
+		return end[target];
+	}
+
+	public boolean overlaps(int first, int second) {
+		return start[first] <= end[second] && start[second] <= end[first];
+	}
+
+	/**
+	 * Groups render targets with disjoint live ranges so that each group can be backed by the textures of a single
+	 * render target. Only render targets with an equal compatibility key (such as the same format and size) are
+	 * grouped together.
+	 *
+	 * @return a map from each render target that can reuse the textures of another one to the render target that owns
+	 * them. The owner is always the member of its group that becomes live first.
+	 */
+	public Int2IntMap findAliases(IntFunction<Object> compatibilityKey) {
+		Map<Object, IntList> byKey = new HashMap<>();
+
+		for (int target = 0; target < start.length; target++) {
+			if (isUsed(target)) {
+				byKey.computeIfAbsent(compatibilityKey.apply(target), key -> new IntArrayList()).add(target);
+			}
+		}
+
+		Int2IntMap aliases = new Int2IntOpenHashMap();
+
+		for (IntList targets : byKey.values()) {
+			targets.sort((first, second) -> Integer.compare(start[first], start[second]));
+
+			// Each slot is one set of textures: the render target owning it, and the end of its latest live range.
+			List<int[]> slots = new ArrayList<>();
+
+			for (int target : targets) {
+				int[] free = null;
+
+				for (int[] slot : slots) {
+					if (slot[1] < start[target]) {
+						free = slot;
+						break;
+					}
+				}
+
+				if (free == null) {
+					slots.add(new int[]{target, end[target]});
+				} else {
+					aliases.put(target, free[0]);
+					free[1] = end[target];
+				}
+			}
+		}
+
+		return aliases;
+	}
+
+	/**
+	 * A step of the frame that reads and writes render targets.
+	 *
+	 * @param overwrites whether every render target written by this stage has all of its pixels replaced, as with a
+	 *                   full screen composite pass without blending
+	 */
+	public record Stage(String name, IntSet reads, IntSet writes, boolean overwrites) {
+	}
+}
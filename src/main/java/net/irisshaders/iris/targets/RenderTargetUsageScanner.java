@@ -0,0 +1,332 @@
+package net.irisshaders.iris.targets;
+
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import net.irisshaders.iris.gl.framebuffer.ViewportData;
+import net.irisshaders.iris.shaderpack.loading.ProgramArrayId;
+import net.irisshaders.iris.shaderpack.loading.ProgramGroup;
+import net.irisshaders.iris.shaderpack.loading.ProgramId;
+import net.irisshaders.iris.shaderpack.programs.ComputeSource;
+import net.irisshaders.iris.shaderpack.programs.ProgramSet;
+import net.irisshaders.iris.shaderpack.programs.ProgramSource;
+import net.irisshaders.iris.shaderpack.properties.PackRenderTargetDirectives;
+import net.irisshaders.iris.shaderpack.properties.ProgramDirectives;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Describes the frame of a shader pack as a list of {@link RenderTargetLifetimes.Stage stages}, in the order they run:
+ * begin, shadow, prepare, gbuffers, deferred, translucent gbuffers, composite and final.
+ *
+ * <p>Reads are found by looking for the sampler and image names of each render target in the program sources, which
+ * can only ever over-estimate what a program uses. All gbuffer programs are treated as one stage, which is repeated
+ * after the deferred passes since translucent geometry is drawn there.</p>
+ *
+ * <p>The same stages are used to find the render targets that can be rendered at a lower resolution than the screen,
+ * see {@link #findDynamicallyScalable}.</p>
+ */
+public class RenderTargetUsageScanner {
+	private static final Pattern RENDER_TARGET_NAME = Pattern.compile("\\b(?:colortex|colorimg)(\\d+)\\b|\\b(gcolor|gdepth|gnormal|composite|gaux[1-4])\\b");
+	// Accesses that address texels directly rather than through normalized coordinates
+	private static final Pattern TEXEL_ACCESS = Pattern.compile("\\btexelFetch(?:Offset)?\\s*\\(\\s*(?:colortex(\\d+)\\b|(gcolor|gdepth|gnormal|composite|gaux[1-4])\\b)|\\bcolorimg(\\d+)\\b");
+	// Anything that ties the pixels a program writes to the screen size, which stays the same when render targets are
+	// scaled: window coordinates, the screen size uniforms, and texel coordinates into any texture.
+	private static final Pattern SCREEN_SPACE = Pattern.compile("\\b(?:gl_FragCoord|viewWidth|viewHeight|texelFetch(?:Offset)?)\\b");
+
+	private RenderTargetUsageScanner() {
+	}
+
+	public static RenderTargetLifetimes analyze(ProgramSet programSet, int targetCount) {
+		FrameStages frame = collectStages(programSet, targetCount);
+
+		return RenderTargetLifetimes.analyze(frame.stages(), targetCount, collectPersistent(programSet, targetCount));
+	}
+
+	/**
+	 * Finds the render targets whose resolution can be lowered without the shader pack noticing: render targets that
+	 * are only ever drawn to by composite-style passes, are only sampled through normalized texture coordinates, and
+	 * don't need to keep their contents between frames. Passes that draw to such a render target together with one that
+	 * can't be scaled disqualify both, since all draw buffers of a pass must have the same size.
+	 *
+	 * <p>Programs keep seeing the screen size in {@code viewWidth} and {@code viewHeight}, so everything written by a
+	 * program that uses those, {@code gl_FragCoord}, or {@code texelFetch} on any texture is excluded as well.</p>
+	 */
+	public static IntSet findDynamicallyScalable(ProgramSet programSet, int targetCount) {
+		FrameStages frame = collectStages(programSet, targetCount);
+		IntSet excluded = collectPersistent(programSet, targetCount);
+
+		excluded.addAll(frame.shadow().reads());
+		excluded.addAll(frame.gbuffers().reads());
+		excluded.addAll(frame.gbuffers().writes());
+
+		for (ProgramId id : ProgramId.values()) {
+			programSet.get(id).ifPresent(source -> scanSource(source, TEXEL_ACCESS, excluded));
+		}
+		for (ProgramArrayId arrayId : ProgramArrayId.values()) {
+			for (ProgramSource source : programSet.getComposite(arrayId)) {
+				if (source != null && source.isValid()) {
+					scanSource(source, TEXEL_ACCESS, excluded);
+
+					if (usesScreenSpace(source)) {
+						addDrawBuffers(source.getDirectives(), excluded);
+					}
+				}
+			}
+			for (ComputeSource[] computes : programSet.getCompute(arrayId)) {
+				scanComputes(computes, TEXEL_ACCESS, excluded);
+				excludeScreenSpaceComputes(computes, excluded);
+			}
+		}
+		scanComputes(programSet.getShadowCompute(), TEXEL_ACCESS, excluded);
+		scanComputes(programSet.getFinalCompute(), TEXEL_ACCESS, excluded);
+		excludeScreenSpaceComputes(programSet.getShadowCompute(), excluded);
+		excludeScreenSpaceComputes(programSet.getFinalCompute(), excluded);
+
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+
+			for (RenderTargetLifetimes.Stage stage : frame.stages()) {
+				if (containsAny(excluded, stage.writes())) {
+					changed |= excluded.addAll(stage.writes());
+				}
+			}
+		}
+
+		IntSet scalable = new IntOpenHashSet();
+		for (RenderTargetLifetimes.Stage stage : frame.stages()) {
+			scalable.addAll(stage.writes());
+		}
+		scalable.removeAll(excluded);
+
+		return scalable;
+	}
+
+	private static FrameStages collectStages(ProgramSet programSet, int targetCount) {
+		List<RenderTargetLifetimes.Stage> stages = new ArrayList<>();
+
+		addCompositeStages(stages, programSet, ProgramArrayId.Begin);
+
+		IntSet shadowReads = new IntOpenHashSet();
+		for (ProgramId id : ProgramId.values()) {
+			if (id.getGroup() == ProgramGroup.Shadow || id == ProgramId.DhShadow) {
+				programSet.get(id).ifPresent(source -> scanSource(source, shadowReads));
+			}
+		}
+		for (ProgramSource source : programSet.getComposite(ProgramArrayId.ShadowComposite)) {
+			if (source != null && source.isValid()) {
+				scanSource(source, shadowReads);
+			}
+		}
+		scanComputes(programSet.getShadowCompute(), shadowReads);
+		RenderTargetLifetimes.Stage shadow = new RenderTargetLifetimes.Stage("shadow", shadowReads, new IntOpenHashSet(), false);
+		stages.add(shadow);
+
+		addCompositeStages(stages, programSet, ProgramArrayId.Prepare);
+
+		IntSet gbufferReads = new IntOpenHashSet();
+		IntSet gbufferWrites = new IntOpenHashSet();
+		for (ProgramId id : ProgramId.values()) {
+			if ((id.getGroup() == ProgramGroup.Gbuffers || id.getGroup() == ProgramGroup.Dh) && id != ProgramId.DhShadow) {
+				programSet.get(id).ifPresent(source -> {
+					scanSource(source, gbufferReads);
+					addDrawBuffers(source.getDirectives(), gbufferWrites);
+				});
+			}
+		}
+		RenderTargetLifetimes.Stage gbuffers = new RenderTargetLifetimes.Stage("gbuffers", gbufferReads, gbufferWrites, false);
+		stages.add(gbuffers);
+
+		addCompositeStages(stages, programSet, ProgramArrayId.Deferred);
+		stages.add(gbuffers);
+		addCompositeStages(stages, programSet, ProgramArrayId.Composite);
+
+		IntSet finalReads = new IntOpenHashSet();
+		// Without a final program, colortex0 is copied to the screen directly.
+		finalReads.add(0);
+		programSet.get(ProgramId.Final).ifPresent(source -> scanSource(source, finalReads));
+		scanComputes(programSet.getFinalCompute(), finalReads);
+		stages.add(new RenderTargetLifetimes.Stage("final", finalReads, new IntOpenHashSet(), false));
+
+		for (RenderTargetLifetimes.Stage stage : stages) {
+			retainValid(stage.reads(), targetCount);
+			retainValid(stage.writes(), targetCount);
+		}
+
+		return new FrameStages(stages, shadow, gbuffers);
+	}
+
+	private static IntSet collectPersistent(ProgramSet programSet, int targetCount) {
+		IntSet persistent = new IntOpenHashSet();
+		// colortex0 ends up on the screen and is what everything else is drawn on top of.
+		persistent.add(0);
+		programSet.getPackDirectives().getRenderTargetDirectives().getRenderTargetSettings().forEach((index, settings) -> {
+			if (!settings.shouldClear()) {
+				persistent.add((int) index);
+			}
+		});
+		// Setup programs run once when the pack is loaded, anything they fill in has to stay around.
+		scanComputes(programSet.getSetup(), persistent);
+
+		retainValid(persistent, targetCount);
+
+		return persistent;
+	}
+
+	private static void addCompositeStages(List<RenderTargetLifetimes.Stage> stages, ProgramSet programSet, ProgramArrayId arrayId) {
+		ProgramSource[] sources = programSet.getComposite(arrayId);
+		ComputeSource[][] computes = programSet.getCompute(arrayId);
+		// Explicit flips can make a later pass read the side of a render target that wasn't written to.
+		boolean hasPreFlips = !programSet.getPackDirectives().getExplicitFlips(arrayId.getSourcePrefix() + "_pre").isEmpty();
+
+		for (int i = 0; i < sources.length; i++) {
+			ProgramSource source = sources[i];
+			boolean hasProgram = source != null && source.isValid();
+			IntSet computeTargets = new IntOpenHashSet();
+
+			if (computes[i] != null) {
+				scanComputes(computes[i], computeTargets);
+			}
+
+			if (!hasProgram && computeTargets.isEmpty()) {
+				continue;
+			}
+
+			// Compute programs may read or write any render target they mention.
+			IntSet reads = new IntOpenHashSet(computeTargets);
+			IntSet writes = new IntOpenHashSet(computeTargets);
+			boolean overwrites = false;
+
+			if (hasProgram) {
+				ProgramDirectives directives = source.getDirectives();
+				scanSource(source, reads);
+				addDrawBuffers(directives, writes);
+
+				ViewportData viewport = directives.getViewportScale();
+				overwrites = !hasPreFlips && computeTargets.isEmpty() && directives.getExplicitFlips().isEmpty()
+					&& directives.getBlendModeOverride().isEmpty()
+					&& directives.getBufferBlendOverrides().isEmpty()
+					&& viewport.scale() == 1.0f && viewport.viewportX() == 0.0f && viewport.viewportY() == 0.0f;
+			}
+
+			stages.add(new RenderTargetLifetimes.Stage(arrayId.getSourcePrefix() + i, reads, writes, overwrites));
+		}
+	}
+
+	private static void addDrawBuffers(ProgramDirectives directives, IntSet writes) {
+		for (int buffer : directives.getDrawBuffers()) {
+			writes.add(buffer);
+		}
+	}
+
+	private static void scanSource(ProgramSource source, IntSet targets) {
+		scanSource(source, RENDER_TARGET_NAME, targets);
+	}
+
+	private static void scanSource(ProgramSource source, Pattern pattern, IntSet targets) {
+		scan(source.getVertexSource(), pattern, targets);
+		scan(source.getGeometrySource(), pattern, targets);
+		scan(source.getTessControlSource(), pattern, targets);
+		scan(source.getTessEvalSource(), pattern, targets);
+		scan(source.getFragmentSource(), pattern, targets);
+	}
+
+	private static boolean usesScreenSpace(ProgramSource source) {
+		return matches(source.getVertexSource(), SCREEN_SPACE)
+			|| matches(source.getGeometrySource(), SCREEN_SPACE)
+			|| matches(source.getTessControlSource(), SCREEN_SPACE)
+			|| matches(source.getTessEvalSource(), SCREEN_SPACE)
+			|| matches(source.getFragmentSource(), SCREEN_SPACE);
+	}
+
+	/**
+	 * Compute programs have no draw buffers, so a screen space compute program excludes every render target it
+	 * mentions.
+	 */
+	private static void excludeScreenSpaceComputes(ComputeSource[] computes, IntSet excluded) {
+		if (computes == null) {
+			return;
+		}
+
+		for (ComputeSource compute : computes) {
+			if (compute != null && matches(compute.getSource(), SCREEN_SPACE)) {
+				scan(compute.getSource(), RENDER_TARGET_NAME, excluded);
+			}
+		}
+	}
+
+	private static boolean matches(Optional<String> source, Pattern pattern) {
+		return source.isPresent() && pattern.matcher(source.get()).find();
+	}
+
+	private static void scanComputes(ComputeSource[] computes, IntSet targets) {
+		scanComputes(computes, RENDER_TARGET_NAME, targets);
+	}
+
+	private static void scanComputes(ComputeSource[] computes, Pattern pattern, IntSet targets) {
+		if (computes == null) {
+			return;
+		}
+
+		for (ComputeSource compute : computes) {
+			if (compute != null) {
+				scan(compute.getSource(), pattern, targets);
+			}
+		}
+	}
+
+	/**
+	 * Adds the render targets matched by the given pattern. Numbered render targets are expected in the first and
+	 * any groups after the second, legacy names in the second.
+	 */
+	private static void scan(Optional<String> source, Pattern pattern, IntSet targets) {
+		if (source.isEmpty()) {
+			return;
+		}
+
+		Matcher matcher = pattern.matcher(source.get());
+
+		while (matcher.find()) {
+			for (int group = 1; group <= matcher.groupCount(); group++) {
+				String match = matcher.group(group);
+
+				if (match == null) {
+					continue;
+				}
+
+				if (group == 2) {
+					targets.add(PackRenderTargetDirectives.LEGACY_RENDER_TARGETS.indexOf(match));
+				} else {
+					try {
+						targets.add(Integer.parseInt(match));
+					} catch (NumberFormatException e) {
+						// Far too many digits to be a render target
+					}
+				}
+			}
+		}
+	}
+
+	private static boolean containsAny(IntSet set, IntSet targets) {
+		for (IntIterator it = targets.iterator(); it.hasNext(); ) {
+			if (set.contains(it.nextInt())) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static void retainValid(IntSet targets, int targetCount) {
+		targets.removeIf((int target) -> target < 0 || target >= targetCount);
+	}
+
+	private record FrameStages(List<RenderTargetLifetimes.Stage> stages, RenderTargetLifetimes.Stage shadow,
+							   RenderTargetLifetimes.Stage gbuffers) {
+	}
+}
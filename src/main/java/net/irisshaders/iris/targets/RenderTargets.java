@@ -2,6 +2,11 @@ package net.irisshaders.iris.targets;
 
 import com.google.common.collect.ImmutableSet;
 import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
 import net.irisshaders.iris.gl.IrisRenderSystem;
 import net.irisshaders.iris.gl.framebuffer.GlFramebuffer;
 import net.irisshaders.iris.gl.texture.DepthBufferFormat;
@@ -25,6 +30,9 @@ public class RenderTargets {
 	// GL constants inlined
 	private static final int GL_TEXTURE_2D = 0x0DE1;
 	private static final int GL_FRAMEBUFFER_COMPLETE = 0x8CD5;
+	private static final int GL_TEXTURE_MAG_FILTER = 0x2800;
+	private static final int GL_NEAREST = 0x2600;
+	private static final int GL_LINEAR = 0x2601;
 
 	private final RenderTarget[] targets;
 	private final DepthTexture noTranslucents;
@@ -43,6 +51,10 @@ public class RenderTargets {
 	private boolean fullClearRequired;
 	private boolean translucentDepthDirty;
 	private boolean handDepthDirty;
+	private Int2IntMap aliases = Int2IntMaps.EMPTY_MAP;
+	private IntSet dynamicallyScaled = IntSets.EMPTY_SET;
+	private float dynamicScale = 1.0f;
+	private boolean nearestUpscale;
 
 	private int cachedDepthBufferVersion;
 	private boolean destroyed;
@@ -127,9 +139,154 @@ public class RenderTargets {
 		return targets[index];
 	}
 
+	/**
+	 * Exchanges the main and alt textures of render targets, along with every framebuffer created here that draws to
+	 * them. This makes the side of a render target written last in a frame the one read first in the next frame,
+	 * without copying it.
+	 *
+	 * <p>Aliased render targets share the same textures, so each pair of textures is only swapped once even if both
+	 * the owner and its aliases are listed; swapping it again would undo the first swap.</p>
+	 */
+	public void swapMainAndAlt(int[] indices) {
+		for (int i = 0; i < indices.length; i++) {
+			if (!sharesTexturesWithEarlier(indices, i)) {
+				swapTexturePair(get(indices[i]));
+			}
+		}
+	}
+
+	private boolean sharesTexturesWithEarlier(int[] indices, int i) {
+		// Render targets sharing textures are always swapped together, so comparing the current main textures is
+		// enough even after some of the earlier ones have been swapped.
+		int mainTexture = get(indices[i]).getMainTexture();
+
+		for (int j = 0; j < i; j++) {
+			if (get(indices[j]).getMainTexture() == mainTexture) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void swapTexturePair(RenderTarget target) {
+		int mainTexture = target.getMainTexture();
+		int altTexture = target.getAltTexture();
+
+		for (RenderTarget other : targets) {
+			if (other != null && other.getMainTexture() == mainTexture && other.getAltTexture() == altTexture) {
+				other.swapTextures();
+			}
+		}
+
+		for (GlFramebuffer framebuffer : ownedFramebuffers) {
+			framebuffer.swapColorTextures(mainTexture, altTexture);
+		}
+	}
+
+	/**
+	 * Makes render targets use the textures of other render targets, see {@link RenderTargetLifetimes#findAliases}.
+	 * Must be called before any of the affected render targets are created.
+	 */
+	public void setAliases(Int2IntMap aliases) {
+		this.aliases = aliases;
+	}
+
+	/**
+	 * @return whether this render target uses the textures of another render target
+	 */
+	public boolean isAliased(int index) {
+		return aliases.containsKey(index);
+	}
+
+	/**
+	 * Sets the render targets whose resolution follows {@link #setDynamicScale}, see
+	 * {@link RenderTargetUsageScanner#findDynamicallyScalable}. Must be called before any of them are created.
+	 *
+	 * @param nearestUpscale whether these render targets should be sampled with nearest filtering rather than linear
+	 *                       filtering when they are smaller than what is drawn with them
+	 */
+	public void setDynamicallyScaledTargets(IntSet dynamicallyScaled, boolean nearestUpscale) {
+		this.dynamicallyScaled = dynamicallyScaled;
+		this.nearestUpscale = nearestUpscale;
+	}
+
+	/**
+	 * Resizes the dynamically scaled render targets to the given fraction of their normal size.
+	 *
+	 * @return whether any render target was resized, in which case the framebuffers of the passes drawing to them need
+	 * to be recreated
+	 */
+	public boolean setDynamicScale(float scale) {
+		if (scale == dynamicScale) {
+			return false;
+		}
+
+		dynamicScale = scale;
+		boolean resized = false;
+
+		for (IntIterator it = dynamicallyScaled.iterator(); it.hasNext(); ) {
+			int index = it.nextInt();
+
+			if (targets[index] != null) {
+				targets[index].resize(getTargetSize(index, cachedWidth, cachedHeight));
+				applyUpscaleFilter(targets[index]);
+				resized = true;
+			}
+		}
+
+		return resized;
+	}
+
+	public float getDynamicScale() {
+		return dynamicScale;
+	}
+
+	public int getDynamicallyScaledCount() {
+		return dynamicallyScaled.size();
+	}
+
+	private Vector2i getTargetSize(int index, int width, int height) {
+		Vector2i dimensions = packDirectives.getTextureScaleOverride(index, width, height);
+
+		if (dynamicallyScaled.contains(index)) {
+			dimensions.set(Math.max(1, (int) (dimensions.x * dynamicScale)), Math.max(1, (int) (dimensions.y * dynamicScale)));
+		}
+
+		return dimensions;
+	}
+
+	private void applyUpscaleFilter(RenderTarget target) {
+		int filter = nearestUpscale || target.getInternalFormat().getPixelFormat().isInteger() ? GL_NEAREST : GL_LINEAR;
+
+		IrisRenderSystem.texParameteri(target.getMainTexture(), GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, filter);
+		IrisRenderSystem.texParameteri(target.getAltTexture(), GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, filter);
+	}
+
+	/**
+	 * @return the memory taken up by the main and alt textures of the given render target, or 0 if it hasn't been
+	 * created
+	 */
+	public long getTextureBytes(int index) {
+		RenderTarget target = targets[index];
+
+		if (target == null) {
+			return 0;
+		}
+
+		return 2L * target.getWidth() * target.getHeight() * target.getInternalFormat().getBytesPerPixel();
+	}
+
 	private void create(int index) {
+		if (aliases.containsKey(index)) {
+			targets[index] = getOrCreate(aliases.get(index)).createAlias();
+			net.irisshaders.iris.Iris.logger.info("[RenderTargets] colortex{} shares the textures of colortex{}",
+				index, aliases.get(index));
+			return;
+		}
+
 		PackRenderTargetDirectives.RenderTargetSettings settings = targetSettingsMap.get(index);
-		Vector2i dimensions = packDirectives.getTextureScaleOverride(index, cachedWidth, cachedHeight);
+		Vector2i dimensions = getTargetSize(index, cachedWidth, cachedHeight);
 		net.irisshaders.iris.Iris.logger.info("[RenderTargets] Creating colortex{}: format={} (0x{}) dimensions={}x{}",
 			index, settings.getInternalFormat().name(), Integer.toHexString(settings.getInternalFormat().getGlFormat()),
 			dimensions.x, dimensions.y);
@@ -140,6 +297,10 @@ public class RenderTargets {
 		net.irisshaders.iris.Iris.logger.info("[RenderTargets] colortex{} texIDs: main={} alt={} ({}x{})",
 			index, targets[index].getMainTexture(), targets[index].getAltTexture(),
 			targets[index].getWidth(), targets[index].getHeight());
+
+		if (dynamicallyScaled.contains(index)) {
+			applyUpscaleFilter(targets[index]);
+		}
 	}
 
 	public int getDepthTexture() {
@@ -200,7 +361,11 @@ public class RenderTargets {
 
 			for (int i = 0; i < targets.length; i++) {
 				if (targets[i] != null) {
-					targets[i].resize(packDirectives.getTextureScaleOverride(i, newWidth, newHeight));
+					targets[i].resize(getTargetSize(i, newWidth, newHeight));
+
+					if (dynamicallyScaled.contains(i)) {
+						applyUpscaleFilter(targets[i]);
+					}
 				}
 			}
 
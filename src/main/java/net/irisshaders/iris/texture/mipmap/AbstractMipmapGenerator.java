@@ -1,8 +1,17 @@
 package net.irisshaders.iris.texture.mipmap;
 
 import com.mojang.blaze3d.platform.NativeImage;
+import org.lwjgl.system.MemoryUtil;
+
+import java.util.stream.IntStream;
 
 public abstract class AbstractMipmapGenerator implements CustomMipmapGenerator {
+	/**
+	 * Mip levels with at least this many pixels are split into bands of rows that are generated in parallel.
+	 */
+	private static final int PARALLEL_THRESHOLD = 512 * 512;
+	private static final int ROWS_PER_BAND = 64;
+
 	@Override
 	public NativeImage[] generateMipLevels(NativeImage[] image, int mipLevel) {
 		if (mipLevel + 1 <= image.length) {
@@ -15,16 +24,20 @@ public abstract class AbstractMipmapGenerator implements CustomMipmapGenerator {
 			for (int level = 1; level <= mipLevel; ++level) {
 				NativeImage prevMipmap = level == 1 ? image[0] : newImages[level - 1];
 				NativeImage mipmap = new NativeImage(prevMipmap.getWidth() >> 1, prevMipmap.getHeight() >> 1, false);
-				int width = mipmap.getWidth();
-				int height = mipmap.getHeight();
-				for (int x = 0; x < width; ++x) {
-					for (int y = 0; y < height; ++y) {
-						mipmap.setPixelRGBA(x, y, blend(
-							prevMipmap.getPixelRGBA(x * 2, y * 2),
-							prevMipmap.getPixelRGBA(x * 2 + 1, y * 2),
-							prevMipmap.getPixelRGBA(x * 2, y * 2 + 1),
-							prevMipmap.getPixelRGBA(x * 2 + 1, y * 2 + 1)
-						));
+				if (prevMipmap.format() == NativeImage.Format.RGBA) {
+					generateLevel(prevMipmap, mipmap);
+				} else {
+					int width = mipmap.getWidth();
+					int height = mipmap.getHeight();
+					for (int x = 0; x < width; ++x) {
+						for (int y = 0; y < height; ++y) {
+							mipmap.setPixelRGBA(x, y, blend(
+								prevMipmap.getPixelRGBA(x * 2, y * 2),
+								prevMipmap.getPixelRGBA(x * 2 + 1, y * 2),
+								prevMipmap.getPixelRGBA(x * 2, y * 2 + 1),
+								prevMipmap.getPixelRGBA(x * 2 + 1, y * 2 + 1)
+							));
+						}
 					}
 				}
 				newImages[level] = mipmap;
@@ -36,5 +49,43 @@ public abstract class AbstractMipmapGenerator implements CustomMipmapGenerator {
 		return newImages;
 	}
 
+	private void generateLevel(NativeImage source, NativeImage target) {
+		int height = target.getHeight();
+
+		if ((long) target.getWidth() * height >= PARALLEL_THRESHOLD) {
+			int bands = (height + ROWS_PER_BAND - 1) / ROWS_PER_BAND;
+			IntStream.range(0, bands).parallel().forEach(band ->
+				blendRows(source, target, band * ROWS_PER_BAND, Math.min(height, (band + 1) * ROWS_PER_BAND)));
+		} else {
+			blendRows(source, target, 0, height);
+		}
+	}
+
+	/**
+	 * Generates the given rows of a mip level by reading the pixels of the previous level directly, skipping the
+	 * per-pixel bounds and format checks of {@link NativeImage#getPixelRGBA}.
+	 */
+	private void blendRows(NativeImage source, NativeImage target, int startRow, int endRow) {
+		int width = target.getWidth();
+		long sourceStride = (long) source.getWidth() * 4;
+		long targetStride = (long) width * 4;
+
+		for (int y = startRow; y < endRow; ++y) {
+			long row0 = source.pixels + y * 2 * sourceStride;
+			long row1 = row0 + sourceStride;
+			long targetRow = target.pixels + y * targetStride;
+
+			for (int x = 0; x < width; ++x) {
+				long offset = x * 8L;
+				MemoryUtil.memPutInt(targetRow + x * 4L, blend(
+					MemoryUtil.memGetInt(row0 + offset),
+					MemoryUtil.memGetInt(row0 + offset + 4),
+					MemoryUtil.memGetInt(row1 + offset),
+					MemoryUtil.memGetInt(row1 + offset + 4)
+				));
+			}
+		}
+	}
+
 	public abstract int blend(int c0, int c1, int c2, int c3);
 }
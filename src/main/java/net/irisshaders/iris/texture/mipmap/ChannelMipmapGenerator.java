@@ -3,46 +3,82 @@ package net.irisshaders.iris.texture.mipmap;
 import net.minecraft.util.FastColor;
 
 public class ChannelMipmapGenerator extends AbstractMipmapGenerator {
+	private static final int LOW_BYTES = 0x00FF00FF;
+
 	protected final BlendFunction redFunc;
 	protected final BlendFunction greenFunc;
 	protected final BlendFunction blueFunc;
 	protected final BlendFunction alphaFunc;
+	/**
+	 * The bits of the channels that use a plain linear blend, which are averaged all at once.
+	 */
+	private final int linearMask;
 
 	public ChannelMipmapGenerator(BlendFunction redFunc, BlendFunction greenFunc, BlendFunction blueFunc, BlendFunction alphaFunc) {
 		this.redFunc = redFunc;
 		this.greenFunc = greenFunc;
 		this.blueFunc = blueFunc;
 		this.alphaFunc = alphaFunc;
+		this.linearMask = linearMask(alphaFunc, 0xFF000000) | linearMask(blueFunc, 0x00FF0000)
+			| linearMask(greenFunc, 0x0000FF00) | linearMask(redFunc, 0x000000FF);
+	}
+
+	private static int linearMask(BlendFunction func, int mask) {
+		return func.getClass() == LinearBlendFunction.class ? mask : 0;
+	}
+
+	/**
+	 * Averages all four channels of four colors at once, by summing two channels at a time in 16-bit lanes. Produces
+	 * the same result as applying {@link LinearBlendFunction} to every channel.
+	 */
+	private static int averageLinear(int c0, int c1, int c2, int c3) {
+		int evenSum = (c0 & LOW_BYTES) + (c1 & LOW_BYTES) + (c2 & LOW_BYTES) + (c3 & LOW_BYTES);
+		int oddSum = (c0 >>> 8 & LOW_BYTES) + (c1 >>> 8 & LOW_BYTES) + (c2 >>> 8 & LOW_BYTES) + (c3 >>> 8 & LOW_BYTES);
+		return (evenSum >>> 2 & LOW_BYTES) | (oddSum >>> 2 & LOW_BYTES) << 8;
 	}
 
 	@Override
 	public int blend(int c0, int c1, int c2, int c3) {
-		return FastColor.ABGR32.color(
-			alphaFunc.blend(
+		if (linearMask == 0xFFFFFFFF) {
+			return averageLinear(c0, c1, c2, c3);
+		}
+
+		int color = linearMask != 0 ? averageLinear(c0, c1, c2, c3) & linearMask : 0;
+
+		if ((linearMask & 0xFF000000) == 0) {
+			color |= (alphaFunc.blend(
 				FastColor.ABGR32.alpha(c0),
 				FastColor.ABGR32.alpha(c1),
 				FastColor.ABGR32.alpha(c2),
 				FastColor.ABGR32.alpha(c3)
-			),
-			blueFunc.blend(
+			) & 0xFF) << 24;
+		}
+		if ((linearMask & 0x00FF0000) == 0) {
+			color |= (blueFunc.blend(
 				FastColor.ABGR32.blue(c0),
 				FastColor.ABGR32.blue(c1),
 				FastColor.ABGR32.blue(c2),
 				FastColor.ABGR32.blue(c3)
-			),
-			greenFunc.blend(
+			) & 0xFF) << 16;
+		}
+		if ((linearMask & 0x0000FF00) == 0) {
+			color |= (greenFunc.blend(
 				FastColor.ABGR32.green(c0),
 				FastColor.ABGR32.green(c1),
 				FastColor.ABGR32.green(c2),
 				FastColor.ABGR32.green(c3)
-			),
-			redFunc.blend(
+			) & 0xFF) << 8;
+		}
+		if ((linearMask & 0x000000FF) == 0) {
+			color |= redFunc.blend(
 				FastColor.ABGR32.red(c0),
 				FastColor.ABGR32.red(c1),
 				FastColor.ABGR32.red(c2),
 				FastColor.ABGR32.red(c3)
-			)
-		);
+			) & 0xFF;
+		}
+
+		return color;
 	}
 
 	public interface BlendFunction {
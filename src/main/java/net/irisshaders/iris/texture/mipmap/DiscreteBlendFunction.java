@@ -4,9 +4,21 @@ import java.util.function.IntUnaryOperator;
 
 public class DiscreteBlendFunction implements ChannelMipmapGenerator.BlendFunction {
 	protected final IntUnaryOperator typeFunc;
+	/**
+	 * The type of every possible channel value, so that the type function doesn't have to be called for every pixel.
+	 */
+	private final int[] types = new int[256];
 
 	public DiscreteBlendFunction(IntUnaryOperator typeFunc) {
 		this.typeFunc = typeFunc;
+
+		for (int v = 0; v < types.length; v++) {
+			types[v] = typeFunc.applyAsInt(v);
+		}
+	}
+
+	private int getType(int v) {
+		return v >= 0 && v < types.length ? types[v] : typeFunc.applyAsInt(v);
 	}
 
 	/**
@@ -27,10 +39,10 @@ public class DiscreteBlendFunction implements ChannelMipmapGenerator.BlendFuncti
 
 	@Override
 	public int blend(int v0, int v1, int v2, int v3) {
-		int t0 = typeFunc.applyAsInt(v0);
-		int t1 = typeFunc.applyAsInt(v1);
-		int t2 = typeFunc.applyAsInt(v2);
-		int t3 = typeFunc.applyAsInt(v3);
+		int t0 = getType(v0);
+		int t1 = getType(v1);
+		int t2 = getType(v2);
+		int t3 = getType(v3);
 
 		int targetType = selectTargetType(t0, t1, t2, t3);
 
@@ -0,0 +1,55 @@
+package net.irisshaders.iris.texture.pbr;
+
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+
+/**
+ * Orders the ids of PBR texture holders from least to most recently used, and picks the holder to evict once more than
+ * a fixed number of them are tracked.
+ */
+public class HolderEvictionOrder {
+	public static final int NONE = -1;
+
+	private final int capacity;
+	private final IntLinkedOpenHashSet order = new IntLinkedOpenHashSet();
+
+	public HolderEvictionOrder(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be greater than zero");
+		}
+
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Marks a tracked holder as the most recently used one. Does nothing if the holder isn't tracked.
+	 */
+	public void touch(int id) {
+		if (order.contains(id)) {
+			order.addAndMoveToLast(id);
+		}
+	}
+
+	/**
+	 * Starts tracking a holder as the most recently used one.
+	 *
+	 * @return the id of the least recently used holder, which is no longer tracked, if the capacity was exceeded, or
+	 * {@link #NONE} otherwise
+	 */
+	public int add(int id) {
+		order.addAndMoveToLast(id);
+
+		return order.size() > capacity ? order.removeFirstInt() : NONE;
+	}
+
+	public void remove(int id) {
+		order.remove(id);
+	}
+
+	public void clear() {
+		order.clear();
+	}
+
+	public int size() {
+		return order.size();
+	}
+}
@@ -0,0 +1,368 @@
+package net.irisshaders.iris.texture.pbr;
+
+import com.mojang.blaze3d.platform.NativeImage;
+import net.fabricmc.loader.api.FabricLoader;
+import net.irisshaders.iris.Iris;
+import net.irisshaders.iris.mixin.texture.SpriteContentsAccessor;
+import net.irisshaders.iris.texture.format.TextureFormat;
+import net.irisshaders.iris.texture.format.TextureFormatLoader;
+import net.irisshaders.iris.texture.pbr.loader.AtlasPBRLoader.PBRTextureAtlasSprite;
+import net.minecraft.client.renderer.texture.TextureAtlasSprite;
+import net.minecraft.resources.ResourceLocation;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.system.MemoryUtil;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A disk cache for fully stitched and mipmapped PBR atlases, so that resource reloads that don't change any PBR
+ * textures can skip decoding and mipmapping every sprite.
+ *
+ * <p>Each atlas is stored in a single file containing the raw RGBA pixels of every mip level, followed by the name,
+ * position and size of every sprite that made it into the atlas. The file is keyed by a digest of everything that
+ * influences its contents: the atlas id, size and mip level, the active texture format, and the name, position, size
+ * and file hash of every sprite. Only the most recent version of each atlas is kept. Cached files are memory mapped on
+ * load and uploaded level by level.</p>
+ *
+ * <p>Animated sprites are still decoded on a cache hit, since their frames and tickers have to exist in memory. They
+ * are uploaded on top of the cached image as usual.</p>
+ */
+public class PBRAtlasCache {
+	private static final int MAGIC = 0x49504243; // "IPBC"
+	/**
+	 * Must be increased whenever the layout of the cache files or the way the cached pixels are generated changes.
+	 */
+	private static final int VERSION = 2;
+	private static final int DIGEST_LENGTH = 32;
+	private static final int HEADER_SIZE = 4 * 5 + DIGEST_LENGTH;
+
+	private static PBRAtlasCache instance;
+
+	private final Path directory;
+
+	private PBRAtlasCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * @return the cache, or null if PBR atlas caching is disabled
+	 */
+	@Nullable
+	public static PBRAtlasCache getInstance() {
+		if (Iris.getIrisConfig() == null || !Iris.getIrisConfig().shouldCachePBRAtlases()) {
+			return null;
+		}
+
+		if (instance == null) {
+			instance = new PBRAtlasCache(FabricLoader.getInstance().getGameDir().resolve("iris_cache").resolve("pbr"));
+		}
+
+		return instance;
+	}
+
+	private static long getLevelSize(int width, int height, int level) {
+		return (long) (width >> level) * (height >> level) * 4;
+	}
+
+	private static long getPixelDataEnd(int width, int height, int mipLevel) {
+		long size = HEADER_SIZE;
+		for (int level = 0; level <= mipLevel; level++) {
+			size += getLevelSize(width, height, level);
+		}
+		return size;
+	}
+
+	private Path getPath(ResourceLocation atlasId) {
+		return directory.resolve(atlasId.toDebugFileName() + ".bin");
+	}
+
+	/**
+	 * Maps the cached atlas with the given key, if it exists.
+	 *
+	 * @return the cached atlas, or null if it isn't cached or the cached file is stale
+	 */
+	@Nullable
+	public Entry open(ResourceLocation atlasId, byte[] key, int width, int height, int mipLevel) {
+		Path path = getPath(atlasId);
+		if (!Files.isRegularFile(path)) {
+			return null;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long pixelDataEnd = getPixelDataEnd(width, height, mipLevel);
+			long fileSize = channel.size();
+			if (fileSize < pixelDataEnd + 4 || fileSize > Integer.MAX_VALUE) {
+				return null;
+			}
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION || buffer.getInt() != width
+				|| buffer.getInt() != height || buffer.getInt() != mipLevel) {
+				return null;
+			}
+
+			byte[] storedKey = new byte[DIGEST_LENGTH];
+			buffer.get(storedKey);
+			if (!Arrays.equals(storedKey, key)) {
+				return null;
+			}
+
+			buffer.position((int) pixelDataEnd);
+			List<CachedSprite> sprites = readSprites(buffer);
+			if (sprites == null) {
+				return null;
+			}
+
+			return new Entry(buffer, width, height, mipLevel, sprites);
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to read cached PBR atlas {}", path, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the given sprites into the cache as a stitched atlas. Only the first frame of each sprite is stored.
+	 *
+	 * @param defaultValue the RGBA color of the parts of the atlas that aren't covered by any sprite
+	 */
+	public void write(ResourceLocation atlasId, byte[] key, int width, int height, int mipLevel, int defaultValue,
+					  Collection<PBRTextureAtlasSprite> sprites) {
+		Path path = getPath(atlasId);
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		// NativeImage stores pixels as little-endian ABGR.
+		int fillValue = Integer.reverseBytes(defaultValue);
+
+		try {
+			Files.createDirectories(directory);
+
+			try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(mipLevel).put(key).flip();
+				writeFully(channel, header);
+
+				for (int level = 0; level <= mipLevel; level++) {
+					writeLevel(channel, width >> level, height >> level, level, fillValue, sprites);
+				}
+
+				writeSprites(channel, sprites);
+			}
+
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Iris.logger.warn("Failed to write cached PBR atlas {}", path, e);
+
+			try {
+				Files.deleteIfExists(tempPath);
+			} catch (IOException ignored) {
+				//
+			}
+		}
+	}
+
+	private static void writeLevel(FileChannel channel, int levelWidth, int levelHeight, int level, int fillValue,
+								   Collection<PBRTextureAtlasSprite> sprites) throws IOException {
+		long size = (long) levelWidth * levelHeight * 4;
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Atlas level " + level + " is too large to cache");
+		}
+
+		ByteBuffer pixels = MemoryUtil.memAlloc((int) size);
+		try {
+			long address = MemoryUtil.memAddress(pixels);
+			for (long offset = 0; offset < size; offset += 4) {
+				MemoryUtil.memPutInt(address + offset, fillValue);
+			}
+
+			for (PBRTextureAtlasSprite sprite : sprites) {
+				copySprite(sprite, level, address, levelWidth, levelHeight);
+			}
+
+			writeFully(channel, pixels);
+		} finally {
+			MemoryUtil.memFree(pixels);
+		}
+	}
+
+	private static void writeSprites(FileChannel channel, Collection<PBRTextureAtlasSprite> sprites) throws IOException {
+		List<byte[]> names = new ArrayList<>(sprites.size());
+		int size = 4;
+		for (PBRTextureAtlasSprite sprite : sprites) {
+			byte[] name = sprite.getBaseSprite().contents().name().toString().getBytes(StandardCharsets.UTF_8);
+			names.add(name);
+			size += 4 + name.length + 4 * 4;
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(sprites.size());
+
+		int index = 0;
+		for (PBRTextureAtlasSprite sprite : sprites) {
+			byte[] name = names.get(index++);
+			buffer.putInt(name.length).put(name);
+			buffer.putInt(sprite.getX()).putInt(sprite.getY()).putInt(sprite.contents().width()).putInt(sprite.contents().height());
+		}
+
+		writeFully(channel, buffer.flip());
+	}
+
+	/**
+	 * @return the sprites stored after the pixel data, or null if the table is malformed
+	 */
+	@Nullable
+	private static List<CachedSprite> readSprites(ByteBuffer buffer) {
+		try {
+			int count = buffer.getInt();
+			if (count < 0) {
+				return null;
+			}
+
+			List<CachedSprite> sprites = new ArrayList<>(Math.min(count, 4096));
+			for (int i = 0; i < count; i++) {
+				int nameLength = buffer.getInt();
+				if (nameLength < 0 || nameLength > buffer.remaining()) {
+					return null;
+				}
+
+				byte[] name = new byte[nameLength];
+				buffer.get(name);
+				ResourceLocation baseName = ResourceLocation.tryParse(new String(name, StandardCharsets.UTF_8));
+				if (baseName == null) {
+					return null;
+				}
+
+				sprites.add(new CachedSprite(baseName, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt()));
+			}
+
+			return buffer.hasRemaining() ? null : sprites;
+		} catch (BufferUnderflowException e) {
+			return null;
+		}
+	}
+
+	private static void copySprite(TextureAtlasSprite sprite, int level, long levelAddress, int levelWidth, int levelHeight) {
+		NativeImage[] byMipLevel = ((SpriteContentsAccessor) sprite.contents()).getByMipLevel();
+		if (level >= byMipLevel.length) {
+			return;
+		}
+
+		NativeImage image = byMipLevel[level];
+		int x = sprite.getX() >> level;
+		int y = sprite.getY() >> level;
+		int spriteWidth = Math.min(sprite.contents().width() >> level, Math.min(image.getWidth(), levelWidth - x));
+		int spriteHeight = Math.min(sprite.contents().height() >> level, Math.min(image.getHeight(), levelHeight - y));
+
+		for (int row = 0; row < spriteHeight; row++) {
+			long source = image.pixels + (long) row * image.getWidth() * 4;
+			long target = levelAddress + ((long) (y + row) * levelWidth + x) * 4;
+			MemoryUtil.memCopy(source, target, (long) spriteWidth * 4);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Creates the cache key for an atlas. The sprite hashes must be in the same order as the sprites.
+	 */
+	public static byte[] createKey(ResourceLocation atlasId, int width, int height, int mipLevel,
+								   TextureAtlasSprite[] sprites, long[] spriteHashes) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(8 * 4);
+		buffer.putInt(VERSION).putInt(width).putInt(height).putInt(mipLevel);
+		digest.update(buffer.array(), 0, buffer.position());
+		digest.update(atlasId.toString().getBytes(StandardCharsets.UTF_8));
+
+		TextureFormat format = TextureFormatLoader.getFormat();
+		if (format != null) {
+			digest.update((format.name() + ":" + format.version()).getBytes(StandardCharsets.UTF_8));
+		}
+
+		for (int i = 0; i < sprites.length; i++) {
+			TextureAtlasSprite sprite = sprites[i];
+			digest.update(sprite.contents().name().toString().getBytes(StandardCharsets.UTF_8));
+			buffer.clear();
+			buffer.putInt(sprite.getX()).putInt(sprite.getY()).putInt(sprite.contents().width())
+				.putInt(sprite.contents().height()).putLong(spriteHashes[i]);
+			digest.update(buffer.array(), 0, buffer.position());
+		}
+
+		return digest.digest();
+	}
+
+	/**
+	 * A sprite that is part of a cached atlas.
+	 *
+	 * @param baseName the name of the sprite in the base atlas that this PBR sprite belongs to
+	 */
+	public record CachedSprite(ResourceLocation baseName, int x, int y, int width, int height) {
+	}
+
+	public static class Entry {
+		private final MappedByteBuffer buffer;
+		private final int width;
+		private final int height;
+		private final int mipLevel;
+		private final List<CachedSprite> sprites;
+
+		private Entry(MappedByteBuffer buffer, int width, int height, int mipLevel, List<CachedSprite> sprites) {
+			this.buffer = buffer;
+			this.width = width;
+			this.height = height;
+			this.mipLevel = mipLevel;
+			this.sprites = sprites;
+		}
+
+		/**
+		 * @return every sprite the atlas was stitched from, including animated ones
+		 */
+		public List<CachedSprite> getSprites() {
+			return sprites;
+		}
+
+		/**
+		 * Uploads every cached mip level into the currently bound texture.
+		 */
+		public void upload() {
+			long address = MemoryUtil.memAddress(buffer, 0) + HEADER_SIZE;
+
+			for (int level = 0; level <= mipLevel; level++) {
+				long size = getLevelSize(width, height, level);
+
+				try (NativeImage image = new NativeImage(width >> level, height >> level, false)) {
+					MemoryUtil.memCopy(address, image.pixels, size);
+					image.upload(level, 0, 0, false);
+				}
+
+				address += size;
+			}
+		}
+	}
+}
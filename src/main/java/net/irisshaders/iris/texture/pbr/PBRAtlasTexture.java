@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -114,10 +115,25 @@ public class PBRAtlasTexture extends AbstractTexture implements PBRDumpable {
 		animatedTextures.clear();
 	}
 
+	public Collection<PBRTextureAtlasSprite> getSprites() {
+		return texturesByName.values();
+	}
+
 	public void upload(int atlasWidth, int atlasHeight, int mipLevel) {
+		upload(atlasWidth, atlasHeight, mipLevel, null);
+	}
+
+	/**
+	 * @param cached a cached copy of the stitched atlas to upload before the sprites, or null to start from a blank atlas
+	 */
+	public void upload(int atlasWidth, int atlasHeight, int mipLevel, @Nullable PBRAtlasCache.Entry cached) {
 		int glId = getId();
 		TextureUtil.prepareImage(glId, mipLevel, atlasWidth, atlasHeight);
-		TextureManipulationUtil.fillWithColor(glId, mipLevel, type.getDefaultValue());
+		if (cached != null) {
+			cached.upload();
+		} else {
+			TextureManipulationUtil.fillWithColor(glId, mipLevel, type.getDefaultValue());
+		}
 		width = atlasWidth;
 		height = atlasHeight;
 		this.mipLevel = mipLevel;
@@ -147,8 +163,12 @@ public class PBRAtlasTexture extends AbstractTexture implements PBRDumpable {
 	}
 
 	public boolean tryUpload(int atlasWidth, int atlasHeight, int mipLevel) {
+		return tryUpload(atlasWidth, atlasHeight, mipLevel, null);
+	}
+
+	public boolean tryUpload(int atlasWidth, int atlasHeight, int mipLevel, @Nullable PBRAtlasCache.Entry cached) {
 		try {
-			upload(atlasWidth, atlasHeight, mipLevel);
+			upload(atlasWidth, atlasHeight, mipLevel, cached);
 			return true;
 		} catch (Throwable t) {
 			return false;
@@ -156,6 +176,11 @@ public class PBRAtlasTexture extends AbstractTexture implements PBRDumpable {
 	}
 
 	protected void uploadSprite(PBRTextureAtlasSprite sprite) {
+		if (sprite.isCached()) {
+			// Already part of the cached atlas image
+			return;
+		}
+
 		TextureAtlasSprite.Ticker spriteTicker = sprite.createTicker();
 		if (spriteTicker != null) {
 			animatedTextures.add(spriteTicker);
@@ -2,22 +2,29 @@ package net.irisshaders.iris.texture.pbr;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.gl.IrisRenderSystem;
 import net.irisshaders.iris.gl.state.StateUpdateNotifiers;
 import net.irisshaders.iris.targets.backed.NativeImageBackedSingleColorTexture;
 import net.irisshaders.iris.texture.TextureTracker;
+import net.irisshaders.iris.texture.pbr.loader.AsyncPBRTextureLoader;
+import net.irisshaders.iris.texture.pbr.loader.AsyncPBRTextureLoader.PreparedPBRTextures;
 import net.irisshaders.iris.texture.pbr.loader.PBRTextureLoader;
 import net.irisshaders.iris.texture.pbr.loader.PBRTextureLoader.PBRTextureConsumer;
 import net.irisshaders.iris.texture.pbr.loader.PBRTextureLoaderRegistry;
+import net.irisshaders.iris.vulkan.resource.DeferredDeletionQueue;
+import net.minecraft.Util;
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.renderer.texture.AbstractTexture;
 import net.minecraft.client.renderer.texture.Dumpable;
 import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
 
 public class PBRTextureManager {
 	public static final PBRTextureManager INSTANCE = new PBRTextureManager();
@@ -31,7 +38,18 @@ public class PBRTextureManager {
 		StateUpdateNotifiers.specularTextureChangeNotifier = listener -> specularTextureChangeListener = listener;
 	}
 
+	/**
+	 * The maximum amount of loaded non-atlas holders with real PBR textures. The least recently used ones are closed
+	 * once this is exceeded, and are loaded again the next time their base texture is used.
+	 */
+	private static final int MAX_EVICTABLE_HOLDERS = 256;
+
 	private final Int2ObjectMap<PBRTextureHolder> holders = new Int2ObjectOpenHashMap<>();
+	/**
+	 * Ids of the holders that may be evicted.
+	 */
+	private final HolderEvictionOrder evictionOrder = new HolderEvictionOrder(MAX_EVICTABLE_HOLDERS);
+	private final Int2ObjectMap<CompletableFuture<PreparedPBRTextures>> pendingLoads = new Int2ObjectOpenHashMap<>();
 	private final PBRTextureConsumerImpl consumer = new PBRTextureConsumerImpl();
 
 	private NativeImageBackedSingleColorTexture defaultNormalTexture;
@@ -93,10 +111,24 @@ public class PBRTextureManager {
 	}
 
 	public PBRTextureHolder getOrLoadHolder(int id) {
+		if (!pendingLoads.isEmpty()) {
+			uploadFinishedLoads();
+		}
+
 		PBRTextureHolder holder = holders.get(id);
 		if (holder == null) {
+			if (pendingLoads.containsKey(id)) {
+				return defaultHolder;
+			}
+
+			if (Iris.getIrisConfig().shouldLoadPBRTexturesAsync() && startAsyncLoad(id)) {
+				return defaultHolder;
+			}
+
 			holder = loadHolder(id);
-			holders.put(id, holder);
+			putHolder(id, holder);
+		} else {
+			evictionOrder.touch(id);
 		}
 		return holder;
 	}
@@ -123,7 +155,94 @@ public class PBRTextureManager {
 		return defaultHolder;
 	}
 
+	/**
+	 * Starts decoding the PBR textures of the given texture on a worker thread. The default holder is used for the
+	 * texture until the decoded textures are uploaded.
+	 *
+	 * @return false if the texture's loader can't decode its textures in the background
+	 */
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private boolean startAsyncLoad(int id) {
+		AbstractTexture texture = TextureTracker.INSTANCE.getTexture(id);
+		if (texture == null) {
+			return false;
+		}
+
+		if (!(PBRTextureLoaderRegistry.INSTANCE.getLoader(texture.getClass()) instanceof AsyncPBRTextureLoader loader)) {
+			return false;
+		}
+
+		ResourceManager resourceManager = Minecraft.getInstance().getResourceManager();
+		pendingLoads.put(id, CompletableFuture.supplyAsync(() -> loader.prepare(texture, resourceManager), Util.backgroundExecutor()));
+		return true;
+	}
+
+	private void uploadFinishedLoads() {
+		ObjectIterator<Int2ObjectMap.Entry<CompletableFuture<PreparedPBRTextures>>> iterator = pendingLoads.int2ObjectEntrySet().iterator();
+
+		while (iterator.hasNext()) {
+			Int2ObjectMap.Entry<CompletableFuture<PreparedPBRTextures>> entry = iterator.next();
+			CompletableFuture<PreparedPBRTextures> future = entry.getValue();
+			if (!future.isDone()) {
+				continue;
+			}
+
+			iterator.remove();
+			int id = entry.getIntKey();
+
+			PreparedPBRTextures prepared;
+			try {
+				prepared = future.join();
+			} catch (Exception e) {
+				Iris.logger.debug("Failed to load PBR textures for texture " + id, e);
+				putHolder(id, defaultHolder);
+				continue;
+			}
+
+			int previousTextureBinding = IrisRenderSystem.getBoundTextureId(IrisRenderSystem.getActiveTexture());
+			consumer.clear();
+			try {
+				prepared.upload(consumer);
+				putHolder(id, consumer.toHolder());
+			} catch (Exception e) {
+				Iris.logger.debug("Failed to upload PBR textures for texture " + id, e);
+				prepared.close();
+				putHolder(id, defaultHolder);
+			} finally {
+				IrisRenderSystem.bindTexture(previousTextureBinding);
+			}
+		}
+	}
+
+	private void putHolder(int id, PBRTextureHolder holder) {
+		holders.put(id, holder);
+
+		if (holder == defaultHolder || holder.normalTexture() instanceof PBRAtlasTexture || holder.specularTexture() instanceof PBRAtlasTexture) {
+			// Atlases are expensive to rebuild and few in number, so they are never evicted.
+			return;
+		}
+
+		int evictedId = evictionOrder.add(id);
+		if (evictedId != HolderEvictionOrder.NONE) {
+			PBRTextureHolder evicted = holders.remove(evictedId);
+			if (evicted != null) {
+				// Its textures may still be sampled by the frames in flight
+				DeferredDeletionQueue.INSTANCE.defer(() -> closeHolder(evicted));
+			}
+		}
+	}
+
+	private static void cancelLoad(CompletableFuture<PreparedPBRTextures> future) {
+		future.thenAccept(PreparedPBRTextures::close);
+	}
+
 	public void onDeleteTexture(int id) {
+		CompletableFuture<PreparedPBRTextures> pending = pendingLoads.remove(id);
+		if (pending != null) {
+			cancelLoad(pending);
+		}
+
+		evictionOrder.remove(id);
 		PBRTextureHolder holder = holders.remove(id);
 		if (holder != null) {
 			closeHolder(holder);
@@ -150,6 +269,12 @@ public class PBRTextureManager {
 	}
 
 	public void clear() {
+		for (CompletableFuture<PreparedPBRTextures> pending : pendingLoads.values()) {
+			cancelLoad(pending);
+		}
+		pendingLoads.clear();
+		evictionOrder.clear();
+
 		for (PBRTextureHolder holder : holders.values()) {
 			if (holder != defaultHolder) {
 				closeHolder(holder);
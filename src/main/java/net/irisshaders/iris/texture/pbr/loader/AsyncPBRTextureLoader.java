@@ -0,0 +1,32 @@
+package net.irisshaders.iris.texture.pbr.loader;
+
+import net.minecraft.client.renderer.texture.AbstractTexture;
+import net.minecraft.server.packs.resources.ResourceManager;
+
+/**
+ * A {@link PBRTextureLoader} that can decode the PBR textures in the background and upload them later.
+ */
+public interface AsyncPBRTextureLoader<T extends AbstractTexture> extends PBRTextureLoader<T> {
+	/**
+	 * Reads and decodes the PBR textures without uploading them. This method is called from a worker thread, so it
+	 * must not touch any GPU state or the base texture's GPU resources.
+	 *
+	 * @param texture         The base texture.
+	 * @param resourceManager The resource manager.
+	 * @return the decoded textures
+	 */
+	PreparedPBRTextures prepare(T texture, ResourceManager resourceManager);
+
+	interface PreparedPBRTextures {
+		/**
+		 * Uploads the decoded textures. Called on the render thread, with the same restrictions as
+		 * {@link PBRTextureLoader#load}.
+		 */
+		void upload(PBRTextureConsumer pbrTextureConsumer);
+
+		/**
+		 * Releases the decoded textures if they are never going to be uploaded.
+		 */
+		void close();
+	}
+}
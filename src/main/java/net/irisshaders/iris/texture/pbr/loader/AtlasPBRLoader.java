@@ -1,6 +1,8 @@
 package net.irisshaders.iris.texture.pbr.loader;
 
 import com.mojang.blaze3d.platform.NativeImage;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
 import net.irisshaders.iris.Iris;
 import net.irisshaders.iris.mixin.texture.AnimationMetadataSectionAccessor;
 import net.irisshaders.iris.mixin.texture.TextureAtlasAccessor;
@@ -9,11 +11,13 @@ import net.irisshaders.iris.texture.format.TextureFormatLoader;
 import net.irisshaders.iris.texture.mipmap.ChannelMipmapGenerator;
 import net.irisshaders.iris.texture.mipmap.CustomMipmapGenerator;
 import net.irisshaders.iris.texture.mipmap.LinearBlendFunction;
+import net.irisshaders.iris.texture.pbr.PBRAtlasCache;
 import net.irisshaders.iris.texture.pbr.PBRAtlasTexture;
 import net.irisshaders.iris.texture.pbr.PBRSpriteHolder;
 import net.irisshaders.iris.texture.pbr.PBRType;
 import net.irisshaders.iris.texture.pbr.SpriteContentsExtension;
 import net.irisshaders.iris.texture.util.ImageManipulationUtil;
+import net.minecraft.Util;
 import net.minecraft.client.renderer.texture.SpriteContents;
 import net.minecraft.client.renderer.texture.TextureAtlas;
 import net.minecraft.client.renderer.texture.TextureAtlasSprite;
@@ -28,7 +32,15 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32C;
 
 public class AtlasPBRLoader implements PBRTextureLoader<TextureAtlas> {
 	public static final ChannelMipmapGenerator LINEAR_MIPMAP_GENERATOR = new ChannelMipmapGenerator(
@@ -45,39 +57,182 @@ public class AtlasPBRLoader implements PBRTextureLoader<TextureAtlas> {
 		int atlasHeight = atlasAccessor.callGetHeight();
 		int mipLevel = atlasAccessor.getMipLevel();
 
-		PBRAtlasTexture normalAtlas = null;
-		PBRAtlasTexture specularAtlas = null;
-		for (TextureAtlasSprite sprite : ((TextureAtlasAccessor) atlas).getTexturesByName().values()) {
-			PBRTextureAtlasSprite normalSprite = createPBRSprite(sprite, resourceManager, atlas, atlasWidth, atlasHeight, mipLevel, PBRType.NORMAL);
-			PBRTextureAtlasSprite specularSprite = createPBRSprite(sprite, resourceManager, atlas, atlasWidth, atlasHeight, mipLevel, PBRType.SPECULAR);
-			if (normalSprite != null) {
-				if (normalAtlas == null) {
-					normalAtlas = new PBRAtlasTexture(atlas, PBRType.NORMAL);
+		List<TextureAtlasSprite> sprites = new ArrayList<>(atlasAccessor.getTexturesByName().values());
+
+		PBRAtlasTexture normalAtlas = loadAtlas(atlas, sprites, resourceManager, atlasWidth, atlasHeight, mipLevel, PBRType.NORMAL);
+		if (normalAtlas != null) {
+			pbrTextureConsumer.acceptNormalTexture(normalAtlas);
+		}
+		PBRAtlasTexture specularAtlas = loadAtlas(atlas, sprites, resourceManager, atlasWidth, atlasHeight, mipLevel, PBRType.SPECULAR);
+		if (specularAtlas != null) {
+			pbrTextureConsumer.acceptSpecularTexture(specularAtlas);
+		}
+	}
+
+	@Nullable
+	private PBRAtlasTexture loadAtlas(TextureAtlas atlas, List<TextureAtlasSprite> sprites, ResourceManager resourceManager, int atlasWidth, int atlasHeight, int mipLevel, PBRType pbrType) {
+		Executor executor = Util.backgroundExecutor();
+		PBRAtlasTexture pbrAtlas = new PBRAtlasTexture(atlas, pbrType);
+
+		PBRAtlasCache cache = PBRAtlasCache.getInstance();
+		PBRSpriteSource[] sources = null;
+		byte[] cacheKey = null;
+		PBRAtlasCache.Entry cached = null;
+		if (cache != null) {
+			// Hashing the source files is far cheaper than decoding them, and tells us whether the cached atlas can be used.
+			List<CompletableFuture<PBRSpriteSource>> sourceFutures = new ArrayList<>(sprites.size());
+			for (TextureAtlasSprite sprite : sprites) {
+				sourceFutures.add(CompletableFuture.supplyAsync(() -> findPBRSource(sprite, resourceManager, pbrType), executor));
+			}
+			sources = sourceFutures.stream().map(CompletableFuture::join).toArray(PBRSpriteSource[]::new);
+
+			List<TextureAtlasSprite> keySprites = new ArrayList<>();
+			LongList keyHashes = new LongArrayList();
+			for (int i = 0; i < sprites.size(); i++) {
+				if (sources[i] != null) {
+					keySprites.add(sprites.get(i));
+					keyHashes.add(sources[i].hash());
 				}
-				normalAtlas.addSprite(normalSprite);
-				PBRSpriteHolder pbrSpriteHolder = ((SpriteContentsExtension) sprite.contents()).getOrCreatePBRHolder();
-				pbrSpriteHolder.setNormalSprite(normalSprite);
 			}
-			if (specularSprite != null) {
-				if (specularAtlas == null) {
-					specularAtlas = new PBRAtlasTexture(atlas, PBRType.SPECULAR);
+			if (keySprites.isEmpty()) {
+				return null;
+			}
+
+			cacheKey = PBRAtlasCache.createKey(pbrAtlas.getAtlasId(), atlasWidth, atlasHeight, mipLevel, keySprites.toArray(TextureAtlasSprite[]::new), keyHashes.toLongArray());
+			cached = cache.open(pbrAtlas.getAtlasId(), cacheKey, atlasWidth, atlasHeight, mipLevel);
+		}
+
+		// Decoding, scaling and mipmapping the sprites is by far the most expensive part of loading the PBR atlases, and
+		// every sprite is independent of the others. Run those steps on the worker pool, and only stitch and upload the
+		// results on this thread. On a cache hit, only the animated sprites need to be decoded; the others are recreated
+		// from the sprite table of the cached atlas.
+		List<CompletableFuture<PBRTextureAtlasSprite>> futures = new ArrayList<>(sprites.size());
+		for (int i = 0; i < sprites.size(); i++) {
+			TextureAtlasSprite sprite = sprites.get(i);
+			if (sources != null && (sources[i] == null || cached != null && !sources[i].animated())) {
+				futures.add(CompletableFuture.completedFuture(null));
+			} else {
+				futures.add(CompletableFuture.supplyAsync(() -> createPBRSprite(sprite, resourceManager, atlas, atlasWidth, atlasHeight, mipLevel, pbrType), executor));
+			}
+		}
+
+		awaitSprites(futures);
+
+		PBRTextureAtlasSprite[] pbrSprites = new PBRTextureAtlasSprite[sprites.size()];
+		for (int i = 0; i < sprites.size(); i++) {
+			pbrSprites[i] = futures.get(i).join();
+		}
+
+		if (cached != null) {
+			addCachedSprites(cached, sprites, sources, pbrSprites, atlasWidth, atlasHeight, pbrType);
+		}
+
+		boolean hasSprites = cached != null;
+		for (int i = 0; i < sprites.size(); i++) {
+			PBRTextureAtlasSprite pbrSprite = pbrSprites[i];
+			if (pbrSprite != null) {
+				hasSprites = true;
+				pbrAtlas.addSprite(pbrSprite);
+				PBRSpriteHolder pbrSpriteHolder = ((SpriteContentsExtension) sprites.get(i).contents()).getOrCreatePBRHolder();
+				switch (pbrType) {
+					case NORMAL -> pbrSpriteHolder.setNormalSprite(pbrSprite);
+					case SPECULAR -> pbrSpriteHolder.setSpecularSprite(pbrSprite);
 				}
-				specularAtlas.addSprite(specularSprite);
-				PBRSpriteHolder pbrSpriteHolder = ((SpriteContentsExtension) sprite.contents()).getOrCreatePBRHolder();
-				pbrSpriteHolder.setSpecularSprite(specularSprite);
 			}
 		}
 
-		if (normalAtlas != null) {
-			if (normalAtlas.tryUpload(atlasWidth, atlasHeight, mipLevel)) {
-				pbrTextureConsumer.acceptNormalTexture(normalAtlas);
+		if (!hasSprites || !pbrAtlas.tryUpload(atlasWidth, atlasHeight, mipLevel, cached)) {
+			return null;
+		}
+
+		if (cache != null && cached == null) {
+			cache.write(pbrAtlas.getAtlasId(), cacheKey, atlasWidth, atlasHeight, mipLevel, pbrType.getDefaultValue(), pbrAtlas.getSprites());
+		}
+
+		return pbrAtlas;
+	}
+
+	/**
+	 * Recreates the sprites of a cached atlas that weren't decoded, so that the PBR atlas and the sprite holders end up
+	 * the same as if every sprite had been loaded. Their pixels are already part of the cached image.
+	 */
+	private static void addCachedSprites(PBRAtlasCache.Entry cached, List<TextureAtlasSprite> sprites, PBRSpriteSource[] sources,
+										 PBRTextureAtlasSprite[] pbrSprites, int atlasWidth, int atlasHeight, PBRType pbrType) {
+		Map<ResourceLocation, Integer> indicesByName = new HashMap<>();
+		for (int i = 0; i < sprites.size(); i++) {
+			indicesByName.put(sprites.get(i).contents().name(), i);
+		}
+
+		for (PBRAtlasCache.CachedSprite cachedSprite : cached.getSprites()) {
+			Integer index = indicesByName.get(cachedSprite.baseName());
+			// Animated sprites have been decoded and added as usual
+			if (index == null || sources[index] == null || sources[index].animated()) {
+				continue;
 			}
+
+			TextureAtlasSprite sprite = sprites.get(index);
+			ResourceLocation spriteName = sprite.contents().name();
+			ResourceLocation pbrSpriteName = ResourceLocation.fromNamespaceAndPath(spriteName.getNamespace(), spriteName.getPath() + pbrType.getSuffix());
+			CachedPBRSpriteContents contents = new CachedPBRSpriteContents(pbrSpriteName, cachedSprite.width(), cachedSprite.height(), pbrType);
+			pbrSprites[index] = new PBRTextureAtlasSprite(pbrSpriteName, contents, atlasWidth, atlasHeight, cachedSprite.x(), cachedSprite.y(), sprite);
 		}
-		if (specularAtlas != null) {
-			if (specularAtlas.tryUpload(atlasWidth, atlasHeight, mipLevel)) {
-				pbrTextureConsumer.acceptSpecularTexture(specularAtlas);
+	}
+
+	private static void awaitSprites(List<CompletableFuture<PBRTextureAtlasSprite>> futures) {
+		try {
+			CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+		} catch (CompletionException e) {
+			// Don't leak the images of the sprites that did load successfully.
+			for (CompletableFuture<PBRTextureAtlasSprite> future : futures) {
+				// getNow rethrows the failure of a future that completed exceptionally
+				if (future.isCompletedExceptionally()) {
+					continue;
+				}
+
+				PBRTextureAtlasSprite sprite = future.getNow(null);
+				if (sprite != null) {
+					sprite.contents().close();
+				}
+			}
+
+			if (e.getCause() instanceof RuntimeException cause) {
+				throw cause;
 			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Hashes the PBR image of a sprite without decoding it.
+	 *
+	 * @return the source of the PBR image, or null if the sprite doesn't have one
+	 */
+	@Nullable
+	protected PBRSpriteSource findPBRSource(TextureAtlasSprite sprite, ResourceManager resourceManager, PBRType pbrType) {
+		ResourceLocation pbrImageLocation = getPBRImageLocation(sprite.contents().name(), pbrType);
+
+		Optional<Resource> optionalResource = resourceManager.getResource(pbrImageLocation);
+		if (optionalResource.isEmpty()) {
+			return null;
 		}
+		Resource resource = optionalResource.get();
+
+		boolean animated;
+		try {
+			animated = resource.metadata().getSection(AnimationMetadataSection.SERIALIZER).isPresent();
+		} catch (Exception e) {
+			// Let the regular loading path report the error.
+			animated = true;
+		}
+
+		CRC32C checksum = new CRC32C();
+		try (InputStream stream = resource.open()) {
+			checksum.update(stream.readAllBytes());
+		} catch (IOException e) {
+			animated = true;
+		}
+
+		return new PBRSpriteSource(checksum.getValue(), animated);
 	}
 
 	@Nullable
@@ -172,6 +327,13 @@ public class AtlasPBRLoader implements PBRTextureLoader<TextureAtlas> {
 		return ResourceLocation.fromNamespaceAndPath(spriteName.getNamespace(), "textures/" + path + ".png");
 	}
 
+	/**
+	 * @param hash     a checksum of the PBR image file
+	 * @param animated whether the sprite has to be decoded even if the cached atlas can be used
+	 */
+	protected record PBRSpriteSource(long hash, boolean animated) {
+	}
+
 	protected static class PBRSpriteContents extends SpriteContents implements CustomMipmapGenerator.Provider {
 		protected final PBRType pbrType;
 
@@ -193,6 +355,16 @@ public class AtlasPBRLoader implements PBRTextureLoader<TextureAtlas> {
 		}
 	}
 
+	/**
+	 * The contents of a sprite whose pixels come from a cached atlas. Only its name and size are known, the image is a
+	 * placeholder that is never uploaded.
+	 */
+	protected static class CachedPBRSpriteContents extends PBRSpriteContents {
+		public CachedPBRSpriteContents(ResourceLocation name, int width, int height, PBRType pbrType) {
+			super(name, new FrameSize(width, height), new NativeImage(1, 1, false), ResourceMetadata.EMPTY, pbrType);
+		}
+	}
+
 	public static class PBRTextureAtlasSprite extends TextureAtlasSprite {
 		protected final TextureAtlasSprite baseSprite;
 
@@ -204,5 +376,12 @@ public class AtlasPBRLoader implements PBRTextureLoader<TextureAtlas> {
 		public TextureAtlasSprite getBaseSprite() {
 			return baseSprite;
 		}
+
+		/**
+		 * @return whether the pixels of this sprite are part of a cached atlas image rather than of its contents
+		 */
+		public boolean isCached() {
+			return contents() instanceof CachedPBRSpriteContents;
+		}
 	}
 }
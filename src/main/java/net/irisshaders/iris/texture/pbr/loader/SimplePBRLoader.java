@@ -10,7 +10,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 
-public class SimplePBRLoader implements PBRTextureLoader<SimpleTexture> {
+public class SimplePBRLoader implements AsyncPBRTextureLoader<SimpleTexture> {
 	@Override
 	public void load(SimpleTexture texture, ResourceManager resourceManager, PBRTextureConsumer pbrTextureConsumer) {
 		ResourceLocation location = ((SimpleTextureAccessor) texture).getLocation();
@@ -26,6 +26,32 @@ public class SimplePBRLoader implements PBRTextureLoader<SimpleTexture> {
 		}
 	}
 
+	@Override
+	public PreparedPBRTextures prepare(SimpleTexture texture, ResourceManager resourceManager) {
+		ResourceLocation location = ((SimpleTextureAccessor) texture).getLocation();
+
+		PreloadedTexture normalTexture = new PreloadedTexture(location.withPath(PBRType.NORMAL::appendSuffix), resourceManager);
+		PreloadedTexture specularTexture = new PreloadedTexture(location.withPath(PBRType.SPECULAR::appendSuffix), resourceManager);
+
+		return new PreparedPBRTextures() {
+			@Override
+			public void upload(PBRTextureConsumer pbrTextureConsumer) {
+				if (normalTexture.tryUpload(resourceManager)) {
+					pbrTextureConsumer.acceptNormalTexture(normalTexture);
+				}
+				if (specularTexture.tryUpload(resourceManager)) {
+					pbrTextureConsumer.acceptSpecularTexture(specularTexture);
+				}
+			}
+
+			@Override
+			public void close() {
+				normalTexture.closeImage();
+				specularTexture.closeImage();
+			}
+		};
+	}
+
 	@Nullable
 	protected AbstractTexture createPBRTexture(ResourceLocation imageLocation, ResourceManager resourceManager, PBRType pbrType) {
 		ResourceLocation pbrImageLocation = imageLocation.withPath(pbrType::appendSuffix);
@@ -39,4 +65,40 @@ public class SimplePBRLoader implements PBRTextureLoader<SimpleTexture> {
 
 		return pbrTexture;
 	}
+
+	/**
+	 * A simple texture whose image is decoded as soon as it is created, so that only the upload is left for the render
+	 * thread.
+	 */
+	protected static class PreloadedTexture extends SimpleTexture {
+		private TextureImage image;
+
+		public PreloadedTexture(ResourceLocation location, ResourceManager resourceManager) {
+			super(location);
+			this.image = TextureImage.load(resourceManager, location);
+		}
+
+		@Override
+		protected TextureImage getTextureImage(ResourceManager resourceManager) {
+			TextureImage preloaded = image;
+			image = null;
+			return preloaded != null ? preloaded : super.getTextureImage(resourceManager);
+		}
+
+		public boolean tryUpload(ResourceManager resourceManager) {
+			try {
+				load(resourceManager);
+				return true;
+			} catch (IOException e) {
+				return false;
+			}
+		}
+
+		public void closeImage() {
+			if (image != null) {
+				image.close();
+				image = null;
+			}
+		}
+	}
 }
@@ -79,7 +79,7 @@ public class IrisExclusiveUniforms {
 			BlockPos blockPos4 = ((BlockHitResult)hitResult).getBlockPos();
 			BlockState blockState = Minecraft.getInstance().level.getBlockState(blockPos4);
 			if (!blockState.isAir() && Minecraft.getInstance().level.getWorldBorder().isWithinBounds(blockPos4)) {
-				return WorldRenderingSettings.INSTANCE.getBlockStateIds().getInt(blockState);
+				return WorldRenderingSettings.INSTANCE.getBlockStateId(blockState, 0);
 			}
 		}
 
@@ -0,0 +1,180 @@
+package net.irisshaders.iris.vertices;
+
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Fills in the mid texture coordinates, normals and tangents of every polygon in a finished vertex buffer at once,
+ * instead of computing them through a polygon view as each polygon is completed.
+ *
+ * <p>Polygons are processed in blocks: the positions and texture coordinates of a block are first gathered from the
+ * vertex memory into flat arrays, the per-polygon data is then computed from those arrays alone, and the results are
+ * finally scattered back into the vertex memory. The results are identical to the per-polygon path in
+ * {@code MixinBufferBuilder}.</p>
+ *
+ * <p>Instances hold the scratch arrays and are not thread safe. Buffer builders are created for every batch, so
+ * rather than giving each of them its own instance, every thread that builds meshes shares one through
+ * {@link #forCurrentThread}.</p>
+ */
+public class ExtendedDataBatch {
+	private static final int POLYGONS_PER_BLOCK = 64;
+	private static final int MAX_VERTICES_PER_BLOCK = POLYGONS_PER_BLOCK * 4;
+	private static final ThreadLocal<ExtendedDataBatch> SCRATCH = ThreadLocal.withInitial(ExtendedDataBatch::new);
+
+	private final float[] x = new float[MAX_VERTICES_PER_BLOCK];
+	private final float[] y = new float[MAX_VERTICES_PER_BLOCK];
+	private final float[] z = new float[MAX_VERTICES_PER_BLOCK];
+	private final float[] u = new float[MAX_VERTICES_PER_BLOCK];
+	private final float[] v = new float[MAX_VERTICES_PER_BLOCK];
+	private final int[] normals = new int[MAX_VERTICES_PER_BLOCK];
+	private final int[] tangents = new int[MAX_VERTICES_PER_BLOCK];
+	private final float[] midU = new float[POLYGONS_PER_BLOCK];
+	private final float[] midV = new float[POLYGONS_PER_BLOCK];
+
+	public static ExtendedDataBatch forCurrentThread() {
+		return SCRATCH.get();
+	}
+
+	/**
+	 * @param pointer            address of the first vertex
+	 * @param vertexCount        amount of vertices in the buffer
+	 * @param verticesPerPolygon 4 for quads, 3 for triangles
+	 * @param packedMidTex       whether the mid texture coordinate is stored as normalized shorts
+	 */
+	public void fill(long pointer, int vertexCount, int stride, int verticesPerPolygon,
+					 int uvOffset, int normalOffset, int midTexOffset, boolean packedMidTex, int tangentOffset) {
+		int polygonCount = vertexCount / verticesPerPolygon;
+
+		for (int first = 0; first < polygonCount; first += POLYGONS_PER_BLOCK) {
+			int polygons = Math.min(POLYGONS_PER_BLOCK, polygonCount - first);
+			int vertices = polygons * verticesPerPolygon;
+			long blockPointer = pointer + (long) first * verticesPerPolygon * stride;
+
+			gather(blockPointer, vertices, stride, uvOffset, normalOffset, verticesPerPolygon == 3);
+
+			if (verticesPerPolygon == 4) {
+				computeQuads(polygons);
+			} else {
+				computeTriangles(polygons);
+			}
+
+			scatter(blockPointer, polygons, verticesPerPolygon, stride, normalOffset, midTexOffset, packedMidTex, tangentOffset);
+		}
+	}
+
+	private void gather(long pointer, int vertices, int stride, int uvOffset, int normalOffset, boolean readNormals) {
+		for (int i = 0; i < vertices; i++) {
+			long vertex = pointer + (long) i * stride;
+			x[i] = MemoryUtil.memGetFloat(vertex);
+			y[i] = MemoryUtil.memGetFloat(vertex + 4);
+			z[i] = MemoryUtil.memGetFloat(vertex + 8);
+			u[i] = MemoryUtil.memGetFloat(vertex + uvOffset);
+			v[i] = MemoryUtil.memGetFloat(vertex + uvOffset + 4);
+		}
+
+		if (readNormals) {
+			for (int i = 0; i < vertices; i++) {
+				normals[i] = MemoryUtil.memGetInt(pointer + (long) i * stride + normalOffset);
+			}
+		}
+	}
+
+	private void computeMidTexCoords(int polygons, int verticesPerPolygon) {
+		for (int polygon = 0; polygon < polygons; polygon++) {
+			int base = polygon * verticesPerPolygon;
+			float sumU = 0;
+			float sumV = 0;
+
+			for (int vertex = 0; vertex < verticesPerPolygon; vertex++) {
+				sumU += u[base + vertex];
+				sumV += v[base + vertex];
+			}
+
+			midU[polygon] = sumU / verticesPerPolygon;
+			midV[polygon] = sumV / verticesPerPolygon;
+		}
+	}
+
+	private void computeQuads(int quads) {
+		computeMidTexCoords(quads, 4);
+
+		for (int quad = 0; quad < quads; quad++) {
+			int i0 = quad * 4;
+			int i1 = i0 + 1;
+			int i2 = i0 + 2;
+			int i3 = i0 + 3;
+
+			// Same as NormalHelper.computeFaceNormal
+			float dx0 = x[i2] - x[i0];
+			float dy0 = y[i2] - y[i0];
+			float dz0 = z[i2] - z[i0];
+			float dx1 = x[i3] - x[i1];
+			float dy1 = y[i3] - y[i1];
+			float dz1 = z[i3] - z[i1];
+
+			float normX = dy0 * dz1 - dz0 * dy1;
+			float normY = dz0 * dx1 - dx0 * dz1;
+			float normZ = dx0 * dy1 - dy0 * dx1;
+
+			float l = (float) Math.sqrt(normX * normX + normY * normY + normZ * normZ);
+
+			if (l != 0) {
+				normX /= l;
+				normY /= l;
+				normZ /= l;
+			}
+
+			normals[quad] = NormI8.pack(normX, normY, normZ, 0.0f);
+			tangents[quad] = NormalHelper.computeTangent(normX, normY, normZ,
+				x[i0], y[i0], z[i0], u[i0], v[i0],
+				x[i1], y[i1], z[i1], u[i1], v[i1],
+				x[i2], y[i2], z[i2], u[i2], v[i2]);
+		}
+	}
+
+	private void computeTriangles(int triangles) {
+		computeMidTexCoords(triangles, 3);
+
+		for (int triangle = 0; triangle < triangles; triangle++) {
+			int i0 = triangle * 3;
+			int i1 = i0 + 1;
+			int i2 = i0 + 2;
+
+			// Triangles keep their per-vertex normals to allow smooth shading, so each vertex gets its own tangent.
+			for (int vertex = i0; vertex <= i2; vertex++) {
+				int normal = normals[vertex];
+				tangents[vertex] = NormalHelper.computeTangentSmooth(NormI8.unpackX(normal), NormI8.unpackY(normal), NormI8.unpackZ(normal),
+					x[i0], y[i0], z[i0], u[i0], v[i0],
+					x[i1], y[i1], z[i1], u[i1], v[i1],
+					x[i2], y[i2], z[i2], u[i2], v[i2]);
+			}
+		}
+	}
+
+	private void scatter(long pointer, int polygons, int verticesPerPolygon, int stride, int normalOffset,
+						 int midTexOffset, boolean packedMidTex, int tangentOffset) {
+		boolean quads = verticesPerPolygon == 4;
+
+		for (int polygon = 0; polygon < polygons; polygon++) {
+			int packedMidTexCoord = ExtendedDataHelper.packMidTexCoord(midU[polygon], midV[polygon]);
+
+			for (int vertex = 0; vertex < verticesPerPolygon; vertex++) {
+				int index = polygon * verticesPerPolygon + vertex;
+				long address = pointer + (long) index * stride;
+
+				if (packedMidTex) {
+					MemoryUtil.memPutInt(address + midTexOffset, packedMidTexCoord);
+				} else {
+					MemoryUtil.memPutFloat(address + midTexOffset, midU[polygon]);
+					MemoryUtil.memPutFloat(address + midTexOffset + 4, midV[polygon]);
+				}
+
+				if (quads) {
+					MemoryUtil.memPutInt(address + normalOffset, normals[polygon]);
+					MemoryUtil.memPutInt(address + tangentOffset, tangents[polygon]);
+				} else {
+					MemoryUtil.memPutInt(address + tangentOffset, tangents[index]);
+				}
+			}
+		}
+	}
+}
@@ -12,6 +12,18 @@ public final class ExtendedDataHelper {
 		return ((int) (x * 64) & 0xFF) | (((int) (y * 64) & 0xFF) << 8) | (((int) (z * 64) & 0xFF) << 16);
 	}
 
+	/**
+	 * Packs a mid texture coordinate into two unsigned normalized shorts, as used by
+	 * {@link IrisVertexFormats#MID_TEXTURE_PACKED_ELEMENT}.
+	 */
+	public static int packMidTexCoord(float u, float v) {
+		return packUnorm16(u) | (packUnorm16(v) << 16);
+	}
+
+	private static int packUnorm16(float value) {
+		return (int) (Math.min(Math.max(value, 0.0f), 1.0f) * 65535.0f + 0.5f);
+	}
+
 	public static int computeMidBlock(float x, float y, float z, int localPosX, int localPosY, int localPosZ) {
 		return packMidBlock(
 			localPosX + 0.5f - x,
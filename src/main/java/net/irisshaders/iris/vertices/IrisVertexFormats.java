@@ -12,18 +12,23 @@ public class IrisVertexFormats {
 	public static final VertexFormatElement MID_TEXTURE_ELEMENT;
 	public static final VertexFormatElement TANGENT_ELEMENT;
 	public static final VertexFormatElement MID_BLOCK_ELEMENT;
+	public static final VertexFormatElement MID_TEXTURE_PACKED_ELEMENT;
 
 	public static final VertexFormat TERRAIN;
 	public static final VertexFormat ENTITY;
+	public static final VertexFormat ENTITY_COMPACT;
 	public static final VertexFormat GLYPH;
 	public static final VertexFormat CLOUDS;
 
+	private static VertexFormat entityFormat;
+
 	static {
 		ENTITY_ELEMENT = VertexFormatElement.register(10, 10, VertexFormatElement.Type.SHORT, VertexFormatElement.Usage.GENERIC, 2);
 		ENTITY_ID_ELEMENT = VertexFormatElement.register(11, 11, VertexFormatElement.Type.USHORT, VertexFormatElement.Usage.UV, 3);
 		MID_TEXTURE_ELEMENT = VertexFormatElement.register(12, 12, VertexFormatElement.Type.FLOAT, VertexFormatElement.Usage.GENERIC, 2);
 		TANGENT_ELEMENT = VertexFormatElement.register(13, 13, VertexFormatElement.Type.BYTE, VertexFormatElement.Usage.GENERIC, 4);
 		MID_BLOCK_ELEMENT = VertexFormatElement.register(14, 14, VertexFormatElement.Type.BYTE, VertexFormatElement.Usage.GENERIC, 3);
+		MID_TEXTURE_PACKED_ELEMENT = VertexFormatElement.register(15, 15, VertexFormatElement.Type.USHORT, VertexFormatElement.Usage.UV, 2);
 
 		TERRAIN = VertexFormat.builder()
 				.add("Position", VertexFormatElement.POSITION)
@@ -53,6 +58,22 @@ public class IrisVertexFormats {
 			.add("at_tangent", TANGENT_ELEMENT)
 			.build(); // stride=56, all FLOAT attributes 4-byte aligned
 
+		// Same as ENTITY, but with mc_midTexCoord stored as normalized shorts (decoded by EntityPatcher) and without the
+		// alignment padding that the float mid texture coordinate needs.
+		ENTITY_COMPACT = VertexFormat.builder()
+			.add("Position", VertexFormatElement.POSITION)
+			.add("Color", VertexFormatElement.COLOR)
+			.add("UV0", VertexFormatElement.UV0)
+			.add("UV1", VertexFormatElement.UV1)
+			.add("UV2", VertexFormatElement.UV2)
+			.add("Normal", VertexFormatElement.NORMAL)
+			.padding(1)
+			.add("iris_Entity", ENTITY_ID_ELEMENT)
+			.add("iris_MidTexPacked", MID_TEXTURE_PACKED_ELEMENT)
+			.add("at_tangent", TANGENT_ELEMENT)
+			.padding(2)
+			.build(); // stride=52
+
 		GLYPH = VertexFormat.builder()
 			.add("Position", VertexFormatElement.POSITION)
 			.add("Color", VertexFormatElement.COLOR)
@@ -74,6 +95,19 @@ public class IrisVertexFormats {
 			.build();
 	}
 
+	/**
+	 * Returns the extended entity format, which is {@link #ENTITY_COMPACT} if the compact entity vertex format is
+	 * enabled in the config. The choice is made once, so that buffers and shaders always agree on the format.
+	 */
+	public static VertexFormat getEntityFormat() {
+		if (entityFormat == null) {
+			boolean compact = Iris.getIrisConfig() != null && Iris.getIrisConfig().shouldUseCompactEntityVertexFormat();
+			entityFormat = compact ? ENTITY_COMPACT : ENTITY;
+		}
+
+		return entityFormat;
+	}
+
 	private static void debug(VertexFormat format) {
 		Iris.logger.info("Vertex format: " + format + " with byte size " + format.getVertexSize());
 		int byteIndex = 0;
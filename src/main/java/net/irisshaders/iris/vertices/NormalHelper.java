@@ -163,19 +163,14 @@ public abstract class NormalHelper {
 	}
 
 	public static int computeTangentSmooth(float normalX, float normalY, float normalZ, TriView t) {
-		// Capture all of the relevant vertex positions
-		float x0 = t.x(0);
-		float y0 = t.y(0);
-		float z0 = t.z(0);
-
-		float x1 = t.x(1);
-		float y1 = t.y(1);
-		float z1 = t.z(1);
-
-		float x2 = t.x(2);
-		float y2 = t.y(2);
-		float z2 = t.z(2);
+		return computeTangentSmooth(normalX, normalY, normalZ, t.x(0), t.y(0), t.z(0), t.u(0), t.v(0),
+			t.x(1), t.y(1), t.z(1), t.u(1), t.v(1),
+			t.x(2), t.y(2), t.z(2), t.u(2), t.v(2));
+	}
 
+	public static int computeTangentSmooth(float normalX, float normalY, float normalZ, float x0, float y0, float z0, float u0, float v0,
+										   float x1, float y1, float z1, float u1, float v1,
+										   float x2, float y2, float z2, float u2, float v2) {
 		// Project all vertices onto normal plane (for smooth normal support). Optionally skip this step for flat shading.
 		// Procedure:
 		// project v onto normal
@@ -207,15 +202,6 @@ public abstract class NormalHelper {
 		float edge2y = y2 - y0;
 		float edge2z = z2 - z0;
 
-		float u0 = t.u(0);
-		float v0 = t.v(0);
-
-		float u1 = t.u(1);
-		float v1 = t.v(1);
-
-		float u2 = t.u(2);
-		float v2 = t.v(2);
-
 		float deltaU1 = u1 - u0;
 		float deltaV1 = v1 - v0;
 		float deltaU2 = u2 - u0;
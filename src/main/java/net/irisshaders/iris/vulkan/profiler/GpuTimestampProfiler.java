@@ -0,0 +1,228 @@
+package net.irisshaders.iris.vulkan.profiler;
+
+import net.irisshaders.iris.Iris;
+import net.vulkanmod.vulkan.Renderer;
+import net.vulkanmod.vulkan.device.DeviceManager;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.VkCommandBuffer;
+import org.lwjgl.vulkan.VkQueryPoolCreateInfo;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.lwjgl.vulkan.VK10.*;
+
+/**
+ * Measures how long Iris passes take on the GPU with timestamp queries.
+ *
+ * <p>Every frame writes its timestamps to its own query pool. Pools are reused {@link #FRAMES} frames later, which is
+ * more than VulkanMod keeps in flight, so by the time a pool is reused the GPU is done with it and its results can be
+ * read without waiting. Queries that still aren't available are skipped rather than waited for.</p>
+ *
+ * <p>Passes are measured with {@link #begin} and {@link #end}, which do nothing unless profiling is enabled and a frame
+ * has been started with {@link #beginFrame}. The query pools are created the first time a frame is profiled and are
+ * kept for the rest of the game.</p>
+ */
+public final class GpuTimestampProfiler {
+	private static final int FRAMES = 4;
+	private static final int MAX_QUERIES = 512;
+	private static final int WINDOW_SIZE = 300;
+	private static final int NONE = -1;
+
+	private static final PassTimingStats stats = new PassTimingStats(WINDOW_SIZE);
+	private static final String[][] passNames = new String[FRAMES][MAX_QUERIES / 2];
+	private static final int[] queryCounts = new int[FRAMES];
+	private static long[] queryPools;
+	private static LongBuffer results;
+	private static double nanosecondsPerTick;
+	private static boolean unsupported;
+	private static boolean frameActive;
+	private static int frame;
+
+	private GpuTimestampProfiler() {
+	}
+
+	public static boolean isEnabled() {
+		return Iris.getIrisConfig().shouldProfileGpu() && !unsupported;
+	}
+
+	/**
+	 * Collects the results of the frame that last used this frame's query pool, and resets it for this frame. Must be
+	 * called at the start of level rendering, before any pass is measured.
+	 */
+	public static void beginFrame() {
+		frameActive = false;
+
+		if (!isEnabled() || !Renderer.isRecording() || !ensureCreated()) {
+			return;
+		}
+
+		frame = (frame + 1) % FRAMES;
+		collect(frame);
+
+		// Queries can only be reset outside of a render pass
+		Renderer.getInstance().endRenderPass();
+		vkCmdResetQueryPool(Renderer.getCommandBuffer(), queryPools[frame], 0, MAX_QUERIES);
+		queryCounts[frame] = 0;
+		frameActive = true;
+	}
+
+	/**
+	 * Stops measuring passes until the next {@link #beginFrame}.
+	 */
+	public static void endFrame() {
+		frameActive = false;
+	}
+
+	/**
+	 * Writes the starting timestamp of a pass.
+	 *
+	 * @return a handle to pass to {@link #end}, or -1 if the pass isn't measured
+	 */
+	public static int begin(String pass) {
+		if (!frameActive || !Renderer.isRecording() || queryCounts[frame] + 2 > MAX_QUERIES) {
+			return NONE;
+		}
+
+		int query = queryCounts[frame];
+		queryCounts[frame] += 2;
+		passNames[frame][query / 2] = pass;
+
+		vkCmdWriteTimestamp(Renderer.getCommandBuffer(), VK_PIPELINE_STAGE_TOP_OF_PIPE_BIT, queryPools[frame], query);
+
+		return query;
+	}
+
+	/**
+	 * Writes the ending timestamp of a pass started with {@link #begin}.
+	 */
+	public static void end(int handle) {
+		if (handle == NONE || !frameActive || !Renderer.isRecording()) {
+			return;
+		}
+
+		VkCommandBuffer commandBuffer = Renderer.getCommandBuffer();
+		vkCmdWriteTimestamp(commandBuffer, VK_PIPELINE_STAGE_BOTTOM_OF_PIPE_BIT, queryPools[frame], handle + 1);
+	}
+
+	public static PassTimingStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Writes the current statistics of every pass to a CSV file.
+	 */
+	public static void dumpCsv(Path path) {
+		if (stats.getFrameCount() == 0) {
+			return;
+		}
+
+		try (Writer writer = Files.newBufferedWriter(path)) {
+			stats.writeCsv(writer);
+			Iris.logger.info("Wrote GPU timings of the last {} frames to {}", Math.min(stats.getFrameCount(), WINDOW_SIZE), path);
+		} catch (IOException e) {
+			Iris.logger.error("Failed to write GPU timings to {}", path, e);
+		}
+	}
+
+	private static void collect(int pool) {
+		int count = queryCounts[pool];
+
+		if (count == 0) {
+			return;
+		}
+
+		// Each query gets its value followed by its availability
+		results.clear();
+		int result = vkGetQueryPoolResults(DeviceManager.vkDevice, queryPools[pool], 0, count, results, 16,
+			VK_QUERY_RESULT_64_BIT | VK_QUERY_RESULT_WITH_AVAILABILITY_BIT);
+
+		if (result != VK_SUCCESS && result != VK_NOT_READY) {
+			Iris.logger.warn("Failed to read GPU timestamps: {}", result);
+			return;
+		}
+
+		long origin = Long.MAX_VALUE;
+
+		for (int query = 0; query < count; query++) {
+			if (results.get(query * 2 + 1) != 0) {
+				origin = Math.min(origin, results.get(query * 2));
+			}
+		}
+
+		for (int query = 0; query + 1 < count; query += 2) {
+			if (results.get(query * 2 + 1) == 0 || results.get(query * 2 + 3) == 0) {
+				continue;
+			}
+
+			// Timestamps are made relative to the first one of the frame so that they fit in a float
+			float start = (float) ((results.get(query * 2) - origin) * nanosecondsPerTick / 1_000_000.0);
+			float end = (float) ((results.get(query * 2 + 2) - origin) * nanosecondsPerTick / 1_000_000.0);
+			stats.record(passNames[pool][query / 2], start, end);
+		}
+
+		stats.endFrame();
+	}
+
+	private static boolean ensureCreated() {
+		if (queryPools != null) {
+			return true;
+		}
+
+		if (!DeviceManager.deviceProperties.limits().timestampComputeAndGraphics()) {
+			Iris.logger.warn("GPU profiling is not available, this device doesn't support timestamps on all queues");
+			unsupported = true;
+			return false;
+		}
+
+		nanosecondsPerTick = DeviceManager.deviceProperties.limits().timestampPeriod();
+		queryPools = new long[FRAMES];
+
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			VkQueryPoolCreateInfo createInfo = VkQueryPoolCreateInfo.calloc(stack)
+				.sType$Default()
+				.queryType(VK_QUERY_TYPE_TIMESTAMP)
+				.queryCount(MAX_QUERIES);
+			LongBuffer pool = stack.mallocLong(1);
+
+			for (int i = 0; i < FRAMES; i++) {
+				if (vkCreateQueryPool(DeviceManager.vkDevice, createInfo, null, pool) != VK_SUCCESS) {
+					Iris.logger.warn("Failed to create a timestamp query pool, GPU profiling is disabled");
+					unsupported = true;
+					destroyPools();
+					return false;
+				}
+
+				queryPools[i] = pool.get(0);
+			}
+		}
+
+		results = MemoryUtil.memAllocLong(MAX_QUERIES * 2);
+
+		return true;
+	}
+
+	private static void destroyPools() {
+		if (queryPools != null) {
+			for (long pool : queryPools) {
+				if (pool != VK_NULL_HANDLE) {
+					vkDestroyQueryPool(DeviceManager.vkDevice, pool, null);
+				}
+			}
+
+			queryPools = null;
+		}
+
+		if (results != null) {
+			MemoryUtil.memFree(results);
+			results = null;
+		}
+
+		Arrays.fill(queryCounts, 0);
+	}
+}
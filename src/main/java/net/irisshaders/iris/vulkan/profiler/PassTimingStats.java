@@ -0,0 +1,135 @@
+package net.irisshaders.iris.vulkan.profiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Aggregates the GPU time of named passes over the last frames.
+ *
+ * <p>Timings are collected one frame at a time: a pass that shows up more than once in a frame (such as a gbuffer
+ * phase that is entered several times) contributes the sum of its timings as a single sample for that frame. Passes
+ * that don't show up in a frame don't get a sample for it.</p>
+ */
+public class PassTimingStats {
+	public static final String FRAME_TOTAL = "total";
+
+	private final int windowSize;
+	private final Map<String, RollingWindow> windows = new LinkedHashMap<>();
+	private final Map<String, Float> currentFrame = new LinkedHashMap<>();
+	private float frameStart = Float.NaN;
+	private float frameEnd = Float.NaN;
+	private int frames;
+
+	public PassTimingStats(int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Adds a timing to the frame being collected.
+	 *
+	 * @param start the time the pass started at, in milliseconds on an arbitrary but consistent timeline
+	 * @param end   the time the pass ended at, in milliseconds on the same timeline
+	 */
+	public void record(String pass, float start, float end) {
+		currentFrame.merge(pass, Math.max(end - start, 0.0f), Float::sum);
+
+		frameStart = Float.isNaN(frameStart) ? start : Math.min(frameStart, start);
+		frameEnd = Float.isNaN(frameEnd) ? end : Math.max(frameEnd, end);
+	}
+
+	/**
+	 * Finishes the frame being collected. The time from the start of its first pass to the end of its last pass is
+	 * recorded as {@link #FRAME_TOTAL}, since passes can be nested within each other.
+	 */
+	public void endFrame() {
+		if (currentFrame.isEmpty()) {
+			return;
+		}
+
+		currentFrame.forEach((pass, time) -> windows.computeIfAbsent(pass, p -> new RollingWindow(windowSize)).add(time));
+		windows.computeIfAbsent(FRAME_TOTAL, p -> new RollingWindow(windowSize)).add(frameEnd - frameStart);
+
+		currentFrame.clear();
+		frameStart = Float.NaN;
+		frameEnd = Float.NaN;
+		frames++;
+	}
+
+	public int getFrameCount() {
+		return frames;
+	}
+
+	/**
+	 * @return the summary of every pass seen so far, in the order they were first seen, followed by the frame total
+	 */
+	public List<Summary> getSummaries() {
+		List<Summary> summaries = new ArrayList<>(windows.size());
+		RollingWindow total = null;
+
+		for (Map.Entry<String, RollingWindow> entry : windows.entrySet()) {
+			if (entry.getKey().equals(FRAME_TOTAL)) {
+				total = entry.getValue();
+			} else {
+				summaries.add(summarize(entry.getKey(), entry.getValue()));
+			}
+		}
+
+		if (total != null) {
+			summaries.add(summarize(FRAME_TOTAL, total));
+		}
+
+		return summaries;
+	}
+
+	/**
+	 * @return the summaries of the passes with the highest 95th percentile, slowest first, not including the frame total
+	 */
+	public List<Summary> getSlowest(int limit) {
+		return getSummaries().stream()
+			.filter(summary -> !summary.pass().equals(FRAME_TOTAL))
+			.sorted(Comparator.comparingDouble(Summary::p95).reversed())
+			.limit(limit)
+			.toList();
+	}
+
+	/**
+	 * @return the summary of the time from the start of the first pass to the end of the last pass of each frame, or
+	 * null if no frame has been collected
+	 */
+	public Summary getFrameTotal() {
+		RollingWindow total = windows.get(FRAME_TOTAL);
+
+		return total == null ? null : summarize(FRAME_TOTAL, total);
+	}
+
+	public void writeCsv(Appendable out) throws IOException {
+		out.append("pass,samples,mean_ms,p50_ms,p95_ms,p99_ms,max_ms\n");
+
+		for (Summary summary : getSummaries()) {
+			out.append(String.format(Locale.ROOT, "%s,%d,%.4f,%.4f,%.4f,%.4f,%.4f\n", summary.pass(), summary.samples(),
+				summary.mean(), summary.p50(), summary.p95(), summary.p99(), summary.max()));
+		}
+	}
+
+	public void clear() {
+		windows.clear();
+		currentFrame.clear();
+		frameStart = Float.NaN;
+		frameEnd = Float.NaN;
+		frames = 0;
+	}
+
+	private static Summary summarize(String pass, RollingWindow window) {
+		float[] percentiles = window.getPercentiles(50, 95, 99);
+
+		return new Summary(pass, window.getCount(), window.getMean(), percentiles[0], percentiles[1], percentiles[2], window.getMax());
+	}
+
+	public record Summary(String pass, int samples, float mean, float p50, float p95, float p99, float max) {
+	}
+}
@@ -0,0 +1,84 @@
+package net.irisshaders.iris.vulkan.profiler;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent samples of a measurement, up to a fixed number of them, and computes statistics over them.
+ */
+public class RollingWindow {
+	private final float[] samples;
+	private int next;
+	private int count;
+
+	public RollingWindow(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be greater than zero");
+		}
+
+		this.samples = new float[capacity];
+	}
+
+	public void add(float sample) {
+		samples[next] = sample;
+		next = (next + 1) % samples.length;
+		count = Math.min(count + 1, samples.length);
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public float getMean() {
+		if (count == 0) {
+			return 0.0f;
+		}
+
+		double sum = 0.0;
+
+		for (int i = 0; i < count; i++) {
+			sum += samples[i];
+		}
+
+		return (float) (sum / count);
+	}
+
+	public float getMax() {
+		float max = 0.0f;
+
+		for (int i = 0; i < count; i++) {
+			max = Math.max(max, samples[i]);
+		}
+
+		return max;
+	}
+
+	/**
+	 * Computes percentiles with the nearest-rank method, sorting the samples only once.
+	 *
+	 * @param percentiles values between 0 and 100
+	 * @return the sample at each of the given percentiles, or 0 for each of them if there are no samples
+	 */
+	public float[] getPercentiles(double... percentiles) {
+		for (double percentile : percentiles) {
+			if (percentile < 0.0 || percentile > 100.0) {
+				throw new IllegalArgumentException("Percentile must be between 0 and 100, got " + percentile);
+			}
+		}
+
+		float[] result = new float[percentiles.length];
+
+		if (count == 0) {
+			return result;
+		}
+
+		float[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+
+		for (int i = 0; i < percentiles.length; i++) {
+			int rank = (int) Math.ceil(percentiles[i] / 100.0 * count);
+			result[i] = sorted[Math.max(rank, 1) - 1];
+		}
+
+		return result;
+	}
+}
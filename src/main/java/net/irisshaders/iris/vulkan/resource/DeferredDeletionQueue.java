@@ -0,0 +1,63 @@
+package net.irisshaders.iris.vulkan.resource;
+
+import java.util.ArrayDeque;
+
+/**
+ * Delays the destruction of GPU resources until no frame that could still be using them is in flight.
+ *
+ * <p>A resource released while recording frame N may still be referenced by the command buffers of frame N and of the
+ * frames before it that the GPU hasn't finished yet. VulkanMod waits for the oldest frame in flight before it starts
+ * recording a new one, so once {@code framesInFlight} more frames have begun, frame N is known to be done and its
+ * resources can be destroyed without waiting for the device to go idle.</p>
+ *
+ * <p>Deletions run in the order they were deferred.</p>
+ */
+public class DeferredDeletionQueue {
+	public static final DeferredDeletionQueue INSTANCE = new DeferredDeletionQueue();
+
+	private final ArrayDeque<PendingDeletion> pending = new ArrayDeque<>();
+	private long frame;
+	private int lastFrameRetired;
+
+	/**
+	 * Queues the destruction of a resource that may still be used by frames in flight.
+	 */
+	public void defer(Runnable deletion) {
+		pending.add(new PendingDeletion(frame, deletion));
+	}
+
+	/**
+	 * Moves on to the next frame and runs the deletions that no frame in flight can depend on anymore. Must be called
+	 * once per frame, after the CPU has waited for the oldest frame in flight.
+	 *
+	 * @param framesInFlight the number of frames the GPU may be working on at the same time
+	 */
+	public void beginFrame(int framesInFlight) {
+		if (framesInFlight < 1) {
+			throw new IllegalArgumentException("At least one frame must be in flight, got " + framesInFlight);
+		}
+
+		frame++;
+
+		int retired = 0;
+
+		while (!pending.isEmpty() && pending.peek().frame() + framesInFlight <= frame) {
+			// Removed before running, so that a failing deletion isn't retried every frame
+			pending.poll().deletion().run();
+			retired++;
+		}
+
+		lastFrameRetired = retired;
+	}
+
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	public int getLastFrameRetired() {
+		return lastFrameRetired;
+	}
+
+	private record PendingDeletion(long frame, Runnable deletion) {
+	}
+}